@@ -0,0 +1,45 @@
+package com.example.fuel.bench;
+
+import com.example.fuel.db.DatabaseInitializer;
+import com.example.fuel.db.DatabaseManager;
+import com.example.fuel.service.PaymentLedger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+
+/**
+ * Временная БД для бенчмарков: отдельный файл на каждый запуск,
+ * чтобы не трогать smart_fuel.db проекта.
+ */
+final class BenchmarkDatabase {
+
+    private BenchmarkDatabase() {}
+
+    /** Создать пустую БД во временном файле, прогнать миграции и переключить на неё DatabaseManager. */
+    static File open() {
+        try {
+            File file = Files.createTempFile("smart_fuel-bench", ".db").toFile();
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+            DatabaseManager.setDatabaseFile(file.getAbsolutePath());
+            DatabaseInitializer.initialize();
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Дописать журнал платежей, закрыть соединения и удалить файлы БД. */
+    static void close(File file) {
+        PaymentLedger.shared().flush();
+        DatabaseManager.shutdown();
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+        //noinspection ResultOfMethodCallIgnored
+        new File(file.getPath() + "-wal").delete();
+        //noinspection ResultOfMethodCallIgnored
+        new File(file.getPath() + "-shm").delete();
+    }
+}
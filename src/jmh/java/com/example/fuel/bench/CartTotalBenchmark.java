@@ -0,0 +1,45 @@
+package com.example.fuel.bench;
+
+import com.example.fuel.model.CartItem;
+import com.example.fuel.service.CartService;
+import com.example.fuel.service.ProductService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Расчёт итога корзины (CartService.calculateCartTotal) для корзин разного размера.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CartTotalBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int cartSize;
+
+    private File dbFile;
+    private CartService cartService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dbFile = BenchmarkDatabase.open();
+        cartService = new CartService(new ProductService());
+        // Поровну топлива и услуг: id 1..3 есть в начальных данных
+        for (int i = 0; i < cartSize; i++) {
+            String type = (i % 2 == 0) ? "PRODUCT" : "SERVICE";
+            cartService.addToCart(new CartItem(1, type, 1 + i % 3, 1.5));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkDatabase.close(dbFile);
+    }
+
+    @Benchmark
+    public double calculateCartTotal() {
+        return cartService.calculateCartTotal(1);
+    }
+}
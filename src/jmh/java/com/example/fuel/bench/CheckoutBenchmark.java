@@ -0,0 +1,76 @@
+package com.example.fuel.bench;
+
+import com.example.fuel.DAO.CustomerDAO;
+import com.example.fuel.model.CartItem;
+import com.example.fuel.model.Customer;
+import com.example.fuel.service.CartService;
+import com.example.fuel.service.PaymentService;
+import com.example.fuel.service.ProductService;
+import com.example.fuel.storage.MemoryStorage;
+import com.example.fuel.storage.StorageProvider;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Полная оплата корзины (PaymentService.payExactAmountCombinedKopecks):
+ * списание балансов, остатков топлива, очистка корзины и запись в журнал платежей.
+ * Корзина заполняется заново перед каждым вызовом и в замер не входит.
+ *
+ * storage=memory — та же логика без SQLite: разница с sqlite показывает цену ввода-вывода.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CheckoutBenchmark {
+
+    @Param({"sqlite", "memory"})
+    public String storage;
+
+    private File dbFile;
+    private CartService cartService;
+    private PaymentService paymentService;
+    private long sum;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        StorageProvider provider;
+        if ("memory".equals(storage)) {
+            provider = MemoryStorage.withDemoData();
+        } else {
+            dbFile = BenchmarkDatabase.open();
+            provider = StorageProvider.sqlite();
+        }
+        ProductService productService = new ProductService(provider);
+        cartService = new CartService(productService, provider.cartItemDAO());
+        paymentService = new PaymentService(provider);
+
+        // Денег и топлива хватит на любое число итераций
+        CustomerDAO customerDAO = provider.customerDAO();
+        Customer c = customerDAO.getById(1);
+        c.setWalletBalance(1e12);
+        customerDAO.update(c);
+        provider.productDAO().updateFuelStock(1, 1_000_000_000_000L);
+        productService.invalidateCatalog();
+    }
+
+    @Setup(Level.Invocation)
+    public void fillCart() {
+        cartService.addToCart(new CartItem(1, "PRODUCT", 1, 0.5));
+        cartService.addToCart(new CartItem(1, "SERVICE", 2, 1.0));
+        sum = cartService.calculateCartTotalKopecks(1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (dbFile != null) {
+            BenchmarkDatabase.close(dbFile);
+        }
+    }
+
+    @Benchmark
+    public boolean payExactAmountCombined() {
+        return paymentService.payExactAmountCombinedKopecks(1, sum);
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.fuel.bench;
+
+import com.example.fuel.DAO.CustomerDAO;
+import com.example.fuel.DAO.CustomerDAOImpl;
+import com.example.fuel.DAO.ProductDAO;
+import com.example.fuel.DAO.ProductDAOImpl;
+import com.example.fuel.model.Customer;
+import com.example.fuel.model.FuelProduct;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Одиночные запросы DAO: чтение товара по id и запись клиента (UPDATE + COMMIT).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DaoBenchmark {
+
+    private File dbFile;
+    private ProductDAO productDAO;
+    private CustomerDAO customerDAO;
+    private Customer customer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dbFile = BenchmarkDatabase.open();
+        productDAO = new ProductDAOImpl();
+        customerDAO = new CustomerDAOImpl();
+        customer = customerDAO.getById(1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkDatabase.close(dbFile);
+    }
+
+    @Benchmark
+    public FuelProduct getFuelProductById() {
+        return productDAO.getFuelProductById(2);
+    }
+
+    @Benchmark
+    public void updateCustomer() {
+        customer.setBonusPoints(customer.getBonusPoints() + 1);
+        customerDAO.update(customer);
+    }
+}
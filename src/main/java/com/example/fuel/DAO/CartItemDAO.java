@@ -8,8 +8,24 @@ import java.util.List;
  */
 public interface CartItemDAO {
     List<CartItem> getByCustomerId(int customerId);
+    // Строки всех корзин с данным типом позиции (восстановление резервов при старте)
+    List<CartItem> getAllByType(String itemType);
+    // Добавить строку; id новой строки записывается в item
     void insert(CartItem item);
     void delete(int id);
-    void deleteAllByCustomerId(int customerId);
+    // Удалить строку, только если она в корзине этого клиента (false — строки нет или она чужая)
+    boolean delete(int customerId, int id);
+    // Очистить корзину клиента (false — не удалось, например, ошибка БД: оплату нужно откатить)
+    boolean deleteAllByCustomerId(int customerId);
     void deleteByItem(int customerId, String itemType, int itemId);
+
+    /**
+     * DAO корзины, настроенное для приложения: с -Dsmartfuel.cart.inMemory=true —
+     * общий InMemoryCartItemDAO (корзины в памяти с отложенной записью), иначе — SQL.
+     */
+    static CartItemDAO create() {
+        return Boolean.getBoolean("smartfuel.cart.inMemory")
+                ? InMemoryCartItemDAO.shared()
+                : new CartItemDAOImpl();
+    }
 }
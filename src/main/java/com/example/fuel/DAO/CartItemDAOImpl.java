@@ -2,6 +2,7 @@ package com.example.fuel.DAO;
 
 import com.example.fuel.model.CartItem;
 import com.example.fuel.db.DatabaseManager;
+import com.example.fuel.db.PooledConnection;
 
 import java.sql.*;
 import java.util.ArrayList;
@@ -16,38 +17,65 @@ public class CartItemDAOImpl implements CartItemDAO {
     public List<CartItem> getByCustomerId(int customerId) {
         List<CartItem> list = new ArrayList<>();
         String sql = "SELECT * FROM cart_items WHERE customer_id = ?";
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (PooledConnection conn = DatabaseManager.getReadConnection()) {
+            PreparedStatement ps = conn.prepare(sql);
 
             ps.setInt(1, customerId);
-            ResultSet rs = ps.executeQuery();
+            readAll(ps, list);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return list;
+    }
+
+    @Override
+    public List<CartItem> getAllByType(String itemType) {
+        List<CartItem> list = new ArrayList<>();
+        String sql = "SELECT * FROM cart_items WHERE item_type = ? ORDER BY id";
+        try (PooledConnection conn = DatabaseManager.getReadConnection()) {
+            PreparedStatement ps = conn.prepare(sql);
+
+            ps.setString(1, itemType);
+            readAll(ps, list);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return list;
+    }
+
+    private static void readAll(PreparedStatement ps, List<CartItem> list) throws SQLException {
+        try (ResultSet rs = ps.executeQuery()) {
             while (rs.next()) {
-                CartItem item = new CartItem(
+                CartItem item = CartItem.ofMilli(
                         rs.getInt("id"),
                         rs.getInt("customer_id"),
                         rs.getString("item_type"),
                         rs.getInt("item_id"),
-                        rs.getDouble("quantity")
+                        rs.getLong("quantity_ml")
                 );
                 list.add(item);
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
-        return list;
     }
 
     @Override
     public void insert(CartItem item) {
-        String sql = "INSERT INTO cart_items (customer_id, item_type, item_id, quantity) VALUES (?, ?, ?, ?)";
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+        String sql = "INSERT INTO cart_items (customer_id, item_type, item_id, quantity_ml) VALUES (?, ?, ?, ?)";
+        try (PooledConnection conn = DatabaseManager.getConnection()) {
+            PreparedStatement ps = conn.prepare(sql);
 
             ps.setInt(1, item.getCustomerId());
             ps.setString(2, item.getItemType());
             ps.setInt(3, item.getItemId());
-            ps.setDouble(4, item.getQuantity());
+            ps.setLong(4, item.getQuantityMilli());
             ps.executeUpdate();
+
+            // Сообщаем вызывающему id новой строки (нужен для удаления и учёта итога)
+            try (ResultSet rs = conn.prepare("SELECT last_insert_rowid()").executeQuery()) {
+                if (rs.next()) {
+                    item.setId(rs.getInt(1));
+                }
+            }
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -56,8 +84,8 @@ public class CartItemDAOImpl implements CartItemDAO {
     @Override
     public void delete(int id) {
         String sql = "DELETE FROM cart_items WHERE id = ?";
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (PooledConnection conn = DatabaseManager.getConnection()) {
+            PreparedStatement ps = conn.prepare(sql);
             ps.setInt(1, id);
             ps.executeUpdate();
         } catch (SQLException e) {
@@ -66,22 +94,38 @@ public class CartItemDAOImpl implements CartItemDAO {
     }
 
     @Override
-    public void deleteAllByCustomerId(int customerId) {
+    public boolean delete(int customerId, int id) {
+        String sql = "DELETE FROM cart_items WHERE id = ? AND customer_id = ?";
+        try (PooledConnection conn = DatabaseManager.getConnection()) {
+            PreparedStatement ps = conn.prepare(sql);
+            ps.setInt(1, id);
+            ps.setInt(2, customerId);
+            return ps.executeUpdate() > 0;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    @Override
+    public boolean deleteAllByCustomerId(int customerId) {
         String sql = "DELETE FROM cart_items WHERE customer_id = ?";
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (PooledConnection conn = DatabaseManager.getConnection()) {
+            PreparedStatement ps = conn.prepare(sql);
             ps.setInt(1, customerId);
             ps.executeUpdate();
+            return true;
         } catch (SQLException e) {
             e.printStackTrace();
+            return false;
         }
     }
 
     @Override
     public void deleteByItem(int customerId, String itemType, int itemId) {
         String sql = "DELETE FROM cart_items WHERE customer_id = ? AND item_type = ? AND item_id = ?";
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (PooledConnection conn = DatabaseManager.getConnection()) {
+            PreparedStatement ps = conn.prepare(sql);
 
             ps.setInt(1, customerId);
             ps.setString(2, itemType);
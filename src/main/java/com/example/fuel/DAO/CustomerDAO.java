@@ -1,6 +1,7 @@
 package com.example.fuel.DAO;
 
 import com.example.fuel.model.Customer;
+import com.example.fuel.model.PaymentMethod;
 import java.util.List;
 
 /**
@@ -9,5 +10,14 @@ import java.util.List;
 public interface CustomerDAO {
     Customer getById(int id);
     List<Customer> getAll();
-    void update(Customer customer);
+
+    // Записать балансы, только если версия строки не изменилась с момента чтения.
+    // true — записано (customer.version увеличена), false — строку успели изменить (конфликт)
+    boolean update(Customer customer);
+
+    // Добавить клиента, вернуть его id (-1 при ошибке)
+    int insert(Customer customer);
+
+    // Атомарно списать amountKopecks с одного счёта, только если средств хватает (false — не хватило)
+    boolean debit(int customerId, PaymentMethod method, long amountKopecks);
 }
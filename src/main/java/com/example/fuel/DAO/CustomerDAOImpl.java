@@ -1,7 +1,9 @@
 package com.example.fuel.DAO;
 
 import com.example.fuel.model.Customer;
+import com.example.fuel.model.PaymentMethod;
 import com.example.fuel.db.DatabaseManager;
+import com.example.fuel.db.PooledConnection;
 
 import java.sql.*;
 import java.util.ArrayList;
@@ -12,15 +14,30 @@ import java.util.List;
  */
 public class CustomerDAOImpl implements CustomerDAO {
 
+    // Условное списание: UPDATE сработает, только если на счёте хватает средств.
+    // Версия строки увеличивается, чтобы параллельный update() с устаревшей версией не затёр списание
+    private static final String DEBIT_CASH_SQL =
+            "UPDATE customers SET wallet_kopecks = wallet_kopecks - ?, version = version + 1 WHERE id = ? AND wallet_kopecks >= ?";
+    private static final String DEBIT_CARD_SQL =
+            "UPDATE customers SET card_kopecks = card_kopecks - ?, version = version + 1 WHERE id = ? AND card_kopecks >= ?";
+    private static final String DEBIT_BONUS_SQL =
+            "UPDATE customers SET bonus_kopecks = bonus_kopecks - ?, version = version + 1 WHERE id = ? AND bonus_kopecks >= ?";
+    private static final String UPDATE_SQL = """
+            UPDATE customers
+               SET wallet_kopecks = ?, card_kopecks = ?, bonus_kopecks = ?, version = version + 1
+             WHERE id = ? AND version = ?
+            """;
+
     @Override
     public Customer getById(int id) {
         String sql = "SELECT * FROM customers WHERE id = ?";
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (PooledConnection conn = DatabaseManager.getReadConnection()) {
+            PreparedStatement ps = conn.prepare(sql);
             ps.setInt(1, id);
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                return mapRowToCustomer(rs);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return mapRowToCustomer(rs);
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -32,11 +49,12 @@ public class CustomerDAOImpl implements CustomerDAO {
     public List<Customer> getAll() {
         List<Customer> list = new ArrayList<>();
         String sql = "SELECT * FROM customers";
-        try (Connection conn = DatabaseManager.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                list.add(mapRowToCustomer(rs));
+        try (PooledConnection conn = DatabaseManager.getReadConnection()) {
+            PreparedStatement ps = conn.prepare(sql);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    list.add(mapRowToCustomer(rs));
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -45,27 +63,76 @@ public class CustomerDAOImpl implements CustomerDAO {
     }
 
     @Override
-    public void update(Customer customer) {
-        String sql = "UPDATE customers SET wallet_balance = ?, card_balance = ?, bonus_points = ? WHERE id = ?";
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setDouble(1, customer.getWalletBalance());
-            ps.setDouble(2, customer.getCardBalance());
-            ps.setDouble(3, customer.getBonusPoints());
+    public boolean update(Customer customer) {
+        try (PooledConnection conn = DatabaseManager.getConnection()) {
+            PreparedStatement ps = conn.prepare(UPDATE_SQL);
+            ps.setLong(1, customer.getWalletKopecks());
+            ps.setLong(2, customer.getCardKopecks());
+            ps.setLong(3, customer.getBonusKopecks());
             ps.setInt(4, customer.getId());
+            ps.setLong(5, customer.getVersion());
+            if (ps.executeUpdate() == 1) {
+                // При откате транзакции версия в БД останется прежней — вернём её и объекту
+                long version = customer.getVersion();
+                customer.setVersion(version + 1);
+                DatabaseManager.onRollback(() -> customer.setVersion(version));
+                return true;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    @Override
+    public int insert(Customer customer) {
+        String sql = "INSERT INTO customers (name, wallet_kopecks, card_kopecks, bonus_kopecks) VALUES (?, ?, ?, ?)";
+        try (PooledConnection conn = DatabaseManager.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            ps.setString(1, customer.getName());
+            ps.setLong(2, customer.getWalletKopecks());
+            ps.setLong(3, customer.getCardKopecks());
+            ps.setLong(4, customer.getBonusKopecks());
             ps.executeUpdate();
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                if (keys.next()) {
+                    customer.setId(keys.getInt(1));
+                    return customer.getId();
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean debit(int customerId, PaymentMethod method, long amountKopecks) {
+        String sql = switch (method) {
+            case Наличные -> DEBIT_CASH_SQL;
+            case Карта -> DEBIT_CARD_SQL;
+            case Бонусы -> DEBIT_BONUS_SQL;
+        };
+        try (PooledConnection conn = DatabaseManager.getConnection()) {
+            PreparedStatement ps = conn.prepare(sql);
+            ps.setLong(1, amountKopecks);
+            ps.setInt(2, customerId);
+            ps.setLong(3, amountKopecks);
+            return ps.executeUpdate() == 1;
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        return false;
     }
 
     private Customer mapRowToCustomer(ResultSet rs) throws SQLException {
-        return new Customer(
+        return Customer.ofKopecks(
                 rs.getInt("id"),
                 rs.getString("name"),
-                rs.getDouble("wallet_balance"),
-                rs.getDouble("card_balance"),
-                rs.getDouble("bonus_points")
+                rs.getLong("wallet_kopecks"),
+                rs.getLong("card_kopecks"),
+                rs.getLong("bonus_kopecks"),
+                rs.getLong("version")
         );
     }
 }
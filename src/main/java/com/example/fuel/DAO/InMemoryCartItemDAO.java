@@ -0,0 +1,360 @@
+package com.example.fuel.DAO;
+
+import com.example.fuel.db.DatabaseManager;
+import com.example.fuel.db.PooledConnection;
+import com.example.fuel.model.CartItem;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Корзины в памяти с отложенной записью в cart_items (write-behind).
+ *
+ * Корзина клиента загружается из БД при первом обращении, дальше чтение — поиск в карте,
+ * а добавление и удаление меняют только память и помечают корзину «грязной».
+ * Фоновый поток раз в flushIntervalMs переписывает грязные корзины в БД одной транзакцией,
+ * поэтому после сбоя теряются изменения не старше этого интервала.
+ *
+ * Очистка корзины при оплате (deleteAllByCustomerId) записывается в БД сразу,
+ * в транзакции оплаты, и тогда же корзина очищается в памяти (при ROLLBACK — возвращается).
+ * Пока транзакция держит соединение писателя, flush() её не видит, а после COMMIT
+ * корзина уже пуста и чиста — оплаченные строки не могут вернуться в БД.
+ *
+ * Новые строки получают id из собственного счётчика (продолжает AUTOINCREMENT таблицы),
+ * поэтому removeCartItem(id) работает до записи в БД. Все изменения корзин должны идти
+ * через один экземпляр — см. CartItemDAO.create().
+ * Если база пересоздана (DatabaseManager.getGeneration()), содержимое памяти сбрасывается.
+ *
+ * Фоновая запись запускается явно — start() (после того как объект полностью создан).
+ */
+public class InMemoryCartItemDAO implements CartItemDAO, AutoCloseable {
+
+    private static final long DEFAULT_FLUSH_INTERVAL_MS =
+            Long.getLong("smartfuel.cart.flushIntervalMs", 200);
+
+    private static volatile InMemoryCartItemDAO shared;
+
+    /** Корзина одного клиента. Все обращения — под её монитором. */
+    private static final class Cart {
+        final List<CartItem> items = new ArrayList<>();
+        boolean dirty;
+    }
+
+    /** Всё, что относится к одному «поколению» БД. */
+    private static final class State {
+        final long generation;
+        final Map<Integer, Cart> carts = new ConcurrentHashMap<>();
+        /** id строки → id клиента, чтобы delete(id) не перебирал все корзины. */
+        final Map<Integer, Integer> owners = new ConcurrentHashMap<>();
+        final AtomicInteger nextId;
+
+        State(long generation, int lastId) {
+            this.generation = generation;
+            this.nextId = new AtomicInteger(lastId);
+        }
+    }
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "cart-flusher");
+        t.setDaemon(true);
+        return t;
+    });
+    private final long flushIntervalMs;
+    private volatile State state;
+
+    public InMemoryCartItemDAO() {
+        this(DEFAULT_FLUSH_INTERVAL_MS);
+    }
+
+    public InMemoryCartItemDAO(long flushIntervalMs) {
+        this.flushIntervalMs = flushIntervalMs;
+    }
+
+    /** Запустить запись грязных корзин раз в flushIntervalMs. */
+    public InMemoryCartItemDAO start() {
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    /** Общий экземпляр (создаётся при первом обращении, дописывается при завершении JVM). */
+    public static InMemoryCartItemDAO shared() {
+        InMemoryCartItemDAO dao = shared;
+        if (dao == null) {
+            synchronized (InMemoryCartItemDAO.class) {
+                if (shared == null) {
+                    shared = new InMemoryCartItemDAO().start();
+                    DatabaseManager.beforeShutdown(shared::close);
+                }
+                dao = shared;
+            }
+        }
+        return dao;
+    }
+
+    @Override
+    public List<CartItem> getByCustomerId(int customerId) {
+        Cart cart = cart(state(), customerId);
+        synchronized (cart) {
+            List<CartItem> copy = new ArrayList<>(cart.items.size());
+            for (CartItem ci : cart.items) {
+                copy.add(copyOf(ci));
+            }
+            return copy;
+        }
+    }
+
+    /** Сначала дописываем грязные корзины, затем читаем из БД: там окажутся и незагруженные корзины. */
+    @Override
+    public List<CartItem> getAllByType(String itemType) {
+        flush();
+        return new CartItemDAOImpl().getAllByType(itemType);
+    }
+
+    @Override
+    public void insert(CartItem item) {
+        State s = state();
+        Cart cart = cart(s, item.getCustomerId());
+        int id = s.nextId.incrementAndGet();
+        item.setId(id);
+        synchronized (cart) {
+            cart.items.add(CartItem.ofMilli(id, item.getCustomerId(), item.getItemType(), item.getItemId(), item.getQuantityMilli()));
+            cart.dirty = true;
+        }
+        s.owners.put(id, item.getCustomerId());
+    }
+
+    @Override
+    public void delete(int id) {
+        State s = state();
+        Integer customerId = s.owners.get(id);
+        if (customerId == null) {
+            // Строки нет в загруженных корзинах — удаляем прямо в БД
+            deleteFromDatabase("DELETE FROM cart_items WHERE id = ?", id);
+            return;
+        }
+        Cart cart = cart(s, customerId);
+        synchronized (cart) {
+            cart.dirty |= cart.items.removeIf(ci -> ci.getId() == id);
+        }
+        s.owners.remove(id);
+    }
+
+    @Override
+    public boolean delete(int customerId, int id) {
+        State s = state();
+        Integer owner = s.owners.get(id);
+        if (owner == null) {
+            // Строки нет в загруженных корзинах — удаляем в БД, но только из корзины этого клиента
+            return deleteFromDatabase("DELETE FROM cart_items WHERE id = ? AND customer_id = ?", id, customerId) > 0;
+        }
+        if (owner != customerId) {
+            return false;
+        }
+        Cart cart = cart(s, customerId);
+        boolean removed;
+        synchronized (cart) {
+            removed = cart.items.removeIf(ci -> ci.getId() == id);
+            cart.dirty |= removed;
+        }
+        s.owners.remove(id);
+        return removed;
+    }
+
+    @Override
+    public void deleteByItem(int customerId, String itemType, int itemId) {
+        State s = state();
+        Cart cart = cart(s, customerId);
+        synchronized (cart) {
+            Iterator<CartItem> it = cart.items.iterator();
+            while (it.hasNext()) {
+                CartItem ci = it.next();
+                if (ci.getItemType().equals(itemType) && ci.getItemId() == itemId) {
+                    it.remove();
+                    s.owners.remove(ci.getId());
+                    cart.dirty = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Очистить корзину. Внутри транзакции (оплата) строки удаляются из БД в этой же транзакции,
+     * память очищается сразу, до COMMIT, — при откате строки и флаг dirty возвращаются.
+     */
+    @Override
+    public boolean deleteAllByCustomerId(int customerId) {
+        State s = state();
+        Cart cart = cart(s, customerId);
+        // Порядок блокировок как у flush(): сначала соединение писателя, потом корзина
+        if (!DatabaseManager.isInTransaction()) {
+            return DatabaseManager.inTransaction(() -> deleteAllByCustomerId(customerId));
+        }
+        List<CartItem> removed;
+        boolean wasDirty;
+        synchronized (cart) {
+            if (deleteFromDatabase("DELETE FROM cart_items WHERE customer_id = ?", customerId) < 0) {
+                return false;
+            }
+            removed = new ArrayList<>(cart.items);
+            wasDirty = cart.dirty;
+            for (CartItem ci : removed) {
+                s.owners.remove(ci.getId());
+            }
+            cart.items.clear();
+            cart.dirty = false;
+        }
+        DatabaseManager.onRollback(() -> {
+            synchronized (cart) {
+                // Строки старше добавленных после очистки — возвращаем их в начало
+                cart.items.addAll(0, removed);
+                cart.dirty |= wasDirty;
+            }
+            for (CartItem ci : removed) {
+                s.owners.put(ci.getId(), customerId);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Записать все грязные корзины в БД одной транзакцией
+     * (вызывается по таймеру; можно вызвать вручную, чтобы не ждать интервала).
+     */
+    public void flush() {
+        State s = state;
+        if (s == null || s.generation != DatabaseManager.getGeneration()) {
+            return;
+        }
+        List<Cart> flushed = new ArrayList<>();
+        boolean ok = DatabaseManager.inTransaction(() -> {
+            try (PooledConnection conn = DatabaseManager.getConnection()) {
+                PreparedStatement delete = conn.prepare("DELETE FROM cart_items WHERE customer_id = ?");
+                PreparedStatement insert = conn.prepare(
+                        "INSERT INTO cart_items (id, customer_id, item_type, item_id, quantity_ml) VALUES (?, ?, ?, ?, ?)");
+                for (Map.Entry<Integer, Cart> e : s.carts.entrySet()) {
+                    Cart cart = e.getValue();
+                    synchronized (cart) {
+                        if (!cart.dirty) continue;
+                        // Корзина переписывается целиком: удалить старые строки и вставить текущие
+                        delete.setInt(1, e.getKey());
+                        delete.executeUpdate();
+                        for (CartItem ci : cart.items) {
+                            insert.setInt(1, ci.getId());
+                            insert.setInt(2, ci.getCustomerId());
+                            insert.setString(3, ci.getItemType());
+                            insert.setInt(4, ci.getItemId());
+                            insert.setLong(5, ci.getQuantityMilli());
+                            insert.executeUpdate();
+                        }
+                        cart.dirty = false;
+                        flushed.add(cart);
+                    }
+                }
+            }
+            return true;
+        });
+        if (!ok) {
+            // Не записали — попробуем на следующем тике
+            for (Cart cart : flushed) {
+                synchronized (cart) {
+                    cart.dirty = true;
+                }
+            }
+        }
+    }
+
+    /** Записать изменения и остановить фоновый поток. */
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private State state() {
+        State s = state;
+        long generation = DatabaseManager.getGeneration();
+        if (s == null || s.generation != generation) {
+            synchronized (this) {
+                s = state;
+                if (s == null || s.generation != generation) {
+                    s = new State(generation, loadLastId());
+                    state = s;
+                }
+            }
+        }
+        return s;
+    }
+
+    /**
+     * Корзина клиента; при первом обращении загружается из БД. Запрос идёт вне computeIfAbsent,
+     * чтобы не держать блокировку карты корзин во время SQL; если корзину успел загрузить
+     * другой поток, берём его (строки те же, владельцы в owners совпадают).
+     */
+    private Cart cart(State s, int customerId) {
+        Cart cart = s.carts.get(customerId);
+        if (cart != null) {
+            return cart;
+        }
+        Cart loaded = new Cart();
+        for (CartItem ci : new CartItemDAOImpl().getByCustomerId(customerId)) {
+            loaded.items.add(ci);
+            // Владельцев — до публикации корзины: delete(id) не должен пойти мимо неё прямо в БД
+            s.owners.put(ci.getId(), customerId);
+        }
+        Cart existing = s.carts.putIfAbsent(customerId, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private static CartItem copyOf(CartItem ci) {
+        return CartItem.ofMilli(ci.getId(), ci.getCustomerId(), ci.getItemType(), ci.getItemId(), ci.getQuantityMilli());
+    }
+
+    /** Последний выданный id строки корзины (с учётом AUTOINCREMENT). */
+    private static int loadLastId() {
+        String sql = """
+                SELECT MAX(x) FROM (
+                    SELECT MAX(id) AS x FROM cart_items
+                    UNION ALL
+                    SELECT seq FROM sqlite_sequence WHERE name = 'cart_items'
+                )
+                """;
+        try (PooledConnection conn = DatabaseManager.getReadConnection()) {
+            PreparedStatement ps = conn.prepare(sql);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt(1);
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return 0;
+    }
+
+    /** Выполнить DELETE с параметрами; число удалённых строк (-1 при ошибке). */
+    private static int deleteFromDatabase(String sql, int... params) {
+        try (PooledConnection conn = DatabaseManager.getConnection()) {
+            PreparedStatement ps = conn.prepare(sql);
+            for (int i = 0; i < params.length; i++) {
+                ps.setInt(i + 1, params[i]);
+            }
+            return ps.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.fuel.DAO;
+
+import com.example.fuel.model.Payment;
+import java.util.List;
+
+/**
+ * DAO-интерфейс для журнала платежей (таблица payments).
+ */
+public interface PaymentDAO {
+    // Записать пачку платежей одной транзакцией (false — не удалось, ничего не записано)
+    boolean insertAll(List<Payment> payments);
+
+    List<Payment> getByCustomerId(int customerId);
+
+    // Сумма всех платежей клиента, коп.
+    long getTotalKopecksByCustomerId(int customerId);
+}
@@ -0,0 +1,81 @@
+package com.example.fuel.DAO;
+
+import com.example.fuel.db.DatabaseManager;
+import com.example.fuel.db.PooledConnection;
+import com.example.fuel.model.Payment;
+import com.example.fuel.model.PaymentMethod;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Реализация DAO для журнала платежей.
+ * Запись идёт пачками: все платежи пачки — один INSERT-пакет и один COMMIT.
+ */
+public class PaymentDAOImpl implements PaymentDAO {
+
+    @Override
+    public boolean insertAll(List<Payment> payments) {
+        if (payments.isEmpty()) {
+            return true;
+        }
+        String sql = "INSERT INTO payments (customer_id, method, amount_kopecks, created_at) VALUES (?, ?, ?, ?)";
+        return DatabaseManager.inTransaction(() -> {
+            try (PooledConnection conn = DatabaseManager.getConnection()) {
+                PreparedStatement ps = conn.prepare(sql);
+                ps.clearBatch();
+                for (Payment p : payments) {
+                    ps.setInt(1, p.getCustomerId());
+                    ps.setString(2, p.getMethod().name());
+                    ps.setLong(3, p.getAmountKopecks());
+                    ps.setLong(4, p.getCreatedAt());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            return true;
+        });
+    }
+
+    @Override
+    public List<Payment> getByCustomerId(int customerId) {
+        List<Payment> list = new ArrayList<>();
+        String sql = "SELECT * FROM payments WHERE customer_id = ? ORDER BY id";
+        try (PooledConnection conn = DatabaseManager.getReadConnection()) {
+            PreparedStatement ps = conn.prepare(sql);
+            ps.setInt(1, customerId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    list.add(Payment.ofKopecks(
+                            rs.getInt("id"),
+                            rs.getInt("customer_id"),
+                            PaymentMethod.valueOf(rs.getString("method")),
+                            rs.getLong("amount_kopecks"),
+                            rs.getLong("created_at")
+                    ));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return list;
+    }
+
+    @Override
+    public long getTotalKopecksByCustomerId(int customerId) {
+        String sql = "SELECT COALESCE(SUM(amount_kopecks), 0) FROM payments WHERE customer_id = ?";
+        try (PooledConnection conn = DatabaseManager.getReadConnection()) {
+            PreparedStatement ps = conn.prepare(sql);
+            ps.setInt(1, customerId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getLong(1);
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return 0;
+    }
+}
@@ -1,29 +1,47 @@
 package com.example.fuel.DAO;
 
+import com.example.fuel.model.CatalogKey;
 import com.example.fuel.model.FuelProduct;
+import com.example.fuel.model.Product;
 import com.example.fuel.model.ServiceProduct;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Интерфейс DAO для продуктов и услуг.
- * Мы храним топливо в таблице products и услуги в таблице services.
+ * Топливо и услуги хранятся в одной таблице catalog и различаются колонкой item_type
+ * (те же значения, что в cart_items: "PRODUCT" / "SERVICE").
  */
 public interface ProductDAO {
-    // Получить все FuelProduct из таблицы products
+    // Получить весь каталог (топливо и услуги) одним запросом
+    List<Product> getAll();
+
+    // Получить позиции каталога одним запросом (ключ → товар/услуга; отсутствующих ключей в карте нет)
+    Map<CatalogKey, Product> getByIds(Collection<CatalogKey> keys);
+
+    // Получить все FuelProduct
     List<FuelProduct> getAllFuelProducts();
 
     // Получить FuelProduct по ID
     FuelProduct getFuelProductById(int id);
 
-    // Обновить количество топлива (stockQty) у конкретного FuelProduct
-    void updateFuelStock(int id, double newStock);
+    // Обновить количество топлива (в миллилитрах) у конкретного FuelProduct
+    void updateFuelStock(int id, long newStockMilli);
+
+    // Изменить цену за литр топлива (в копейках)
+    void updateFuelPrice(int id, long newPriceKopecks);
+
+    // Уменьшить остатки сразу по нескольким позициям (ключ → тысячные доли) одним пакетом.
+    // Вычитание делается в SQL и не уходит ниже нуля; позиции без учёта остатка (услуги) не меняются
+    boolean decreaseStock(Map<CatalogKey, Long> milliByKey);
 
-    // Получить все ServiceProduct из таблицы services
+    // Получить все ServiceProduct
     List<ServiceProduct> getAllServiceProducts();
 
     // Получить ServiceProduct по ID
     ServiceProduct getServiceById(int id);
 
-    // Обновить количество услуг (stockQty) у конкретного ServiceProduct
-    void updateServiceStock(int id, double newStock);
+    // Изменить цену услуги (в копейках)
+    void updateServicePrice(int id, long newPriceKopecks);
 }
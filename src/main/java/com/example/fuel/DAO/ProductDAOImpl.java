@@ -1,87 +1,106 @@
 package com.example.fuel.DAO;
 
 import com.example.fuel.db.DatabaseManager;
+import com.example.fuel.db.PooledConnection;
 import com.example.fuel.factory.FuelProductFactory;
 import com.example.fuel.factory.ProductFactory;
 import com.example.fuel.factory.ServiceProductFactory;
+import com.example.fuel.model.CatalogKey;
 import com.example.fuel.model.FuelProduct;
+import com.example.fuel.model.Product;
 import com.example.fuel.model.ServiceProduct;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
- * Реализация ProductDAO: работа с таблицами products и services.
- * Используем фабричный паттерн (Factory), чтобы создавать объекты FuelProduct и ServiceProduct
- * прямо из ResultSet, инкапсулируя логику создания в соответствующих фабриках.
+ * Реализация ProductDAO: работа с таблицей catalog.
+ * Используем фабричный паттерн (Factory): фабрика выбирается по колонке item_type
+ * (FuelProductFactory для "PRODUCT", ServiceProductFactory для "SERVICE") и создаёт объект из ResultSet.
+ *
+ * catalog — таблица WITHOUT ROWID с первичным ключом (item_type, id): строки хранятся прямо
+ * в B-дереве ключа, поэтому поиск по ключу и выборка всех позиций одного типа
+ * читают только его, без второго обращения к таблице.
  */
 public class ProductDAOImpl implements ProductDAO {
 
+    private static final String SELECT = "SELECT item_type, id, name, price_kopecks, stock_ml FROM catalog";
+
+    private static final Map<String, ProductFactory> FACTORIES = Map.of(
+            CatalogKey.FUEL, new FuelProductFactory(),
+            CatalogKey.SERVICE, new ServiceProductFactory()
+    );
+
     /**
-     * Получить все FuelProduct из таблицы products.
-     * Создание объектов делегируется FuelProductFactory.
+     * Получить весь каталог одним запросом.
      */
     @Override
-    public List<FuelProduct> getAllFuelProducts() {
-        List<FuelProduct> list = new ArrayList<>();
-        String sql = "SELECT * FROM products";
-
-        try (Connection conn = DatabaseManager.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-
-            ProductFactory factory = new FuelProductFactory();
-            while (rs.next()) {
-                try {
-                    FuelProduct p = (FuelProduct) factory.createProduct(rs);
-                    list.add(p);
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                    // Можно логировать ошибку и продолжать
-                }
+    public List<Product> getAll() {
+        return query(SELECT + " ORDER BY item_type, id", null);
+    }
+
+    /**
+     * Получить несколько позиций одним запросом
+     * SELECT ... WHERE (item_type, id) IN (VALUES (?, ?), ...) — топливо и услуги вперемешку.
+     */
+    @Override
+    public Map<CatalogKey, Product> getByIds(Collection<CatalogKey> keys) {
+        Map<CatalogKey, Product> result = new HashMap<>();
+        Set<CatalogKey> distinct = new LinkedHashSet<>(keys);
+        if (distinct.isEmpty()) {
+            return result;
+        }
+        StringBuilder sql = new StringBuilder(SELECT).append(" WHERE (item_type, id) IN (VALUES ");
+        for (int i = 0; i < distinct.size(); i++) {
+            sql.append(i == 0 ? "(?, ?)" : ", (?, ?)");
+        }
+        sql.append(')');
+
+        List<Product> found = query(sql.toString(), ps -> {
+            int idx = 1;
+            for (CatalogKey key : distinct) {
+                ps.setString(idx++, key.itemType());
+                ps.setInt(idx++, key.itemId());
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
+        });
+        for (Product p : found) {
+            result.put(p.getKey(), p);
         }
-        return list;
+        return result;
     }
 
     /**
-     * Получить один FuelProduct по ID из таблицы products.
+     * Получить все FuelProduct.
+     */
+    @Override
+    public List<FuelProduct> getAllFuelProducts() {
+        return allOfType(CatalogKey.FUEL, FuelProduct.class);
+    }
+
+    /**
+     * Получить один FuelProduct по ID.
      */
     @Override
     public FuelProduct getFuelProductById(int id) {
-        String sql = "SELECT * FROM products WHERE id = ?";
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setInt(1, id);
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                try {
-                    ProductFactory factory = new FuelProductFactory();
-                    return (FuelProduct) factory.createProduct(rs);
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                }
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return null;
+        return (FuelProduct) getByKey(CatalogKey.fuel(id));
     }
 
     /**
-     * Обновить количество топлива (stock_qty) у конкретного FuelProduct.
+     * Обновить количество топлива (stock_ml) у конкретного FuelProduct.
      */
     @Override
-    public void updateFuelStock(int id, double newStock) {
-        String sql = "UPDATE products SET stock_qty = ? WHERE id = ?";
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+    public void updateFuelStock(int id, long newStockMilli) {
+        String sql = "UPDATE catalog SET stock_ml = ? WHERE item_type = 'PRODUCT' AND id = ?";
+        try (PooledConnection conn = DatabaseManager.getConnection()) {
+            PreparedStatement ps = conn.prepare(sql);
 
-            ps.setDouble(1, newStock);
+            ps.setLong(1, newStockMilli);
             ps.setInt(2, id);
             ps.executeUpdate();
         } catch (SQLException e) {
@@ -90,73 +109,129 @@ public class ProductDAOImpl implements ProductDAO {
     }
 
     /**
-     * Получить все ServiceProduct из таблицы services.
-     * Используем ServiceProductFactory для создания объектов.
+     * Изменить цену за литр у конкретного FuelProduct.
      */
     @Override
-    public List<ServiceProduct> getAllServiceProducts() {
-        List<ServiceProduct> list = new ArrayList<>();
-        String sql = "SELECT * FROM services";
-
-        try (Connection conn = DatabaseManager.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-
-            ProductFactory factory = new ServiceProductFactory();
-            while (rs.next()) {
-                try {
-                    ServiceProduct s = (ServiceProduct) factory.createProduct(rs);
-                    list.add(s);
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                }
+    public void updateFuelPrice(int id, long newPriceKopecks) {
+        updatePrice(CatalogKey.fuel(id), newPriceKopecks);
+    }
+
+    /**
+     * Пакетно уменьшить остатки. Вычитание выполняется в самом UPDATE,
+     * поэтому две кассы, продающие одно топливо, не затирают изменения друг друга.
+     * У услуг stock_ml = NULL — такие строки условие не затрагивает.
+     */
+    @Override
+    public boolean decreaseStock(Map<CatalogKey, Long> milliByKey) {
+        if (milliByKey.isEmpty()) {
+            return true;
+        }
+        String sql = "UPDATE catalog SET stock_ml = max(0, stock_ml - ?)"
+                + " WHERE item_type = ? AND id = ? AND stock_ml IS NOT NULL";
+        try (PooledConnection conn = DatabaseManager.getConnection()) {
+            PreparedStatement ps = conn.prepare(sql);
+            ps.clearBatch(); // запрос из кэша: на случай, если прошлый пакет оборвался ошибкой
+            for (Map.Entry<CatalogKey, Long> e : milliByKey.entrySet()) {
+                ps.setLong(1, e.getValue());
+                ps.setString(2, e.getKey().itemType());
+                ps.setInt(3, e.getKey().itemId());
+                ps.addBatch();
             }
+            ps.executeBatch();
+            return true;
         } catch (SQLException e) {
             e.printStackTrace();
         }
-        return list;
+        return false;
     }
 
     /**
-     * Получить ServiceProduct по ID из таблицы services.
+     * Получить все ServiceProduct.
+     */
+    @Override
+    public List<ServiceProduct> getAllServiceProducts() {
+        return allOfType(CatalogKey.SERVICE, ServiceProduct.class);
+    }
+
+    /**
+     * Получить ServiceProduct по ID.
      */
     @Override
     public ServiceProduct getServiceById(int id) {
-        String sql = "SELECT * FROM services WHERE id = ?";
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setInt(1, id);
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                try {
-                    ProductFactory factory = new ServiceProductFactory();
-                    return (ServiceProduct) factory.createProduct(rs);
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                }
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return null;
+        return (ServiceProduct) getByKey(CatalogKey.service(id));
     }
 
     /**
-     * Обновить "запас" услуги.
-     * Сейчас просто заглушка: если у services появится колонка stock_qty — здесь обновим.
+     * Изменить цену услуги.
      */
     @Override
-    public void updateServiceStock(int id, double newStock) {
-        // Пока что не обновляем ничего, но структура метода сохранена.
-        String sql = "UPDATE services SET price = price WHERE id = ?";
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+    public void updateServicePrice(int id, long newPriceKopecks) {
+        updatePrice(CatalogKey.service(id), newPriceKopecks);
+    }
 
-            ps.setInt(1, id);
+    private void updatePrice(CatalogKey key, long newPriceKopecks) {
+        String sql = "UPDATE catalog SET price_kopecks = ? WHERE item_type = ? AND id = ?";
+        try (PooledConnection conn = DatabaseManager.getConnection()) {
+            PreparedStatement ps = conn.prepare(sql);
+            ps.setLong(1, newPriceKopecks);
+            ps.setString(2, key.itemType());
+            ps.setInt(3, key.itemId());
             ps.executeUpdate();
         } catch (SQLException e) {
             e.printStackTrace();
         }
     }
+
+    private Product getByKey(CatalogKey key) {
+        List<Product> found = query(SELECT + " WHERE item_type = ? AND id = ?", ps -> {
+            ps.setString(1, key.itemType());
+            ps.setInt(2, key.itemId());
+        });
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    private <T extends Product> List<T> allOfType(String itemType, Class<T> type) {
+        List<T> list = new ArrayList<>();
+        for (Product p : query(SELECT + " WHERE item_type = ? ORDER BY id", ps -> ps.setString(1, itemType))) {
+            list.add(type.cast(p));
+        }
+        return list;
+    }
+
+    /** Заполнение параметров запроса. */
+    @FunctionalInterface
+    private interface Binder {
+        void bind(PreparedStatement ps) throws SQLException;
+    }
+
+    /**
+     * Общая часть всех выборок: выполняем запрос и создаём объекты фабрикой,
+     * выбранной по item_type строки. Строки неизвестного типа пропускаются.
+     */
+    private List<Product> query(String sql, Binder binder) {
+        List<Product> list = new ArrayList<>();
+        try (PooledConnection conn = DatabaseManager.getReadConnection()) {
+            PreparedStatement ps = conn.prepare(sql);
+            if (binder != null) {
+                binder.bind(ps);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ProductFactory factory = FACTORIES.get(rs.getString("item_type"));
+                    if (factory == null) {
+                        continue;
+                    }
+                    try {
+                        list.add(factory.createProduct(rs));
+                    } catch (SQLException e) {
+                        e.printStackTrace();
+                        // Можно логировать ошибку и продолжать
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return list;
+    }
 }
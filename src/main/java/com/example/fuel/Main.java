@@ -3,18 +3,49 @@ package com.example.fuel;
 
 import javafx.application.Application;
 import com.example.fuel.db.DatabaseInitializer;
+import com.example.fuel.load.LoadGenerator;
+import com.example.fuel.presenter.SmartFuelPresenter;
+import com.example.fuel.server.HeadlessServer;
+import com.example.fuel.storage.StorageProvider;
 import com.example.fuel.view.MainApp;
 
+import java.io.IOException;
+import java.util.Arrays;
+
 /**
  * Точка входа в приложение.
  * Сначала инициализируем базу данных, затем запускаем JavaFX через MainApp.
+ *
+ * С аргументом --headless (или -Dsmartfuel.headless=true) окно не открывается и JavaFX не загружается:
+ * поднимается HTTP API для терминалов (см. HeadlessServer).
+ * С аргументом --load — нагрузочный прогон без UI (см. LoadGenerator).
  */
 public class Main {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (Arrays.asList(args).contains("--load")) {
+            LoadGenerator.main(args);
+            return;
+        }
+        if (Boolean.getBoolean("smartfuel.headless") || Arrays.asList(args).contains("--headless")) {
+            startHeadless();
+            return;
+        }
         // 1) Инициализация SQLite-базы (таблицы и начальные данные)
         DatabaseInitializer.initialize();
         // 2) Запуск JavaFX-приложения (MainApp наследует Application и содержит свой main)
         Application.launch(MainApp.class, args);
     }
-}
 
+    private static void startHeadless() throws IOException {
+        long started = System.nanoTime();
+        StorageProvider storage = StorageProvider.fromConfig();
+        if (storage == StorageProvider.sqlite()) {
+            DatabaseInitializer.initialize();
+        }
+        HeadlessServer server = new HeadlessServer(new SmartFuelPresenter(storage).startReservationSweep(), HeadlessServer.DEFAULT_PORT).start();
+        // Поток HttpServer не демон — JVM работает, пока сервер не остановят (Ctrl+C)
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close, "http-shutdown"));
+        System.out.println("SmartFuel: HTTP API на порту " + server.getPort()
+                + " (запуск " + (System.nanoTime() - started) / 1_000_000 + " мс)");
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.fuel.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограниченный пул SQLite-соединений.
+ * Соединения открываются лениво (не больше maxSize) и переиспользуются,
+ * поэтому открытие файла БД происходит один раз, а не на каждый вызов DAO.
+ */
+public class ConnectionPool {
+
+    /** Как открыть новое физическое соединение. */
+    @FunctionalInterface
+    public interface ConnectionOpener {
+        Connection open() throws SQLException;
+    }
+
+    private final String name;
+    private final ConnectionOpener opener;
+    private final boolean readOnly;
+    private final long acquireTimeoutMs;
+    private final int statementCacheSize;
+
+    private final BlockingQueue<PooledConnection> idle;
+    private final Semaphore permits;
+    private volatile boolean closed;
+
+    public ConnectionPool(String name, int maxSize, long acquireTimeoutMs,
+                          boolean readOnly, int statementCacheSize, ConnectionOpener opener) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Размер пула должен быть больше нуля: " + maxSize);
+        }
+        this.name = name;
+        this.opener = opener;
+        this.readOnly = readOnly;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.statementCacheSize = statementCacheSize;
+        this.idle = new ArrayBlockingQueue<>(maxSize);
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Взять соединение из пула. Если свободных нет и лимит не исчерпан — открывается новое,
+     * иначе ждём освобождения не дольше acquireTimeoutMs.
+     */
+    public PooledConnection acquire() throws SQLException {
+        if (closed) {
+            throw new SQLException("Пул соединений '" + name + "' закрыт");
+        }
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Нет свободных соединений в пуле '" + name + "' за "
+                        + acquireTimeoutMs + " мс");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Ожидание соединения прервано", e);
+        }
+
+        try {
+            PooledConnection pc = idle.poll();
+            if (pc == null) {
+                pc = new PooledConnection(opener.open(), this, readOnly, statementCacheSize);
+            }
+            return pc;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /** Вернуть соединение (вызывается из PooledConnection.close()). */
+    void release(PooledConnection pc) {
+        Connection conn = pc.getConnection();
+        boolean reusable;
+        try {
+            reusable = !closed && !conn.isClosed();
+            // Незавершённая транзакция не должна «переехать» к следующему пользователю
+            if (reusable && !conn.getAutoCommit()) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            reusable = false;
+        }
+
+        if (!reusable || !idle.offer(pc)) {
+            pc.closePhysical();
+        } else if (closed && idle.remove(pc)) {
+            // пул закрыли, пока соединение возвращалось
+            pc.closePhysical();
+        }
+        permits.release();
+    }
+
+    /** Закрыть пул: свободные соединения закрываются сразу, выданные — при возврате. */
+    public void close() {
+        closed = true;
+        PooledConnection pc;
+        while ((pc = idle.poll()) != null) {
+            pc.closePhysical();
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /** Количество открытых, но свободных соединений. */
+    public int getIdleCount() {
+        return idle.size();
+    }
+}
@@ -1,13 +1,16 @@
 package com.example.fuel.db;
 
-import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.List;
 
 /**
  * Инициализатор базы данных: создаёт таблицы, а затем вставляет
  * начальные данные только в том случае, если таблицы пусты.
+ *
+ * Схема версионируется через PRAGMA user_version: при старте выполняются только
+ * миграции с номером больше текущего, а при актуальной версии DDL не выполняется вовсе.
  */
 public class DatabaseInitializer {
 
@@ -80,43 +83,144 @@ public class DatabaseInitializer {
         ('Иван Иванов', 1000.00, 2000.00, 150.00);
         """;
 
-    public static void initialize() {
-        try (Connection conn = DatabaseManager.getConnection();
-             Statement stmt = conn.createStatement()) {
+    /**
+     * Миграции схемы в порядке возрастания версии.
+     * Новые изменения схемы добавляются только в конец списка новым номером.
+     */
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "таблицы и начальные данные", DatabaseInitializer::createTablesAndSeed),
+            Migration.ofSql(2, "индексы по клиенту для корзины и платежей",
+                    // (customer_id, item_type, item_id) покрывает и выборку только по customer_id
+                    "CREATE INDEX IF NOT EXISTS idx_cart_items_customer_item ON cart_items(customer_id, item_type, item_id)",
+                    "CREATE INDEX IF NOT EXISTS idx_payments_customer ON payments(customer_id)",
+                    "ANALYZE"),
+            Migration.ofSql(3, "время платежа в журнале",
+                    "ALTER TABLE payments ADD COLUMN created_at INTEGER NOT NULL DEFAULT 0"),
+            Migration.ofSql(4, "версия строки клиента для оптимистичной блокировки",
+                    "ALTER TABLE customers ADD COLUMN version INTEGER NOT NULL DEFAULT 0"),
+            Migration.ofSql(5, "деньги в копейках, количество в тысячных (INTEGER вместо REAL)",
+                    "ALTER TABLE products ADD COLUMN price_kopecks INTEGER NOT NULL DEFAULT 0",
+                    "ALTER TABLE products ADD COLUMN stock_ml INTEGER NOT NULL DEFAULT 0",
+                    "UPDATE products SET price_kopecks = CAST(round(price * 100) AS INTEGER),"
+                            + " stock_ml = CAST(round(stock_qty * 1000) AS INTEGER)",
+                    "ALTER TABLE products DROP COLUMN price",
+                    "ALTER TABLE products DROP COLUMN stock_qty",
+
+                    "ALTER TABLE services ADD COLUMN price_kopecks INTEGER NOT NULL DEFAULT 0",
+                    "UPDATE services SET price_kopecks = CAST(round(price * 100) AS INTEGER)",
+                    "ALTER TABLE services DROP COLUMN price",
+
+                    "ALTER TABLE customers ADD COLUMN wallet_kopecks INTEGER NOT NULL DEFAULT 0",
+                    "ALTER TABLE customers ADD COLUMN card_kopecks INTEGER NOT NULL DEFAULT 0",
+                    "ALTER TABLE customers ADD COLUMN bonus_kopecks INTEGER NOT NULL DEFAULT 0",
+                    "UPDATE customers SET wallet_kopecks = CAST(round(wallet_balance * 100) AS INTEGER),"
+                            + " card_kopecks = CAST(round(card_balance * 100) AS INTEGER),"
+                            + " bonus_kopecks = CAST(round(bonus_points * 100) AS INTEGER)",
+                    "ALTER TABLE customers DROP COLUMN wallet_balance",
+                    "ALTER TABLE customers DROP COLUMN card_balance",
+                    "ALTER TABLE customers DROP COLUMN bonus_points",
+
+                    "ALTER TABLE cart_items ADD COLUMN quantity_ml INTEGER NOT NULL DEFAULT 0",
+                    "UPDATE cart_items SET quantity_ml = CAST(round(quantity * 1000) AS INTEGER)",
+                    "ALTER TABLE cart_items DROP COLUMN quantity",
+
+                    "ALTER TABLE payments ADD COLUMN amount_kopecks INTEGER NOT NULL DEFAULT 0",
+                    "UPDATE payments SET amount_kopecks = CAST(round(amount * 100) AS INTEGER)",
+                    "ALTER TABLE payments DROP COLUMN amount"),
+            // Ключ (item_type, id): id топлива и услуг пересекаются, а cart_items ссылается именно на пару.
+            // WITHOUT ROWID — строки лежат в B-дереве первичного ключа, он же покрывающий индекс.
+            // stock_ml = NULL у услуг (остаток не ведётся) заменяет прежний is_weighted.
+            Migration.ofSql(6, "единая таблица каталога с типом позиции",
+                    """
+                    CREATE TABLE catalog (
+                        item_type TEXT NOT NULL,
+                        id INTEGER NOT NULL,
+                        name TEXT NOT NULL,
+                        price_kopecks INTEGER NOT NULL,
+                        stock_ml INTEGER,
+                        PRIMARY KEY (item_type, id)
+                    ) WITHOUT ROWID
+                    """,
+                    "INSERT INTO catalog (item_type, id, name, price_kopecks, stock_ml)"
+                            + " SELECT 'PRODUCT', id, name, price_kopecks, stock_ml FROM products",
+                    "INSERT INTO catalog (item_type, id, name, price_kopecks, stock_ml)"
+                            + " SELECT 'SERVICE', id, name, price_kopecks, NULL FROM services",
+                    "DROP TABLE products",
+                    "DROP TABLE services",
+                    "ANALYZE")
+    );
+
+    /** Версия схемы, которую ожидает код. */
+    public static final int LATEST_VERSION = MIGRATIONS.get(MIGRATIONS.size() - 1).getVersion();
 
-            // Шаг 1: создаём все таблицы, если их ещё нет
-            stmt.execute(CREATE_PRODUCTS_TABLE);
-            stmt.execute(CREATE_SERVICES_TABLE);
-            stmt.execute(CREATE_CUSTOMERS_TABLE);
-            stmt.execute(CREATE_CART_ITEMS_TABLE);
-            stmt.execute(CREATE_PAYMENTS_TABLE);
-
-            // Шаг 2: проверяем, пусты ли таблицы, и только тогда вставляем начальные данные
+    public static void initialize() {
+        // Файл БД мог быть удалён или заменён — переоткрываем пулы соединений
+        DatabaseManager.reset();
 
-            // Проверка продуктов
-            ResultSet rs = stmt.executeQuery("SELECT COUNT(*) AS cnt FROM products");
-            if (rs.next() && rs.getInt("cnt") == 0) {
-                stmt.execute(INSERT_INITIAL_PRODUCTS);
-            }
-            rs.close();
+        try (PooledConnection conn = DatabaseManager.getConnection();
+             Statement stmt = conn.createStatement()) {
 
-            // Проверка услуг
-            rs = stmt.executeQuery("SELECT COUNT(*) AS cnt FROM services");
-            if (rs.next() && rs.getInt("cnt") == 0) {
-                stmt.execute(INSERT_INITIAL_SERVICES);
+            int current = readUserVersion(stmt);
+            if (current >= LATEST_VERSION) {
+                // Схема актуальна — никаких DDL при старте
+                return;
             }
-            rs.close();
 
-            // Проверка клиентов
-            rs = stmt.executeQuery("SELECT COUNT(*) AS cnt FROM customers");
-            if (rs.next() && rs.getInt("cnt") == 0) {
-                stmt.execute(INSERT_INITIAL_CUSTOMER);
+            for (Migration m : MIGRATIONS) {
+                if (m.getVersion() <= current) {
+                    continue;
+                }
+                // Каждый шаг вместе с новым номером версии — одной транзакцией
+                conn.setAutoCommit(false);
+                try {
+                    m.apply(stmt);
+                    stmt.execute("PRAGMA user_version = " + m.getVersion());
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw new SQLException("Миграция " + m.getVersion() + " (" + m.getDescription()
+                            + ") не выполнена: " + e.getMessage(), e);
+                } finally {
+                    conn.setAutoCommit(true);
+                }
             }
-            rs.close();
 
-            System.out.println("Инициализация БД завершена (таблицы созданы, начальные данные проверены).");
+            System.out.println("Инициализация БД завершена (схема обновлена с версии " + current
+                    + " до " + LATEST_VERSION + ").");
         } catch (SQLException e) {
             System.err.println("Ошибка инициализации БД: " + e.getMessage());
         }
     }
+
+    private static int readUserVersion(Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Миграция 1: создаём все таблицы, если их ещё нет, и вставляем начальные данные
+     * только в пустые таблицы (база, созданная до появления миграций, проходит этот шаг без изменений).
+     */
+    private static void createTablesAndSeed(Statement stmt) throws SQLException {
+        stmt.execute(CREATE_PRODUCTS_TABLE);
+        stmt.execute(CREATE_SERVICES_TABLE);
+        stmt.execute(CREATE_CUSTOMERS_TABLE);
+        stmt.execute(CREATE_CART_ITEMS_TABLE);
+        stmt.execute(CREATE_PAYMENTS_TABLE);
+
+        seedIfEmpty(stmt, "products", INSERT_INITIAL_PRODUCTS);
+        seedIfEmpty(stmt, "services", INSERT_INITIAL_SERVICES);
+        seedIfEmpty(stmt, "customers", INSERT_INITIAL_CUSTOMER);
+    }
+
+    private static void seedIfEmpty(Statement stmt, String table, String insertSql) throws SQLException {
+        boolean empty;
+        try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) AS cnt FROM " + table)) {
+            empty = rs.next() && rs.getInt("cnt") == 0;
+        }
+        if (empty) {
+            stmt.execute(insertSql);
+        }
+    }
 }
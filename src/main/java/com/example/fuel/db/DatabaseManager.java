@@ -1,19 +1,339 @@
 package com.example.fuel.db;
 
+import org.sqlite.SQLiteConfig;
+
+import java.io.File;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Отвечает за подключение к SQLite-базе данных.
- * При первом вызове создаёт файл smart_fuel.db в корне проекта.
+ * При первом вызове создаёт файл smart_fuel.db в корне проекта
+ * (другой файл — -Dsmartfuel.db.file=... или setDatabaseFile(), например для бенчмарков).
+ *
+ * Соединения берутся из двух пулов:
+ * – один «писатель» (все изменения идут через него, SQLite всё равно допускает одного писателя);
+ * – несколько «читателей» с PRAGMA query_only = 1, которые в режиме WAL
+ *   работают параллельно с записью.
+ * journal_mode=WAL, synchronous=NORMAL и busy_timeout задаются один раз при открытии соединения
+ * (synchronous можно поднять до FULL через -Dsmartfuel.db.synchronous=FULL — тогда каждый COMMIT
+ * ждёт fsync, и выгоднее включить групповой COMMIT, см. GroupCommitter).
+ *
+ * inTransaction() привязывает соединение писателя к текущему потоку: все вызовы DAO внутри
+ * (и чтение, и запись) получают это же соединение и попадают в один COMMIT.
  */
 public class DatabaseManager {
 
-    private static final String DATABASE_URL = "jdbc:sqlite:smart_fuel.db";
+    private static volatile String databaseFile =
+            System.getProperty("smartfuel.db.file", "smart_fuel.db");
+
+    /** Сколько ждать блокировку БД, прежде чем SQLite вернёт SQLITE_BUSY. */
+    private static final int BUSY_TIMEOUT_MS = 5000;
+    /** Сколько ждать свободное соединение в пуле. */
+    private static final long ACQUIRE_TIMEOUT_MS = 30_000;
+    private static final int READ_POOL_SIZE =
+            Integer.getInteger("smartfuel.db.readPoolSize", 4);
+    /** Сколько подготовленных запросов держать на одно соединение. */
+    private static final int STATEMENT_CACHE_SIZE =
+            Integer.getInteger("smartfuel.db.statementCacheSize", 64);
+    private static final SQLiteConfig.SynchronousMode SYNCHRONOUS = SQLiteConfig.SynchronousMode.valueOf(
+            System.getProperty("smartfuel.db.synchronous", "NORMAL"));
+
+    private static final Object LOCK = new Object();
+    private static volatile ConnectionPool writePool;
+    private static volatile ConnectionPool readPool;
+
+    /** Соединение открытой транзакции текущего потока. */
+    private static final ThreadLocal<PooledConnection> CURRENT_TX = new ThreadLocal<>();
+    /** Действия, которые нужно выполнить после COMMIT текущей транзакции. */
+    private static final ThreadLocal<List<Runnable>> AFTER_COMMIT = new ThreadLocal<>();
+    /** Компенсации изменений в памяти, которые нужно выполнить при ROLLBACK текущей транзакции. */
+    private static final ThreadLocal<List<Runnable>> ON_ROLLBACK = new ThreadLocal<>();
+
+    /** Номер «поколения» базы: растёт при каждом reset(), по нему кэши понимают, что БД пересоздана. */
+    private static volatile long generation;
+
+    /** Работа, выполняемая в одной транзакции. false — откатить. */
+    @FunctionalInterface
+    public interface TransactionWork {
+        boolean run() throws SQLException;
+    }
+
+    /** Что выполнить при завершении JVM до закрытия соединений (например, дописать журнал платежей). */
+    private static final List<Runnable> BEFORE_SHUTDOWN = new CopyOnWriteArrayList<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (Runnable task : BEFORE_SHUTDOWN) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+            shutdown();
+        }, "db-shutdown"));
+    }
+
+    // Получить соединение для записи (единственный писатель)
+    public static PooledConnection getConnection() throws SQLException {
+        PooledConnection tx = CURRENT_TX.get();
+        if (tx != null) {
+            return tx.retain();
+        }
+        return writePool().acquire();
+    }
+
+    // Получить соединение только для чтения (внутри транзакции — её соединение, чтобы видеть свои изменения)
+    public static PooledConnection getReadConnection() throws SQLException {
+        PooledConnection tx = CURRENT_TX.get();
+        if (tx != null) {
+            return tx.retain();
+        }
+        return readPool().acquire();
+    }
+
+    /**
+     * Выполнить work в одной транзакции на соединении писателя.
+     * COMMIT — если work вернула true, ROLLBACK — если false или возникла ошибка.
+     * Вложенный вызов выполняется в уже открытой транзакции как точка сохранения (inSavepoint):
+     * его false откатывает только его изменения, а решение о COMMIT остаётся за внешней работой.
+     */
+    public static boolean inTransaction(TransactionWork work) {
+        if (CURRENT_TX.get() != null) {
+            try {
+                return inSavepoint(work);
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return false;
+            }
+        }
+
+        List<Runnable> afterCommit = new ArrayList<>();
+        List<Runnable> onRollback = new ArrayList<>();
+        boolean committed = false;
+        try (PooledConnection conn = writePool().acquire()) {
+            conn.setAutoCommit(false);
+            CURRENT_TX.set(conn);
+            AFTER_COMMIT.set(afterCommit);
+            ON_ROLLBACK.set(onRollback);
+            boolean ok = false;
+            try {
+                ok = work.run();
+            } catch (SQLException | RuntimeException e) {
+                e.printStackTrace();
+            } finally {
+                CURRENT_TX.remove();
+                AFTER_COMMIT.remove();
+                ON_ROLLBACK.remove();
+                if (ok) {
+                    conn.commit();
+                } else {
+                    conn.rollback();
+                }
+                conn.setAutoCommit(true);
+            }
+            committed = ok;
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        if (committed) {
+            afterCommit.forEach(Runnable::run);
+        } else {
+            runCompensations(onRollback, 0);
+        }
+        return committed;
+    }
+
+    /**
+     * Выполнить work внутри текущей транзакции как отдельную точку сохранения (SAVEPOINT):
+     * если work вернула false или упала, откатываются только её изменения и её afterCommit-действия,
+     * а остальная транзакция продолжается. Вне транзакции — то же, что inTransaction().
+     *
+     * @throws SQLException если не удалось создать или откатить точку сохранения
+     *                      (тогда состояние транзакции неизвестно и её нужно откатить целиком)
+     */
+    public static boolean inSavepoint(TransactionWork work) throws SQLException {
+        PooledConnection tx = CURRENT_TX.get();
+        if (tx == null) {
+            return inTransaction(work);
+        }
+        List<Runnable> actions = AFTER_COMMIT.get();
+        int mark = actions.size();
+        List<Runnable> compensations = ON_ROLLBACK.get();
+        int compensationMark = compensations.size();
+        Connection conn = tx.getConnection();
+        Savepoint savepoint = conn.setSavepoint();
+        boolean ok = false;
+        try {
+            ok = work.run();
+        } catch (SQLException | RuntimeException e) {
+            e.printStackTrace();
+        }
+        if (!ok) {
+            conn.rollback(savepoint);
+            actions.subList(mark, actions.size()).clear();
+            runCompensations(compensations, compensationMark);
+        }
+        conn.releaseSavepoint(savepoint);
+        return ok;
+    }
+
+    /**
+     * Выполнить action после успешного COMMIT текущей транзакции
+     * (вне транзакции — сразу). При откате действие отбрасывается.
+     */
+    public static void afterCommit(Runnable action) {
+        List<Runnable> actions = AFTER_COMMIT.get();
+        if (actions != null) {
+            actions.add(action);
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Выполнить action, если текущая транзакция (или точка сохранения, внутри которой вызван метод)
+     * будет откачена: так возвращают состояние в памяти, изменённое вместе с БД до COMMIT.
+     * Вне транзакции откатывать нечего — действие отбрасывается.
+     */
+    public static void onRollback(Runnable action) {
+        List<Runnable> actions = ON_ROLLBACK.get();
+        if (actions != null) {
+            actions.add(action);
+        }
+    }
+
+    /** Выполнить компенсации, начиная с from, в обратном порядке и убрать их из списка. */
+    private static void runCompensations(List<Runnable> actions, int from) {
+        for (int i = actions.size() - 1; i >= from; i--) {
+            try {
+                actions.get(i).run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        actions.subList(from, actions.size()).clear();
+    }
+
+    /**
+     * Зарегистрировать действие, которое выполнится при завершении JVM,
+     * пока соединения с БД ещё открыты.
+     */
+    public static void beforeShutdown(Runnable task) {
+        BEFORE_SHUTDOWN.add(task);
+    }
+
+    /** Путь к файлу БД, с которым работают пулы. */
+    public static String getDatabaseFile() {
+        return databaseFile;
+    }
+
+    /**
+     * Переключиться на другой файл БД: текущие соединения закрываются,
+     * кэши увидят новое поколение и перечитают данные.
+     */
+    public static void setDatabaseFile(String path) {
+        databaseFile = path;
+        reset();
+    }
+
+    public static long getGeneration() {
+        return generation;
+    }
+
+    /** true — текущий поток находится внутри inTransaction(). */
+    public static boolean isInTransaction() {
+        return CURRENT_TX.get() != null;
+    }
+
+    /**
+     * Закрыть пулы. Следующий вызов getConnection() откроет их заново.
+     * Если файл БД к этому моменту удалён, убираем и оставшиеся от него -wal/-shm,
+     * иначе SQLite попытается «восстановить» старый журнал в новую пустую базу.
+     */
+    public static void reset() {
+        shutdown();
+        synchronized (LOCK) {
+            generation++;
+        }
+        String file = databaseFile;
+        if (!new File(file).exists()) {
+            //noinspection ResultOfMethodCallIgnored
+            new File(file + "-wal").delete();
+            //noinspection ResultOfMethodCallIgnored
+            new File(file + "-shm").delete();
+        }
+    }
+
+    /** Закрыть все соединения (вызывается и при завершении JVM). */
+    public static void shutdown() {
+        synchronized (LOCK) {
+            if (writePool != null) {
+                writePool.close();
+                writePool = null;
+            }
+            if (readPool != null) {
+                readPool.close();
+                readPool = null;
+            }
+        }
+    }
+
+    private static ConnectionPool writePool() {
+        ConnectionPool pool = writePool;
+        if (pool == null) {
+            synchronized (LOCK) {
+                if (writePool == null) {
+                    writePool = new ConnectionPool("writer", 1, ACQUIRE_TIMEOUT_MS, false,
+                            STATEMENT_CACHE_SIZE, () -> open(false));
+                }
+                pool = writePool;
+            }
+        }
+        return pool;
+    }
+
+    private static ConnectionPool readPool() {
+        ConnectionPool pool = readPool;
+        if (pool == null) {
+            synchronized (LOCK) {
+                if (readPool == null) {
+                    readPool = new ConnectionPool("reader", READ_POOL_SIZE, ACQUIRE_TIMEOUT_MS, true,
+                            STATEMENT_CACHE_SIZE, () -> open(true));
+                }
+                pool = readPool;
+            }
+        }
+        return pool;
+    }
+
+    private static Connection open(boolean readOnly) throws SQLException {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setJournalMode(SQLiteConfig.JournalMode.WAL);
+        config.setSynchronous(SYNCHRONOUS);
+        config.setBusyTimeout(BUSY_TIMEOUT_MS);
+        if (!readOnly) {
+            // Писатель сразу берёт RESERVED-блокировку, чтобы не ловить BUSY при «повышении» чтения до записи
+            config.setTransactionMode(SQLiteConfig.TransactionMode.IMMEDIATE);
+        }
 
-    // Получить соединение
-    public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(DATABASE_URL);
+        Connection conn = DriverManager.getConnection("jdbc:sqlite:" + databaseFile, config.toProperties());
+        if (readOnly) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("PRAGMA query_only = 1");
+            } catch (SQLException e) {
+                conn.close();
+                throw e;
+            }
+        }
+        return conn;
     }
 }
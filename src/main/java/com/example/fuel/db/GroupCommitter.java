@@ -0,0 +1,225 @@
+package com.example.fuel.db;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Групповой COMMIT: работы многих терминалов выполняются одной транзакцией.
+ *
+ * submit() ставит работу в очередь. Поток «group-commit» забирает всё, что накопилось
+ * (не больше maxBatch, ожидая новые работы не дольше lingerMicros), открывает одну транзакцию
+ * и выполняет каждую работу в своей точке сохранения (DatabaseManager.inSavepoint):
+ * отказ одной продажи откатывает только её. Результаты отдаются вызывающим только после COMMIT.
+ * Если сам COMMIT не удался, все работы пачки завершаются с false.
+ *
+ * Для статистики считаются число пачек, их размер и время транзакции.
+ */
+public class GroupCommitter implements AutoCloseable {
+
+    private static final int DEFAULT_MAX_BATCH =
+            Integer.getInteger("smartfuel.groupCommit.maxBatch", 64);
+    private static final long DEFAULT_LINGER_MICROS =
+            Long.getLong("smartfuel.groupCommit.lingerMicros", 500);
+
+    private static volatile GroupCommitter shared;
+
+    private final int maxBatch;
+    private final long lingerMicros;
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    /** Проверка closed и постановка в очередь — под одним замком, чтобы close() не пропустил работу. */
+    private final Object queueLock = new Object();
+    private volatile boolean closed;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private final AtomicLong maxBatchSeen = new AtomicLong();
+    private final LongAdder commitNanos = new LongAdder();
+    private volatile long lastCommitNanos;
+
+    private static final class Request {
+        final DatabaseManager.TransactionWork work;
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        boolean ok;
+
+        Request(DatabaseManager.TransactionWork work) {
+            this.work = work;
+        }
+    }
+
+    public GroupCommitter() {
+        this(DEFAULT_MAX_BATCH, DEFAULT_LINGER_MICROS);
+    }
+
+    /**
+     * @param maxBatch     сколько работ максимум в одной транзакции
+     * @param lingerMicros сколько ждать, пока пачка наберётся (0 — брать только то, что уже в очереди)
+     */
+    public GroupCommitter(int maxBatch, long lingerMicros) {
+        if (maxBatch < 1) {
+            throw new IllegalArgumentException("maxBatch должно быть >= 1: " + maxBatch);
+        }
+        this.maxBatch = maxBatch;
+        this.lingerMicros = lingerMicros;
+        this.writer = new Thread(this::runWriter, "group-commit");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /** Общий экземпляр с настройками из системных свойств (создаётся при первом обращении). */
+    public static GroupCommitter shared() {
+        GroupCommitter gc = shared;
+        if (gc == null) {
+            synchronized (GroupCommitter.class) {
+                if (shared == null) {
+                    shared = new GroupCommitter();
+                    DatabaseManager.beforeShutdown(shared::close);
+                }
+                gc = shared;
+            }
+        }
+        return gc;
+    }
+
+    /**
+     * Поставить работу в очередь. Future завершится результатом работы после COMMIT её пачки.
+     * Если текущий поток уже внутри транзакции, работа выполняется сразу в ней
+     * (иначе поток ждал бы соединение писателя, которое держит сам).
+     */
+    public CompletableFuture<Boolean> submit(DatabaseManager.TransactionWork work) {
+        if (DatabaseManager.isInTransaction()) {
+            try {
+                return CompletableFuture.completedFuture(DatabaseManager.inSavepoint(work));
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return CompletableFuture.completedFuture(false);
+            }
+        }
+        synchronized (queueLock) {
+            if (!closed) {
+                Request request = new Request(work);
+                queue.add(request);
+                return request.result;
+            }
+        }
+        return CompletableFuture.completedFuture(DatabaseManager.inTransaction(work));
+    }
+
+    /** То же, что submit(), но ждёт результат. */
+    public boolean execute(DatabaseManager.TransactionWork work) {
+        return submit(work).join();
+    }
+
+    public int getMaxBatch() {
+        return maxBatch;
+    }
+
+    public long getLingerMicros() {
+        return lingerMicros;
+    }
+
+    /** Сколько транзакций (пачек) выполнено. */
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    /** Сколько работ прошло через пачки. */
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    public double getAverageBatchSize() {
+        long b = batches.sum();
+        return b == 0 ? 0.0 : (double) requests.sum() / b;
+    }
+
+    public long getMaxBatchSize() {
+        return maxBatchSeen.get();
+    }
+
+    /** Среднее время транзакции пачки (от BEGIN до конца COMMIT), мкс. */
+    public double getAverageCommitMicros() {
+        long b = batches.sum();
+        return b == 0 ? 0.0 : commitNanos.sum() / 1000.0 / b;
+    }
+
+    public double getLastCommitMicros() {
+        return lastCommitNanos / 1000.0;
+    }
+
+    /** Выполнить всё, что уже в очереди, и остановить поток. Новые работы пойдут своими транзакциями. */
+    @Override
+    public void close() {
+        synchronized (queueLock) {
+            closed = true;
+        }
+        writer.interrupt();
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Всё, что успело попасть в очередь до closed; после — submit() в очередь уже не кладёт
+        List<Request> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            commit(rest);
+        }
+    }
+
+    private void runWriter() {
+        List<Request> batch = new ArrayList<>(maxBatch);
+        while (!closed) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(lingerMicros);
+                while (batch.size() < maxBatch) {
+                    Request next = queue.poll();
+                    if (next == null) {
+                        long left = deadline - System.nanoTime();
+                        if (left <= 0) break;
+                        next = queue.poll(left, TimeUnit.NANOSECONDS);
+                        if (next == null) break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // close(): выполняем уже собранное и выходим, остаток очереди дочитает close()
+                if (!batch.isEmpty()) {
+                    commit(batch);
+                }
+                return;
+            }
+            commit(batch);
+            batch.clear();
+        }
+    }
+
+    private void commit(List<Request> batch) {
+        long start = System.nanoTime();
+        boolean committed = DatabaseManager.inTransaction(() -> {
+            for (Request r : batch) {
+                r.ok = DatabaseManager.inSavepoint(r.work);
+            }
+            return true;
+        });
+        long elapsed = System.nanoTime() - start;
+
+        batches.increment();
+        requests.add(batch.size());
+        maxBatchSeen.accumulateAndGet(batch.size(), Math::max);
+        commitNanos.add(elapsed);
+        lastCommitNanos = elapsed;
+
+        for (Request r : batch) {
+            r.result.complete(committed && r.ok);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.fuel.db;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Один шаг миграции схемы БД.
+ * Номер версии записывается в PRAGMA user_version после успешного выполнения шага.
+ */
+public class Migration {
+
+    /** Действия шага (выполняются внутри транзакции). */
+    @FunctionalInterface
+    public interface Step {
+        void apply(Statement stmt) throws SQLException;
+    }
+
+    private final int version;
+    private final String description;
+    private final Step step;
+
+    public Migration(int version, String description, Step step) {
+        this.version = version;
+        this.description = description;
+        this.step = step;
+    }
+
+    /** Миграция из набора готовых SQL-команд. */
+    public static Migration ofSql(int version, String description, String... statements) {
+        return new Migration(version, description, stmt -> {
+            for (String sql : statements) {
+                stmt.execute(sql);
+            }
+        });
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void apply(Statement stmt) throws SQLException {
+        step.apply(stmt);
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.fuel.db;
+
+import com.example.fuel.metrics.Metrics;
+import com.example.fuel.metrics.SqlEvent;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Соединение, выданное пулом ConnectionPool.
+ * close() не закрывает файл БД, а возвращает соединение обратно в пул,
+ * поэтому DAO продолжают использовать привычный try-with-resources.
+ * У каждого соединения свой кэш подготовленных запросов (StatementCache).
+ * Каждый выданный запрос учитывается в Metrics (число SQL-запросов на операцию),
+ * а во время записи JFR его выполнения пишутся событиями SqlEvent.
+ */
+public class PooledConnection implements AutoCloseable {
+
+    private final Connection connection;
+    private final ConnectionPool pool;
+    private final boolean readOnly;
+    private final StatementCache statementCache;
+    /** Сколько раз соединение повторно выдано внутри текущей транзакции (см. DatabaseManager.inTransaction). */
+    private int nestedHolds;
+
+    PooledConnection(Connection connection, ConnectionPool pool, boolean readOnly, int statementCacheSize) {
+        this.connection = connection;
+        this.pool = pool;
+        this.readOnly = readOnly;
+        this.statementCache = new StatementCache(connection, statementCacheSize);
+    }
+
+    /** Исходное JDBC-соединение (для операций, которых нет в этой обёртке). */
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /** true — соединение из пула читателей (PRAGMA query_only = 1). */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Взять подготовленный запрос из кэша соединения.
+     * Закрывать его не нужно (и нельзя): он переиспользуется следующими вызовами.
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        Metrics.countSqlStatement();
+        return SqlEvent.wrap(statementCache.prepare(sql), sql, readOnly);
+    }
+
+    /** Новый (некэшируемый) запрос — закрывается вызывающим кодом. */
+    public PreparedStatement prepareStatement(String sql) throws SQLException {
+        Metrics.countSqlStatement();
+        return SqlEvent.wrap(connection.prepareStatement(sql), sql, readOnly);
+    }
+
+    /** Некэшируемый запрос с возвратом сгенерированных ключей (Statement.RETURN_GENERATED_KEYS). */
+    public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+        Metrics.countSqlStatement();
+        return SqlEvent.wrap(connection.prepareStatement(sql, autoGeneratedKeys), sql, readOnly);
+    }
+
+    public Statement createStatement() throws SQLException {
+        return connection.createStatement();
+    }
+
+    public void setAutoCommit(boolean autoCommit) throws SQLException {
+        connection.setAutoCommit(autoCommit);
+    }
+
+    public void commit() throws SQLException {
+        connection.commit();
+    }
+
+    public void rollback() throws SQLException {
+        connection.rollback();
+    }
+
+    /** Закрыть физическое соединение вместе с кэшем запросов (вызывает пул). */
+    void closePhysical() {
+        statementCache.clear();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /** Повторная выдача того же соединения внутри транзакции. */
+    PooledConnection retain() {
+        nestedHolds++;
+        return this;
+    }
+
+    /** Вернуть соединение в пул (или только снять повторную выдачу внутри транзакции). */
+    @Override
+    public void close() {
+        if (nestedHolds > 0) {
+            nestedHolds--;
+            return;
+        }
+        pool.release(this);
+    }
+}
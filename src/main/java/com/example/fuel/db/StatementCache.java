@@ -0,0 +1,89 @@
+package com.example.fuel.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Кэш подготовленных запросов одного соединения (ключ — текст SQL).
+ * Размер ограничен, при переполнении вытесняется давно не использованный запрос (LRU).
+ *
+ * Соединение из пула в каждый момент принадлежит одному потоку,
+ * поэтому сам кэш не синхронизирован. Общие счётчики попаданий/промахов — по всем соединениям.
+ */
+public class StatementCache {
+
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+    private static final LongAdder EVICTIONS = new LongAdder();
+
+    private final Connection connection;
+    private final LinkedHashMap<String, PreparedStatement> statements;
+
+    public StatementCache(Connection connection, int maxSize) {
+        this.connection = connection;
+        // accessOrder = true: порядок обхода — от давно использованных к недавним
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > maxSize) {
+                    closeQuietly(eldest.getValue());
+                    EVICTIONS.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Вернуть подготовленный запрос для sql (из кэша или новый).
+     * Вызывающий код НЕ закрывает его — запрос живёт, пока живёт соединение.
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement ps = statements.get(sql);
+        if (ps != null && !ps.isClosed()) {
+            HITS.increment();
+            return ps;
+        }
+        MISSES.increment();
+        ps = connection.prepareStatement(sql);
+        statements.put(sql, ps);
+        return ps;
+    }
+
+    public int size() {
+        return statements.size();
+    }
+
+    /** Закрыть все запросы (перед закрытием физического соединения). */
+    public void clear() {
+        for (PreparedStatement ps : statements.values()) {
+            closeQuietly(ps);
+        }
+        statements.clear();
+    }
+
+    public static long getHitCount() {
+        return HITS.sum();
+    }
+
+    public static long getMissCount() {
+        return MISSES.sum();
+    }
+
+    public static long getEvictionCount() {
+        return EVICTIONS.sum();
+    }
+
+    private static void closeQuietly(PreparedStatement ps) {
+        try {
+            ps.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -13,7 +13,7 @@ import java.sql.SQLException;
 public class FuelProductFactory implements ProductFactory {
 
     /**
-     * Создаёт FuelProduct из строки таблицы products (ResultSet).
+     * Создаёт FuelProduct из строки каталога с item_type = 'PRODUCT' (ResultSet).
      * Используется DAO при чтении из БД.
      */
     @Override
@@ -21,8 +21,8 @@ public class FuelProductFactory implements ProductFactory {
         return new FuelProduct(
                 rs.getInt("id"),            // ID топлива
                 rs.getString("name"),       // Название топлива
-                rs.getDouble("price"),      // Цена за литр
-                rs.getDouble("stock_qty")   // Количество на складе (в литрах)
+                rs.getLong("price_kopecks"), // Цена за литр, коп.
+                rs.getLong("stock_ml")       // Количество на складе, мл
         );
     }
 }
@@ -1,5 +1,7 @@
 package com.example.fuel.factory;
 
+import com.example.fuel.model.Product;
+
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
@@ -8,5 +10,5 @@ import java.sql.SQLException;
  * Позволяет использовать единый метод createProduct для всех типов продуктов.
  */
 public interface ProductFactory {
-    Object createProduct(ResultSet rs) throws SQLException;
+    Product createProduct(ResultSet rs) throws SQLException;
 }
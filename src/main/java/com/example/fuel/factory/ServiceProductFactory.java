@@ -1,5 +1,6 @@
 package com.example.fuel.factory;
 
+import com.example.fuel.model.Money;
 import com.example.fuel.model.ServiceProduct;
 
 import java.sql.ResultSet;
@@ -7,22 +8,22 @@ import java.sql.SQLException;
 
 /**
  * Фабрика для создания объектов ServiceProduct из ResultSet.
- * Используется DAO при чтении услуг из таблицы services.
+ * Используется DAO при чтении услуг из каталога (item_type = 'SERVICE').
  */
 public class ServiceProductFactory implements ProductFactory {
 
     /**
-     * Создаёт ServiceProduct из строки таблицы services (ResultSet).
-     * Объекты ServiceProduct имеют условный stockQty = 1.0
-     * (услуги не хранятся на складе в явном виде).
+     * Создаёт ServiceProduct из строки каталога (ResultSet).
+     * Объекты ServiceProduct имеют условный stockQty = 1 шт.
+     * (у услуг stock_ml = NULL — они не хранятся на складе).
      */
     @Override
     public ServiceProduct createProduct(ResultSet rs) throws SQLException {
         return new ServiceProduct(
                 rs.getInt("id"),            // ID услуги
                 rs.getString("name"),       // Название
-                rs.getDouble("price"),      // Цена
-                1.0                          // Условное количество (услуги не ограничены по числу)
+                rs.getLong("price_kopecks"), // Цена, коп.
+                Money.MILLI_PER_UNIT         // Условное количество (услуги не ограничены по числу)
         );
     }
 }
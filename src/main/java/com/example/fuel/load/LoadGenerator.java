@@ -0,0 +1,398 @@
+package com.example.fuel.load;
+
+import com.example.fuel.DAO.CustomerDAO;
+import com.example.fuel.DAO.PaymentDAO;
+import com.example.fuel.DAO.ProductDAO;
+import com.example.fuel.db.DatabaseInitializer;
+import com.example.fuel.db.DatabaseManager;
+import com.example.fuel.metrics.Histogram;
+import com.example.fuel.metrics.Metrics;
+import com.example.fuel.model.CartItem;
+import com.example.fuel.model.CatalogKey;
+import com.example.fuel.model.Customer;
+import com.example.fuel.model.FuelProduct;
+import com.example.fuel.model.Money;
+import com.example.fuel.model.PaymentMethod;
+import com.example.fuel.model.ServiceProduct;
+import com.example.fuel.presenter.CheckoutResult;
+import com.example.fuel.presenter.SmartFuelPresenter;
+import com.example.fuel.service.PaymentLedger;
+import com.example.fuel.service.ProductService;
+import com.example.fuel.service.StockReservations;
+import com.example.fuel.storage.StorageProvider;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Нагрузочный прогон «заправка целиком»: много колонок, много клиентов, смешанные корзины,
+ * частичные и комбинированные оплаты — через SmartFuelPresenter, как у настоящих терминалов.
+ *
+ * 1) Через DAO заводятся customers клиентов с балансами и большой остаток каждого вида топлива
+ *    (каталог — тот, что создаёт DatabaseInitializer: своих позиций DAO добавлять не умеют).
+ * 2) pumps колонок — по виртуальному потоку — обслуживают клиентов по кругу: корзина из 1..maxFuelLines
+ *    строк топлива (и, возможно, услуги), иногда частичная оплата, затем полная оплата.
+ *    У каждой колонки свои клиенты: один клиент не стоит у двух колонок сразу.
+ * 3) Отчёт: оплат в секунду, перцентили задержек и проверки согласованности —
+ *    остаток топлива уменьшился ровно на проданное, списания с балансов равны журналу платежей
+ *    и сумме успешных оплат, корзины пусты, резервов не осталось.
+ *
+ * Запуск: java ... com.example.fuel.Main --load (параметры — LoadProfile.fromProperties()).
+ * Для SQLite прогон идёт в отдельном файле -Dsmartfuel.load.dbFile (по умолчанию smart_fuel-load.db),
+ * который пересоздаётся при каждом запуске.
+ */
+public final class LoadGenerator {
+
+    /** Начальные балансы клиента: наличных мало (комбинированная оплата доходит до карты), карты — с запасом. */
+    private static final long WALLET_KOPECKS = Money.ofRubles(5_000.0);
+    private static final long CARD_KOPECKS = Money.ofRubles(1_000_000_000.0);
+    private static final long BONUS_KOPECKS = Money.ofRubles(1_000.0);
+
+    private static final PaymentMethod[] FULL_METHODS = {PaymentMethod.Наличные, PaymentMethod.Карта};
+
+    /** Итоги прогона (счётчики и задержки — только за измеряемый интервал, проверки — за весь прогон). */
+    public record Report(LoadProfile profile, long elapsedNanos, long sessions, long checkouts, long partialPayments,
+                         long shortages, long declined, long errors,
+                         Histogram.Snapshot sessionLatency, Histogram.Snapshot checkoutLatency,
+                         Histogram.Snapshot addToCartLatency, List<String> violations) {
+
+        public double checkoutsPerSecond() {
+            return elapsedNanos == 0 ? 0 : checkouts * 1e9 / elapsedNanos;
+        }
+
+        /** true — ни одна проверка согласованности не нарушена. */
+        public boolean isConsistent() {
+            return violations.isEmpty();
+        }
+
+        public String format() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("Колонок: %d, клиентов: %d, время: %.1f с%n",
+                    profile.pumps(), profile.customers(), elapsedNanos / 1e9));
+            sb.append(String.format("Оплат: %d (%.1f в секунду), клиентов обслужено: %d, частичных оплат: %d%n",
+                    checkouts, checkoutsPerSecond(), sessions, partialPayments));
+            sb.append(String.format("Не хватило топлива: %d, отказов в оплате: %d, ошибок: %d%n",
+                    shortages, declined, errors));
+            appendLatency(sb, "клиент целиком", sessionLatency);
+            appendLatency(sb, "полная оплата", checkoutLatency);
+            appendLatency(sb, "добавление в корзину", addToCartLatency);
+            if (violations.isEmpty()) {
+                sb.append("Проверки согласованности: OK").append(System.lineSeparator());
+            } else {
+                sb.append("Проверки согласованности НЕ пройдены:").append(System.lineSeparator());
+                violations.forEach(v -> sb.append("  ").append(v).append(System.lineSeparator()));
+            }
+            return sb.toString();
+        }
+
+        private static void appendLatency(StringBuilder sb, String label, Histogram.Snapshot s) {
+            sb.append(String.format("%-22s p50 %10.1fus, p99 %10.1fus, p999 %10.1fus, max %10.1fus%n",
+                    label, s.p50() / 1e3, s.p99() / 1e3, s.p999() / 1e3, s.max() / 1e3));
+        }
+    }
+
+    private final StorageProvider storage;
+    private final LoadProfile profile;
+
+    private final Histogram sessionLatency = Metrics.histogram("load.session");
+    private final Histogram checkoutLatency = Metrics.histogram("load.checkout");
+    private final Histogram addToCartLatency = Metrics.histogram("load.addToCart");
+    private final LongAdder sessions = new LongAdder();
+    private final LongAdder checkouts = new LongAdder();
+    private final LongAdder partialPayments = new LongAdder();
+    private final LongAdder shortages = new LongAdder();
+    private final LongAdder declined = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    /** Идёт измеряемый интервал (после прогрева): только тогда пишутся счётчики и задержки. */
+    private volatile boolean measuring;
+
+    // Заполняется в seed()
+    private SmartFuelPresenter presenter;
+    private int[] customerIds;
+    private int[] fuelIds;
+    private int[] serviceIds;
+    private long[] initialBalance;
+    private long[] initialPayments;
+    private final Map<Integer, Long> initialStock = new HashMap<>();
+
+    // Ожидаемые изменения: по слоту клиента (пишет только его колонка) и по виду топлива
+    private long[] charged;
+    private final Map<Integer, LongAdder> soldMilli = new HashMap<>();
+
+    public LoadGenerator(StorageProvider storage, LoadProfile profile) {
+        this.storage = storage;
+        this.profile = profile;
+    }
+
+    /** Завести клиентов и топливо, прогнать нагрузку и проверить итоги. */
+    public Report run() throws InterruptedException {
+        seed();
+        Metrics.reset();
+
+        long warmupNanos = profile.sessionsPerPump() > 0 ? 0 : profile.warmup().toNanos();
+        long started = System.nanoTime();
+        long measureFrom = started + warmupNanos;
+        long end = measureFrom + profile.duration().toNanos();
+        measuring = warmupNanos == 0;
+
+        ExecutorService pumps = Executors.newVirtualThreadPerTaskExecutor();
+        for (int p = 0; p < profile.pumps(); p++) {
+            int pump = p;
+            pumps.submit(() -> runPump(pump, end));
+        }
+        if (!measuring) {
+            TimeUnit.NANOSECONDS.sleep(Math.max(0, measureFrom - System.nanoTime()));
+            // Метрики DAO тоже считаем только после прогрева
+            Metrics.reset();
+            measuring = true;
+        }
+        pumps.shutdown();
+        while (!pumps.awaitTermination(1, TimeUnit.SECONDS)) {
+            // колонки дообслуживают текущих клиентов
+        }
+        long elapsed = System.nanoTime() - Math.max(measureFrom, started);
+
+        return new Report(profile, elapsed, sessions.sum(), checkouts.sum(), partialPayments.sum(),
+                shortages.sum(), declined.sum(), errors.sum(),
+                sessionLatency.snapshot(), checkoutLatency.snapshot(), addToCartLatency.snapshot(), verify());
+    }
+
+    private void seed() {
+        ProductDAO productDAO = storage.productDAO();
+        List<FuelProduct> fuel = productDAO.getAllFuelProducts();
+        List<ServiceProduct> services = productDAO.getAllServiceProducts();
+        if (fuel.isEmpty()) {
+            throw new IllegalStateException("В каталоге нет топлива — нечего продавать");
+        }
+        fuelIds = fuel.stream().mapToInt(FuelProduct::getId).toArray();
+        serviceIds = services.stream().mapToInt(ServiceProduct::getId).toArray();
+        for (int id : fuelIds) {
+            productDAO.updateFuelStock(id, Money.ofUnits(profile.stockLitres()));
+            initialStock.put(id, productDAO.getFuelProductById(id).getStockMilli());
+            soldMilli.put(id, new LongAdder());
+        }
+
+        int n = profile.customers();
+        customerIds = new int[n];
+        initialBalance = new long[n];
+        initialPayments = new long[n];
+        charged = new long[n];
+        CustomerDAO customerDAO = storage.customerDAO();
+        boolean seeded = storage.inTransaction(() -> {
+            for (int i = 0; i < n; i++) {
+                int id = customerDAO.insert(Customer.ofKopecks(0, "Нагрузка " + (i + 1),
+                        WALLET_KOPECKS, CARD_KOPECKS, BONUS_KOPECKS, 0));
+                if (id < 0) {
+                    return false;
+                }
+                customerIds[i] = id;
+            }
+            return true;
+        });
+        if (!seeded) {
+            throw new IllegalStateException("Не удалось завести клиентов для нагрузки");
+        }
+        PaymentDAO paymentDAO = storage.paymentDAO();
+        for (int i = 0; i < n; i++) {
+            initialBalance[i] = balanceOf(customerDAO.getById(customerIds[i]));
+            initialPayments[i] = paymentDAO.getTotalKopecksByCustomerId(customerIds[i]);
+        }
+
+        // Остатки изменены в обход сервисов: каталог и резервы должны увидеть новые
+        new ProductService(storage).invalidateCatalog();
+        StockReservations.of(storage).invalidate();
+        presenter = new SmartFuelPresenter(storage);
+    }
+
+    /** Колонка: обслуживает своих клиентов (слоты pump, pump + pumps, ...) по кругу. */
+    private void runPump(int pump, long end) {
+        SplittableRandom random = new SplittableRandom(profile.seed() + pump);
+        int slot = pump;
+        for (int n = 0; profile.sessionsPerPump() > 0 ? n < profile.sessionsPerPump() : System.nanoTime() < end; n++) {
+            serve(slot, random);
+            slot += profile.pumps();
+            if (slot >= customerIds.length) {
+                slot = pump;
+            }
+        }
+    }
+
+    /** Один клиент у колонки: корзина, возможно частичная оплата, затем полная оплата. */
+    private void serve(int slot, SplittableRandom random) {
+        int customerId = customerIds[slot];
+        boolean measured = measuring;
+        long started = System.nanoTime();
+        Map<Integer, Long> fuelInCart = new HashMap<>();
+        try {
+            int lines = 1 + random.nextInt(profile.maxFuelLines());
+            for (int i = 0; i < lines; i++) {
+                int productId = fuelIds[random.nextInt(fuelIds.length)];
+                double litres = 5 + random.nextInt(46);
+                long t = System.nanoTime();
+                boolean added = presenter.addToCart(customerId, CatalogKey.FUEL, productId, litres);
+                if (measured) {
+                    addToCartLatency.recordSince(t);
+                }
+                if (added) {
+                    fuelInCart.merge(productId, Money.ofUnits(litres), Long::sum);
+                } else if (measured) {
+                    shortages.increment();
+                }
+            }
+            boolean withService = serviceIds.length > 0 && random.nextInt(100) < profile.serviceShare();
+            if (withService) {
+                presenter.addToCart(customerId, CatalogKey.SERVICE, serviceIds[random.nextInt(serviceIds.length)], 1);
+            }
+            if (fuelInCart.isEmpty() && !withService) {
+                presenter.clearCart(customerId);
+                return;
+            }
+
+            if (random.nextInt(100) < profile.partialShare()) {
+                payPart(slot, customerId, random, measured);
+            }
+
+            long t = System.nanoTime();
+            CheckoutResult result = random.nextInt(100) < profile.combinedShare()
+                    ? presenter.tryCheckoutFullCombined(customerId)
+                    : presenter.tryCheckoutFullWithMethod(customerId, FULL_METHODS[random.nextInt(FULL_METHODS.length)]);
+            if (result.getStatus() == CheckoutResult.Status.DECLINED) {
+                // Не хватило одного счёта — как на кассе, доплачиваем комбинированно
+                result = presenter.tryCheckoutFullCombined(customerId);
+            }
+            if (measured) {
+                checkoutLatency.recordSince(t);
+            }
+
+            if (result.isSuccess()) {
+                charged[slot] += Money.ofRubles(result.getCharged());
+                fuelInCart.forEach((productId, milli) -> soldMilli.get(productId).add(milli));
+                if (measured) {
+                    checkouts.increment();
+                }
+            } else {
+                if (measured) {
+                    declined.increment();
+                }
+                presenter.clearCart(customerId);
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            errors.increment();
+            presenter.clearCart(customerId);
+        } finally {
+            if (measured) {
+                sessions.increment();
+                sessionLatency.recordSince(started);
+            }
+        }
+    }
+
+    /** Частичная оплата примерно половины остатка (целыми рублями) случайным способом. */
+    private void payPart(int slot, int customerId, SplittableRandom random, boolean measured) {
+        long remaining = Money.ofRubles(presenter.getRemaining(customerId));
+        long amount = remaining / 2 / Money.KOPECKS_PER_RUBLE * Money.KOPECKS_PER_RUBLE;
+        if (amount <= 0) {
+            return;
+        }
+        PaymentMethod[] methods = PaymentMethod.values();
+        CheckoutResult part = presenter.tryCheckoutPartial(customerId, methods[random.nextInt(methods.length)],
+                Money.toRubles(amount));
+        if (part.isSuccess()) {
+            charged[slot] += Money.ofRubles(part.getCharged());
+            if (measured) {
+                partialPayments.increment();
+            }
+        }
+    }
+
+    /** Проверки согласованности после того, как все колонки остановились. */
+    private List<String> verify() {
+        List<String> violations = new ArrayList<>();
+        PaymentLedger.of(storage).flush();
+
+        ProductDAO productDAO = storage.productDAO();
+        StockReservations reservations = StockReservations.of(storage);
+        for (int id : fuelIds) {
+            long before = initialStock.get(id);
+            long after = productDAO.getFuelProductById(id).getStockMilli();
+            long sold = soldMilli.get(id).sum();
+            if (before - after != sold) {
+                violations.add(String.format("Топливо %d: остаток уменьшился на %s л, продано %s л",
+                        id, Money.toUnits(before - after), Money.toUnits(sold)));
+            }
+            long available = reservations.getAvailableMilli(id);
+            if (available != after) {
+                violations.add(String.format("Топливо %d: доступно %s л при остатке %s л — резервы не сняты",
+                        id, Money.toUnits(available), Money.toUnits(after)));
+            }
+        }
+
+        CustomerDAO customerDAO = storage.customerDAO();
+        PaymentDAO paymentDAO = storage.paymentDAO();
+        long chargedTotal = 0;
+        long debitedTotal = 0;
+        for (int i = 0; i < customerIds.length; i++) {
+            long debited = initialBalance[i] - balanceOf(customerDAO.getById(customerIds[i]));
+            long journal = paymentDAO.getTotalKopecksByCustomerId(customerIds[i]) - initialPayments[i];
+            if (debited != journal || debited != charged[i]) {
+                violations.add(String.format("Клиент %d: списано %s, в журнале %s, по оплатам %s", customerIds[i],
+                        Money.format(debited), Money.format(journal), Money.format(charged[i])));
+            }
+            chargedTotal += charged[i];
+            debitedTotal += debited;
+        }
+        if (chargedTotal != debitedTotal) {
+            violations.add("Всего списано " + Money.format(debitedTotal) + ", оплачено " + Money.format(chargedTotal));
+        }
+
+        Set<Integer> ours = new HashSet<>();
+        for (int id : customerIds) {
+            ours.add(id);
+        }
+        long leftInCarts = storage.cartItemDAO().getAllByType(CatalogKey.FUEL).stream()
+                .map(CartItem::getCustomerId).filter(ours::contains).count();
+        if (leftInCarts > 0) {
+            violations.add("В корзинах осталось строк топлива: " + leftInCarts);
+        }
+        return violations;
+    }
+
+    private static long balanceOf(Customer c) {
+        return c.getWalletKopecks() + c.getCardKopecks() + c.getBonusKopecks();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        StorageProvider storage = StorageProvider.fromConfig();
+        if (storage == StorageProvider.sqlite()) {
+            String dbFile = System.getProperty("smartfuel.load.dbFile", "smart_fuel-load.db");
+            for (String suffix : new String[]{"", "-wal", "-shm"}) {
+                //noinspection ResultOfMethodCallIgnored
+                new File(dbFile + suffix).delete();
+            }
+            DatabaseManager.setDatabaseFile(dbFile);
+            DatabaseInitializer.initialize();
+        }
+        LoadProfile profile = LoadProfile.fromProperties();
+        System.out.println("SmartFuel: нагрузка на " + storage + " — " + profile);
+        Report report = new LoadGenerator(storage, profile).run();
+        System.out.print(report.format());
+        if (Metrics.ENABLED) {
+            System.out.print(Metrics.report());
+        }
+        if (!report.isConsistent()) {
+            System.exit(1);
+        }
+    }
+}
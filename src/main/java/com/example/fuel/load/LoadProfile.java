@@ -0,0 +1,59 @@
+package com.example.fuel.load;
+
+import java.time.Duration;
+
+/**
+ * Параметры нагрузочного прогона LoadGenerator: сколько клиентов и колонок и какая смесь операций.
+ *
+ * Доли — в процентах (0..100):
+ * – serviceShare — в корзину кроме топлива добавляется услуга;
+ * – partialShare — клиент сначала платит часть суммы (checkoutPartial), остаток — полной оплатой;
+ * – combinedShare — полная оплата комбинированная (наличные→карта→бонусы), иначе одним способом.
+ *
+ * Прогон идёт duration (после warmup) или, если sessionsPerPump > 0, пока каждая колонка
+ * не обслужит столько клиентов.
+ */
+public record LoadProfile(int customers, int pumps, Duration warmup, Duration duration, int sessionsPerPump,
+                          int maxFuelLines, int serviceShare, int partialShare, int combinedShare,
+                          long stockLitres, long seed) {
+
+    public LoadProfile {
+        if (customers < pumps || pumps < 1) {
+            throw new IllegalArgumentException("Нужна хотя бы одна колонка и не меньше клиентов, чем колонок");
+        }
+        if (maxFuelLines < 1) {
+            throw new IllegalArgumentException("В корзине должна быть хотя бы одна строка топлива");
+        }
+        checkShare("serviceShare", serviceShare);
+        checkShare("partialShare", partialShare);
+        checkShare("combinedShare", combinedShare);
+    }
+
+    /** Профиль из свойств smartfuel.load.* (см. значения по умолчанию ниже). */
+    public static LoadProfile fromProperties() {
+        return new LoadProfile(
+                Integer.getInteger("smartfuel.load.customers", 10_000),
+                Integer.getInteger("smartfuel.load.pumps", 64),
+                Duration.ofSeconds(Long.getLong("smartfuel.load.warmupSec", 5)),
+                Duration.ofSeconds(Long.getLong("smartfuel.load.durationSec", 30)),
+                Integer.getInteger("smartfuel.load.sessionsPerPump", 0),
+                Integer.getInteger("smartfuel.load.maxFuelLines", 2),
+                Integer.getInteger("smartfuel.load.serviceShare", 30),
+                Integer.getInteger("smartfuel.load.partialShare", 20),
+                Integer.getInteger("smartfuel.load.combinedShare", 50),
+                Long.getLong("smartfuel.load.stockLitres", 100_000_000L),
+                Long.getLong("smartfuel.load.seed", 42L));
+    }
+
+    /** Короткий прогон: каждая колонка обслуживает sessionsPerPump клиентов, без прогрева. */
+    public static LoadProfile ofSessions(int customers, int pumps, int sessionsPerPump) {
+        return new LoadProfile(customers, pumps, Duration.ZERO, Duration.ZERO, sessionsPerPump,
+                2, 30, 20, 50, 100_000_000L, 42L);
+    }
+
+    private static void checkShare(String name, int share) {
+        if (share < 0 || share > 100) {
+            throw new IllegalArgumentException(name + " должна быть от 0 до 100%: " + share);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.fuel.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Событие JFR: полный пересчёт итога корзины (CartService.calculateCartTotal).
+ * По умолчанию записываются пересчёты дольше 1 мс (порог можно снизить в настройках записи).
+ */
+@Name("smartfuel.CartTotal")
+@Label("Расчёт итога корзины")
+@Category({"SmartFuel", "Цены"})
+@Threshold("1 ms")
+@StackTrace(false)
+public class CartTotalEvent extends jdk.jfr.Event {
+
+    @Label("Клиент")
+    public int customerId;
+
+    @Label("Строк в корзине")
+    public int itemCount;
+
+    @Label("Итог, коп.")
+    public long totalKopecks;
+}
@@ -0,0 +1,42 @@
+package com.example.fuel.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Событие JFR: одна оплата через presenter (вместе с ожиданием замка клиента).
+ * По времени в записи JFR её можно сопоставить с паузами GC, задержками диска и конкуренцией за замки.
+ */
+@Name("smartfuel.Checkout")
+@Label("Оплата")
+@Category({"SmartFuel", "Оплата"})
+@Description("Полная или частичная оплата корзины клиента")
+@StackTrace(false)
+public class CheckoutEvent extends jdk.jfr.Event {
+
+    public static final String FULL_WITH_METHOD = "FULL_WITH_METHOD";
+    public static final String FULL_COMBINED = "FULL_COMBINED";
+    public static final String PARTIAL = "PARTIAL";
+
+    @Label("Вид оплаты")
+    public String kind;
+
+    @Label("Клиент")
+    public int customerId;
+
+    @Label("Способ оплаты")
+    @Description("null — комбинированная оплата")
+    public String method;
+
+    @Label("Строк в корзине")
+    public int itemCount;
+
+    @Label("Списано, коп.")
+    public long amountKopecks;
+
+    @Label("Результат")
+    public String status;
+}
@@ -0,0 +1,112 @@
+package com.example.fuel.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Гистограмма неотрицательных значений (задержки в наносекундах, число запросов и т.п.) без блокировок.
+ *
+ * Корзины лог-линейные: значения до 32 — точно, дальше на каждую степень двойки 32 корзины,
+ * т.е. погрешность перцентиля не больше ~3%. Запись — один getAndIncrement в AtomicLongArray
+ * плюс LongAdder для суммы, поэтому её можно оставлять включённой в рабочей системе.
+ * Снимок (snapshot) не останавливает запись: он может разойтись с ней на несколько значений.
+ */
+public final class Histogram {
+
+    /** Бит точности: 2^5 = 32 корзины на каждую степень двойки. */
+    private static final int PRECISION = 5;
+    private static final int SUB_BUCKETS = 1 << PRECISION;
+    private static final int BUCKETS = (63 - PRECISION + 1) * SUB_BUCKETS;
+
+    /** Снимок: перцентили — верхние границы корзин (не больше max). */
+    public record Snapshot(String name, long count, long mean, long p50, long p99, long p999, long max) {}
+
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    Histogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        buckets.getAndIncrement(indexOf(value));
+        sum.add(value);
+        long m = max.get();
+        while (value > m && !max.compareAndSet(m, value)) {
+            m = max.get();
+        }
+    }
+
+    /** Записать время, прошедшее с start = System.nanoTime(). */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            count += counts[i];
+        }
+        long maxValue = max.get();
+        if (count == 0) {
+            return new Snapshot(name, 0, 0, 0, 0, 0, 0);
+        }
+        return new Snapshot(name, count, sum.sum() / count,
+                percentile(counts, count, 0.50, maxValue),
+                percentile(counts, count, 0.99, maxValue),
+                percentile(counts, count, 0.999, maxValue),
+                maxValue);
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        sum.reset();
+        max.set(0);
+    }
+
+    private static long percentile(long[] counts, long total, double quantile, long maxValue) {
+        long rank = Math.max(1, (long) Math.ceil(total * quantile));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - PRECISION)) & (SUB_BUCKETS - 1);
+        return ((exponent - PRECISION + 1) << PRECISION) + sub;
+    }
+
+    /** Наибольшее значение, попадающее в корзину index. */
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = (index >> PRECISION) + PRECISION - 1;
+        long sub = index & (SUB_BUCKETS - 1);
+        long lower = (1L << exponent) | (sub << (exponent - PRECISION));
+        return lower + (1L << (exponent - PRECISION)) - 1;
+    }
+}
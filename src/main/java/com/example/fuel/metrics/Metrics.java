@@ -0,0 +1,192 @@
+package com.example.fuel.metrics;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Метрики приложения: гистограммы задержек (Histogram) и счётчики, по имени.
+ *
+ * Имена — через точку: dao.customer.getById, service.payment.payPartialKopecks,
+ * checkout.sqlStatements. Задержки — в наносекундах.
+ *
+ * – DAO измеряются целиком через instrument() (обёртка над интерфейсом, см. SqliteStorage);
+ * – операции сервисов — явно: long t = Metrics.start(); ... histogram.recordSince(t);
+ * – число SQL-запросов считает PooledConnection (countSqlStatement), сервисы берут разницу
+ *   sqlStatementsOnThisThread() до и после операции.
+ *
+ * Выключить — -Dsmartfuel.metrics=false. Снимок — report() / dump(file),
+ * при завершении JVM — в файл -Dsmartfuel.metrics.dumpFile=..., в безголовом режиме — GET /metrics.
+ *
+ * Отдельные операции (а не сводки) видны в записи JFR: CheckoutEvent, CartTotalEvent, SqlEvent,
+ * например -XX:StartFlightRecording:filename=smartfuel.jfr.
+ */
+public final class Metrics {
+
+    public static final boolean ENABLED = !"false".equals(System.getProperty("smartfuel.metrics"));
+
+    private static final Map<String, Histogram> HISTOGRAMS = new ConcurrentSkipListMap<>();
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentSkipListMap<>();
+    /** Обёртки DAO: для каждого интерфейса и префикса — гистограммы его методов. */
+    private static final Map<String, Map<Method, Histogram>> INSTRUMENTED = new ConcurrentHashMap<>();
+
+    /** SQL-запросы текущего потока (без синхронизации: каждый поток пишет только в свой счётчик). */
+    private static final ThreadLocal<long[]> SQL_ON_THREAD = ThreadLocal.withInitial(() -> new long[1]);
+    private static final LongAdder SQL_TOTAL = counter("sql.statements");
+
+    static {
+        String dumpFile = System.getProperty("smartfuel.metrics.dumpFile");
+        if (ENABLED && dumpFile != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> dump(Path.of(dumpFile)), "metrics-dump"));
+        }
+    }
+
+    private Metrics() {}
+
+    public static Histogram histogram(String name) {
+        return HISTOGRAMS.computeIfAbsent(name, Histogram::new);
+    }
+
+    public static LongAdder counter(String name) {
+        return COUNTERS.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    /** Начало замера (0, если метрики выключены — тогда и запись не нужна). */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /** Записать время с start(), если метрики включены. */
+    public static void stop(Histogram histogram, long start) {
+        if (ENABLED) {
+            histogram.recordSince(start);
+        }
+    }
+
+    /** Учесть один SQL-запрос (вызывается при подготовке запроса на соединении). */
+    public static void countSqlStatement() {
+        if (ENABLED) {
+            SQL_ON_THREAD.get()[0]++;
+            SQL_TOTAL.increment();
+        }
+    }
+
+    /** Сколько SQL-запросов выполнил текущий поток с начала работы (для разницы «до/после»). */
+    public static long sqlStatementsOnThisThread() {
+        return ENABLED ? SQL_ON_THREAD.get()[0] : 0;
+    }
+
+    /**
+     * Обернуть target: каждый метод интерфейса type пишет время в гистограмму prefix.имяМетода,
+     * исключения — в счётчик prefix.имяМетода.errors. Если метрики выключены — возвращается сам target.
+     */
+    public static <T> T instrument(Class<T> type, T target, String prefix) {
+        if (!ENABLED) {
+            return target;
+        }
+        Map<Method, Histogram> timers = INSTRUMENTED.computeIfAbsent(type.getName() + "/" + prefix, key -> {
+            Map<Method, Histogram> map = new HashMap<>();
+            for (Method m : type.getMethods()) {
+                if (!Modifier.isStatic(m.getModifiers())) {
+                    map.put(m, histogram(prefix + "." + m.getName()));
+                }
+            }
+            return map;
+        });
+        InvocationHandler handler = (proxy, method, args) -> {
+            Histogram h = timers.get(method);
+            if (h == null) {
+                // equals/hashCode/toString
+                return invoke(target, method, args);
+            }
+            long start = System.nanoTime();
+            try {
+                return invoke(target, method, args);
+            } catch (Throwable e) {
+                counter(h.getName() + ".errors").increment();
+                throw e;
+            } finally {
+                h.recordSince(start);
+            }
+        };
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    public static List<Histogram.Snapshot> snapshots() {
+        List<Histogram.Snapshot> list = new ArrayList<>();
+        for (Histogram h : HISTOGRAMS.values()) {
+            Histogram.Snapshot s = h.snapshot();
+            if (s.count() > 0) {
+                list.add(s);
+            }
+        }
+        return list;
+    }
+
+    public static Map<String, Long> counters() {
+        Map<String, Long> map = new LinkedHashMap<>();
+        COUNTERS.forEach((name, adder) -> map.put(name, adder.sum()));
+        return map;
+    }
+
+    /** Текстовый отчёт: по строке на гистограмму (задержки — в мкс) и на счётчик. */
+    public static String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-48s %10s %10s %10s %10s %10s %10s%n",
+                "метрика", "count", "mean", "p50", "p99", "p999", "max"));
+        for (Histogram.Snapshot s : snapshots()) {
+            boolean latency = isLatency(s.name());
+            sb.append(String.format("%-48s %10d %10s %10s %10s %10s %10s%n", s.name(), s.count(),
+                    format(s.mean(), latency), format(s.p50(), latency), format(s.p99(), latency),
+                    format(s.p999(), latency), format(s.max(), latency)));
+        }
+        counters().forEach((name, value) -> sb.append(String.format("%-48s %10d%n", name, value)));
+        return sb.toString();
+    }
+
+    /** Записать report() в файл (ошибка записи не должна ронять приложение). */
+    public static void dump(Path file) {
+        try {
+            Files.writeString(file, report(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /** Гистограмма задержек (нс) — всё, кроме явных «количественных» метрик. */
+    public static boolean isLatency(String name) {
+        return !name.endsWith("Statements");
+    }
+
+    /** Обнулить все гистограммы и счётчики (например, после прогрева). */
+    public static void reset() {
+        HISTOGRAMS.values().forEach(Histogram::reset);
+        COUNTERS.values().forEach(LongAdder::reset);
+    }
+
+    private static String format(long value, boolean latency) {
+        return latency ? String.format("%.1fus", value / 1000.0) : Long.toString(value);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
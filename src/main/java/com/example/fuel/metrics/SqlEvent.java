@@ -0,0 +1,83 @@
+package com.example.fuel.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+
+/**
+ * Событие JFR: выполнение одного SQL-запроса DAO (execute / executeQuery / executeUpdate / executeBatch).
+ *
+ * Пока запись JFR с этим событием не идёт, wrap() возвращает запрос как есть — накладных расходов нет.
+ * Во время записи запрос оборачивается, и каждое выполнение дольше порога (по умолчанию 1 мс) попадает в запись.
+ * Текст SQL не пишется — только его хеш и первое слово (SELECT/UPDATE/...): по хешу запросы группируются.
+ */
+@Name("smartfuel.Sql")
+@Label("SQL-запрос")
+@Category({"SmartFuel", "SQL"})
+@Threshold("1 ms")
+@StackTrace(false)
+public class SqlEvent extends jdk.jfr.Event {
+
+    @Label("Операция")
+    public String operation;
+
+    @Label("Хеш текста SQL")
+    @Description("String.hashCode() текста запроса")
+    public int sqlHash;
+
+    @Label("Метод JDBC")
+    public String jdbcMethod;
+
+    @Label("Соединение только для чтения")
+    public boolean readOnly;
+
+    /** Запрос, выполнения которого записываются событиями (или сам ps, если запись не идёт). */
+    public static PreparedStatement wrap(PreparedStatement ps, String sql, boolean readOnly) {
+        if (!new SqlEvent().isEnabled()) {
+            return ps;
+        }
+        String operation = firstWord(sql);
+        int sqlHash = sql.hashCode();
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                    if (!method.getName().startsWith("execute")) {
+                        return invoke(ps, method, args);
+                    }
+                    SqlEvent event = new SqlEvent();
+                    event.begin();
+                    try {
+                        return invoke(ps, method, args);
+                    } finally {
+                        event.operation = operation;
+                        event.sqlHash = sqlHash;
+                        event.jdbcMethod = method.getName();
+                        event.readOnly = readOnly;
+                        event.commit();
+                    }
+                });
+    }
+
+    private static Object invoke(PreparedStatement ps, java.lang.reflect.Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(ps, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static String firstWord(String sql) {
+        String s = sql.strip();
+        int end = 0;
+        while (end < s.length() && Character.isLetter(s.charAt(end))) {
+            end++;
+        }
+        return s.substring(0, end).toUpperCase();
+    }
+}
@@ -13,8 +13,8 @@ public class CartItem {
     private int id;
     private int customerId;
     private String itemType;   // "PRODUCT" или "SERVICE"
-    private int itemId;        // id из таблицы products или services
-    private double quantity;   // литры или 1.0 для услуги
+    private int itemId;        // id позиции каталога этого типа
+    private long quantityMilli; // мл или 1000 (1 шт.) для услуги, см. Money
 
     // Стратегия для расчёта стоимости этого элемента
     private PricingStrategy pricingStrategy;
@@ -26,7 +26,14 @@ public class CartItem {
         this.customerId = customerId;
         this.itemType = itemType;
         this.itemId = itemId;
-        this.quantity = quantity;
+        this.quantityMilli = Money.ofUnits(quantity);
+    }
+
+    /** Строка корзины с количеством в тысячных долях (так её читает DAO). */
+    public static CartItem ofMilli(int id, int customerId, String itemType, int itemId, long quantityMilli) {
+        CartItem item = new CartItem(id, customerId, itemType, itemId, 0.0);
+        item.quantityMilli = quantityMilli;
+        return item;
     }
 
     public CartItem(int customerId, String itemType, int itemId, double quantity) {
@@ -50,7 +57,11 @@ public class CartItem {
     }
 
     public double getQuantity() {
-        return quantity;
+        return Money.toUnits(quantityMilli);
+    }
+
+    public long getQuantityMilli() {
+        return quantityMilli;
     }
 
     public void setId(int id) {
@@ -70,7 +81,11 @@ public class CartItem {
     }
 
     public void setQuantity(double quantity) {
-        this.quantity = quantity;
+        this.quantityMilli = Money.ofUnits(quantity);
+    }
+
+    public void setQuantityMilli(long quantityMilli) {
+        this.quantityMilli = quantityMilli;
     }
 
     /**
@@ -94,6 +109,6 @@ public class CartItem {
     @Override
     public String toString() {
         return String.format("CartItem[id=%d, customerId=%d, type=%s, itemId=%d, qty=%.2f]",
-                id, customerId, itemType, itemId, quantity);
+                id, customerId, itemType, itemId, getQuantity());
     }
 }
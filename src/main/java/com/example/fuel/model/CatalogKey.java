@@ -0,0 +1,26 @@
+package com.example.fuel.model;
+
+/**
+ * Ключ позиции каталога: тип (как в cart_items.item_type) и id.
+ * id топлива и услуг исторически пересекаются, поэтому позицию однозначно задаёт только пара.
+ */
+public record CatalogKey(String itemType, int itemId) {
+
+    /** Топливо (item_type = "PRODUCT"). */
+    public static final String FUEL = "PRODUCT";
+    /** Услуга (item_type = "SERVICE"). */
+    public static final String SERVICE = "SERVICE";
+
+    public static CatalogKey fuel(int id) {
+        return new CatalogKey(FUEL, id);
+    }
+
+    public static CatalogKey service(int id) {
+        return new CatalogKey(SERVICE, id);
+    }
+
+    /** Позиция каталога, на которую ссылается строка корзины. */
+    public static CatalogKey of(CartItem item) {
+        return new CatalogKey(item.getItemType(), item.getItemId());
+    }
+}
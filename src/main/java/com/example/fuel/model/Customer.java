@@ -2,22 +2,36 @@ package com.example.fuel.model;
 
 /**
  * Клиент: хранит балансы и бонусы.
+ * Балансы хранятся в копейках (см. Money); методы с double — рубли для UI и тестов.
  */
 public class Customer {
     private int id;
     private String name;
-    private double walletBalance; // наличные
-    private double cardBalance;   // средства на карте
-    private double bonusPoints;   // бонусы
+    private long walletKopecks;   // наличные
+    private long cardKopecks;     // средства на карте
+    private long bonusKopecks;    // бонусы (1 бонус = 1 рубль)
+    private long version;         // номер версии строки (оптимистичная блокировка)
 
     public Customer() {}
 
     public Customer(int id, String name, double walletBalance, double cardBalance, double bonusPoints) {
         this.id = id;
         this.name = name;
-        this.walletBalance = walletBalance;
-        this.cardBalance = cardBalance;
-        this.bonusPoints = bonusPoints;
+        this.walletKopecks = Money.ofRubles(walletBalance);
+        this.cardKopecks = Money.ofRubles(cardBalance);
+        this.bonusKopecks = Money.ofRubles(bonusPoints);
+    }
+
+    /** Клиент с балансами в копейках (так его читает DAO). */
+    public static Customer ofKopecks(int id, String name, long wallet, long card, long bonus, long version) {
+        Customer c = new Customer();
+        c.id = id;
+        c.name = name;
+        c.walletKopecks = wallet;
+        c.cardKopecks = card;
+        c.bonusKopecks = bonus;
+        c.version = version;
+        return c;
     }
 
     public int getId() {
@@ -29,15 +43,35 @@ public class Customer {
     }
 
     public double getWalletBalance() {
-        return walletBalance;
+        return Money.toRubles(walletKopecks);
     }
 
     public double getCardBalance() {
-        return cardBalance;
+        return Money.toRubles(cardKopecks);
     }
 
     public double getBonusPoints() {
-        return bonusPoints;
+        return Money.toRubles(bonusKopecks);
+    }
+
+    public long getWalletKopecks() {
+        return walletKopecks;
+    }
+
+    public long getCardKopecks() {
+        return cardKopecks;
+    }
+
+    public long getBonusKopecks() {
+        return bonusKopecks;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
     }
 
     public void setId(int id) {
@@ -49,20 +83,32 @@ public class Customer {
     }
 
     public void setWalletBalance(double walletBalance) {
-        this.walletBalance = walletBalance;
+        this.walletKopecks = Money.ofRubles(walletBalance);
     }
 
     public void setCardBalance(double cardBalance) {
-        this.cardBalance = cardBalance;
+        this.cardKopecks = Money.ofRubles(cardBalance);
     }
 
     public void setBonusPoints(double bonusPoints) {
-        this.bonusPoints = bonusPoints;
+        this.bonusKopecks = Money.ofRubles(bonusPoints);
+    }
+
+    public void setWalletKopecks(long walletKopecks) {
+        this.walletKopecks = walletKopecks;
+    }
+
+    public void setCardKopecks(long cardKopecks) {
+        this.cardKopecks = cardKopecks;
+    }
+
+    public void setBonusKopecks(long bonusKopecks) {
+        this.bonusKopecks = bonusKopecks;
     }
 
     @Override
     public String toString() {
-        return String.format("%s [ID=%d, cash=%.2f, card=%.2f, bonus=%.2f]",
-                name, id, walletBalance, cardBalance, bonusPoints);
+        return String.format("%s [ID=%d, cash=%s, card=%s, bonus=%s]",
+                name, id, Money.format(walletKopecks), Money.format(cardKopecks), Money.format(bonusKopecks));
     }
 }
@@ -1,17 +1,22 @@
 package com.example.fuel.model;
 
 /**
- * FuelProduct — модель для топлива (хранится в таблице products).
+ * FuelProduct — модель для топлива (строка каталога с item_type = 'PRODUCT').
  * Наследуется от Product.
  */
 public class FuelProduct extends Product {
 
-    public FuelProduct(int id, String name, double price, double stockQty) {
-        super(id, name, price, stockQty);
+    public FuelProduct(int id, String name, long priceKopecks, long stockMilli) {
+        super(id, name, priceKopecks, stockMilli);
     }
 
     @Override
     public String getProductType() {
         return "Fuel";
     }
+
+    @Override
+    public String getItemType() {
+        return CatalogKey.FUEL;
+    }
 }
@@ -0,0 +1,67 @@
+package com.example.fuel.model;
+
+/**
+ * Деньги и количество в фиксированной точке.
+ *
+ * Суммы хранятся в копейках (long), количество — в тысячных долях единицы (long):
+ * для топлива это миллилитры, для услуг 1 шт. = 1000. Сложение и сравнение точные,
+ * поэтому итоги корзины и части комбинированной оплаты сходятся копейка в копейку
+ * без поправок на погрешность double.
+ *
+ * Все операции — статические методы над примитивами: ни один не создаёт объектов,
+ * так что их можно вызывать в горячем цикле расчёта цены.
+ * double остаётся только на границе с UI и тестами (ofRubles / toRubles).
+ */
+public final class Money {
+
+    public static final long KOPECKS_PER_RUBLE = 100;
+    /** Тысячных долей в одной единице количества (мл в литре). */
+    public static final long MILLI_PER_UNIT = 1000;
+
+    private Money() {}
+
+    /** Рубли → копейки (с округлением до ближайшей копейки). */
+    public static long ofRubles(double rubles) {
+        return Math.round(rubles * KOPECKS_PER_RUBLE);
+    }
+
+    /** Копейки → рубли (для отображения). */
+    public static double toRubles(long kopecks) {
+        return kopecks / (double) KOPECKS_PER_RUBLE;
+    }
+
+    /** Литры (штуки) → тысячные доли. */
+    public static long ofUnits(double units) {
+        return Math.round(units * MILLI_PER_UNIT);
+    }
+
+    /** Тысячные доли → литры (штуки). */
+    public static double toUnits(long milli) {
+        return milli / (double) MILLI_PER_UNIT;
+    }
+
+    /** Сумма с проверкой переполнения. */
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    /**
+     * Стоимость количества: цена за единицу (коп.) × количество (тысячные доли),
+     * округлённая до копейки по правилу «половина — вверх».
+     */
+    public static long times(long priceKopecks, long quantityMilli) {
+        return roundDiv(Math.multiplyExact(priceKopecks, quantityMilli), MILLI_PER_UNIT);
+    }
+
+    /** Деление с округлением «половина — вверх» (для отрицательных — к +∞, как Math.round). */
+    public static long roundDiv(long value, long divisor) {
+        return Math.floorDiv(value + divisor / 2, divisor);
+    }
+
+    /** «1234.50» — для чеков и логов. */
+    public static String format(long kopecks) {
+        long abs = Math.abs(kopecks);
+        return (kopecks < 0 ? "-" : "") + abs / KOPECKS_PER_RUBLE + "." + (abs % KOPECKS_PER_RUBLE < 10 ? "0" : "")
+                + abs % KOPECKS_PER_RUBLE;
+    }
+}
@@ -7,15 +7,28 @@ public class Payment {
     private int id;
     private int customerId;
     private PaymentMethod method;
-    private double amount;
+    private long amountKopecks;
+    private long createdAt;   // время оплаты, мс с начала эпохи
 
     public Payment() {}
 
-    public Payment(int id, int customerId, PaymentMethod method, double amount) {
+    public Payment(int id, int customerId, PaymentMethod method, double amount, long createdAt) {
         this.id = id;
         this.customerId = customerId;
         this.method = method;
-        this.amount = amount;
+        this.amountKopecks = Money.ofRubles(amount);
+        this.createdAt = createdAt;
+    }
+
+    /** Платёж с суммой в копейках (так его создаёт оплата и читает DAO). */
+    public static Payment ofKopecks(int id, int customerId, PaymentMethod method, long amountKopecks, long createdAt) {
+        Payment p = new Payment(id, customerId, method, 0.0, createdAt);
+        p.amountKopecks = amountKopecks;
+        return p;
+    }
+
+    public Payment(int id, int customerId, PaymentMethod method, double amount) {
+        this(id, customerId, method, amount, System.currentTimeMillis());
     }
 
     public Payment(int customerId, PaymentMethod method, double amount) {
@@ -35,7 +48,15 @@ public class Payment {
     }
 
     public double getAmount() {
-        return amount;
+        return Money.toRubles(amountKopecks);
+    }
+
+    public long getAmountKopecks() {
+        return amountKopecks;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
     }
 
     public void setId(int id) {
@@ -51,6 +72,16 @@ public class Payment {
     }
 
     public void setAmount(double amount) {
-        this.amount = amount;
+        this.amountKopecks = Money.ofRubles(amount);
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Payment[id=%d, customerId=%d, method=%s, amount=%s]",
+                id, customerId, method, Money.format(amountKopecks));
     }
 }
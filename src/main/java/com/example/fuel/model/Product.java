@@ -4,18 +4,21 @@ package com.example.fuel.model;
  * Абстрактный класс Product — общая основа для всех товаров и услуг.
  * У каждого продукта есть ID, название, цена и количество (stockQty).
  * Наследуется классами FuelProduct и ServiceProduct.
+ *
+ * Цена хранится в копейках, количество — в тысячных долях (мл), см. Money;
+ * getPrice() / getStockQty() отдают привычные рубли и литры для отображения.
  */
 public abstract class Product {
     protected int id;
     protected String name;
-    protected double price;
-    protected double stockQty;
+    protected long priceKopecks;
+    protected long stockMilli;
 
-    public Product(int id, String name, double price, double stockQty) {
+    public Product(int id, String name, long priceKopecks, long stockMilli) {
         this.id = id;
         this.name = name;
-        this.price = price;
-        this.stockQty = stockQty;
+        this.priceKopecks = priceKopecks;
+        this.stockMilli = stockMilli;
     }
 
     public int getId() {
@@ -27,19 +30,34 @@ public abstract class Product {
     }
 
     public double getPrice() {
-        return price;
+        return Money.toRubles(priceKopecks);
+    }
+
+    public long getPriceKopecks() {
+        return priceKopecks;
     }
 
     public double getStockQty() {
-        return stockQty;
+        return Money.toUnits(stockMilli);
+    }
+
+    public long getStockMilli() {
+        return stockMilli;
     }
 
     public void setStockQty(double stockQty) {
-        this.stockQty = stockQty;
+        this.stockMilli = Money.ofUnits(stockQty);
     }
 
     /**
      * Абстрактный метод — возвращает тип продукта (используется при отображении или логике).
      */
     public abstract String getProductType();
+
+    /** Тип позиции в каталоге и корзине ("PRODUCT" или "SERVICE", см. CatalogKey). */
+    public abstract String getItemType();
+
+    public CatalogKey getKey() {
+        return new CatalogKey(getItemType(), id);
+    }
 }
@@ -1,17 +1,22 @@
 package com.example.fuel.model;
 
 /**
- * ServiceProduct — модель для услуги (хранится в таблице services).
+ * ServiceProduct — модель для услуги (строка каталога с item_type = 'SERVICE').
  * Наследуется от Product.
  */
 public class ServiceProduct extends Product {
 
-    public ServiceProduct(int id, String name, double price, double stockQty) {
-        super(id, name, price, stockQty);
+    public ServiceProduct(int id, String name, long priceKopecks, long stockMilli) {
+        super(id, name, priceKopecks, stockMilli);
     }
 
     @Override
     public String getProductType() {
         return "Service";
     }
+
+    @Override
+    public String getItemType() {
+        return CatalogKey.SERVICE;
+    }
 }
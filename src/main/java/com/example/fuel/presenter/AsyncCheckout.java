@@ -0,0 +1,93 @@
+package com.example.fuel.presenter;
+
+import com.example.fuel.model.PaymentMethod;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Асинхронный фасад оплаты для безголовых терминалов.
+ *
+ * Каждая операция выполняется в своём виртуальном потоке и возвращает
+ * CompletableFuture&lt;CheckoutResult&gt;: вызывающий код может продолжить его печатью чека
+ * или разблокировкой колонки (thenApply / thenCompose), не занимая платформенный поток.
+ *
+ * Одновременно к SQLite идут не больше maxInFlight оплат — остальные ждут на семафоре,
+ * а ожидание виртуального потока почти ничего не стоит. Ошибки не пробрасываются
+ * исключением, а возвращаются результатом со статусом ERROR.
+ */
+public class AsyncCheckout implements AutoCloseable {
+
+    private static final int DEFAULT_MAX_IN_FLIGHT =
+            Integer.getInteger("smartfuel.checkout.maxInFlight", 16);
+
+    private final SmartFuelPresenter presenter;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public AsyncCheckout(SmartFuelPresenter presenter) {
+        this(presenter, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * @param maxInFlight сколько оплат может одновременно выполняться в БД
+     */
+    public AsyncCheckout(SmartFuelPresenter presenter, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight должно быть >= 1: " + maxInFlight);
+        }
+        this.presenter = presenter;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight, true);
+    }
+
+    public CompletableFuture<CheckoutResult> checkoutFullWithMethod(int customerId, PaymentMethod method) {
+        return submit(customerId, () -> presenter.tryCheckoutFullWithMethod(customerId, method));
+    }
+
+    public CompletableFuture<CheckoutResult> checkoutFullCombined(int customerId) {
+        return submit(customerId, () -> presenter.tryCheckoutFullCombined(customerId));
+    }
+
+    public CompletableFuture<CheckoutResult> checkoutPartial(int customerId, PaymentMethod method, double amount) {
+        return submit(customerId, () -> presenter.tryCheckoutPartial(customerId, method, amount));
+    }
+
+    /** Сколько оплат выполняется прямо сейчас (не считая ждущих в очереди). */
+    public int getInFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /** Перестать принимать оплаты и дождаться уже начатых. */
+    @Override
+    public void close() {
+        executor.close();
+    }
+
+    private CompletableFuture<CheckoutResult> submit(int customerId, Supplier<CheckoutResult> work) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return CheckoutResult.error(customerId, e);
+            }
+            try {
+                return work.get();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                return CheckoutResult.error(customerId, e);
+            } finally {
+                inFlight.release();
+            }
+        }, executor);
+    }
+}
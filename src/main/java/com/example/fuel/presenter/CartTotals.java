@@ -0,0 +1,151 @@
+package com.example.fuel.presenter;
+
+import com.example.fuel.model.CartItem;
+import com.example.fuel.service.CartService;
+import com.example.fuel.service.CustomerLocks;
+import com.example.fuel.service.ProductService;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Текущий итог корзины каждого клиента, который поддерживается при изменениях,
+ * а не пересчитывается целиком.
+ *
+ * Добавление строки прибавляет её стоимость, удаление — вычитает (O(1) на строку).
+ * Итог помнит версию цен каталога, по которой посчитан: если цены изменились
+ * (или итога ещё нет), при следующем чтении корзина пересчитывается один раз —
+ * под замком клиента, чтобы не пропустить изменение, сделанное во время пересчёта.
+ * Суммы — в копейках, поэтому прибавление и вычитание строк не накапливают погрешность.
+ *
+ * Итог видит только изменения, прошедшие через свой presenter: корзину могут поменять и в обход
+ * (другой presenter того же хранилища, прямой вызов CartService). Поэтому перед списанием денег
+ * presenter сверяет итог с корзиной в хранилище и при расхождении сбрасывает его (invalidate).
+ */
+final class CartTotals {
+
+    /** Строка, учтённая в итоге. */
+    private record Line(String type, int itemId, long price) {}
+
+    private static final class Entry {
+        final long priceVersion;
+        final Map<Integer, Line> lines = new HashMap<>();
+        long total;
+
+        Entry(long priceVersion) {
+            this.priceVersion = priceVersion;
+        }
+    }
+
+    private final CartService cartService;
+    private final ProductService productService;
+    private final CustomerLocks locks;
+    private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+
+    CartTotals(CartService cartService, ProductService productService, CustomerLocks locks) {
+        this.cartService = cartService;
+        this.productService = productService;
+        this.locks = locks;
+    }
+
+    /** Итог корзины в копейках; пересчитывается, только если его нет или изменились цены. */
+    long getTotalKopecks(int customerId) {
+        long version = productService.getPriceVersion();
+        Entry e = entries.get(customerId);
+        if (e == null || e.priceVersion != version) {
+            e = locks.withLock(customerId, () -> rebuild(customerId, version));
+        }
+        synchronized (e) {
+            return e.total;
+        }
+    }
+
+    /** Число строк в корзине (по тому же итогу, без обращения к базе, если он уже посчитан). */
+    int getLineCount(int customerId) {
+        getTotalKopecks(customerId);
+        Entry e = entries.get(customerId);
+        if (e == null) return 0;
+        synchronized (e) {
+            return e.lines.size();
+        }
+    }
+
+    /** Строка добавлена в корзину (item.getId() уже заполнен DAO). */
+    void added(CartItem item) {
+        Entry e = valid(item.getCustomerId());
+        if (e == null) return;
+        long price = cartService.calculateLinePriceKopecks(item);
+        synchronized (e) {
+            e.lines.put(item.getId(), new Line(item.getItemType(), item.getItemId(), price));
+            e.total += price;
+        }
+    }
+
+    /** Строка удалена по id (из корзины именно этого клиента — владельца проверяет DAO). */
+    void removedLine(int customerId, int cartItemId) {
+        Entry e = valid(customerId);
+        if (e == null) return;
+        synchronized (e) {
+            Line line = e.lines.remove(cartItemId);
+            if (line == null) {
+                // Строку добавили в обход presenter — пересчитаем при следующем чтении
+                entries.remove(customerId, e);
+                return;
+            }
+            subtract(e, line);
+        }
+    }
+
+    /** Удалены все строки товара. */
+    void removedItem(int customerId, String itemType, int itemId) {
+        Entry e = valid(customerId);
+        if (e == null) return;
+        synchronized (e) {
+            Iterator<Line> it = e.lines.values().iterator();
+            while (it.hasNext()) {
+                Line line = it.next();
+                if (line.itemId() == itemId && line.type().equals(itemType)) {
+                    it.remove();
+                    subtract(e, line);
+                }
+            }
+        }
+    }
+
+    /** Корзина очищена (вручную или после оплаты). */
+    void cleared(int customerId) {
+        entries.put(customerId, new Entry(productService.getPriceVersion()));
+    }
+
+    /** Забыть итог клиента — пересчитается при следующем чтении. */
+    void invalidate(int customerId) {
+        entries.remove(customerId);
+    }
+
+    private static void subtract(Entry e, Line line) {
+        e.total -= line.price();
+    }
+
+    /** Итог, если он есть и посчитан по текущим ценам; иначе null (пересчитается при чтении). */
+    private Entry valid(int customerId) {
+        Entry e = entries.get(customerId);
+        if (e != null && e.priceVersion != productService.getPriceVersion()) {
+            entries.remove(customerId, e);
+            return null;
+        }
+        return e;
+    }
+
+    private Entry rebuild(int customerId, long version) {
+        Entry e = new Entry(version);
+        for (CartItem item : cartService.getCartItems(customerId)) {
+            long price = cartService.calculateLinePriceKopecks(item);
+            e.lines.put(item.getId(), new Line(item.getItemType(), item.getItemId(), price));
+            e.total += price;
+        }
+        entries.put(customerId, e);
+        return e;
+    }
+}
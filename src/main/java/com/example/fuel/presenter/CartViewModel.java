@@ -0,0 +1,174 @@
+package com.example.fuel.presenter;
+
+import com.example.fuel.model.CartItem;
+import com.example.fuel.model.FuelProduct;
+import com.example.fuel.model.Money;
+import com.example.fuel.model.ServiceProduct;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Модель представления корзины одного клиента.
+ *
+ * Корзина загружается один раз на изменение (reload()), после чего UI читает
+ * готовые строки, итог и карту «товар → количество» без обращений к БД.
+ * Ячейки таблиц «В корзине» берут количество отсюда, поэтому прокрутка и
+ * перерисовка таблиц не выполняют SQL.
+ *
+ * Состояние хранится неизменяемым объектом и подменяется целиком,
+ * так что читать его можно из любого потока.
+ */
+public class CartViewModel {
+
+    /** Строка корзины, готовая для отображения. */
+    public static final class Line {
+        private final String type;
+        private final int cartItemId;
+        private final int itemId;
+        private final String name;
+        private final double quantity;
+        private final double price;
+
+        Line(String type, int cartItemId, int itemId, String name, double quantity, double price) {
+            this.type = type;
+            this.cartItemId = cartItemId;
+            this.itemId = itemId;
+            this.name = name;
+            this.quantity = quantity;
+            this.price = price;
+        }
+
+        public String getType() { return type; }
+        public int getCartItemId() { return cartItemId; }
+        public int getItemId() { return itemId; }
+        public String getName() { return name; }
+        public double getQuantity() { return quantity; }
+        public double getPrice() { return price; }
+    }
+
+    private static final class State {
+        final List<Line> lines;
+        final Map<Integer, Double> fuelQty;
+        final Map<Integer, Double> serviceQty;
+        final double total;
+        final double paid;
+        final double remaining;
+
+        State(List<Line> lines, Map<Integer, Double> fuelQty, Map<Integer, Double> serviceQty,
+              double total, double paid, double remaining) {
+            this.lines = Collections.unmodifiableList(lines);
+            this.fuelQty = fuelQty;
+            this.serviceQty = serviceQty;
+            this.total = total;
+            this.paid = paid;
+            this.remaining = remaining;
+        }
+    }
+
+    private static final State EMPTY = new State(List.of(), Map.of(), Map.of(), 0.0, 0.0, 0.0);
+
+    private final SmartFuelPresenter presenter;
+    private final int customerId;
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private volatile State state = EMPTY;
+
+    public CartViewModel(SmartFuelPresenter presenter, int customerId) {
+        this.presenter = presenter;
+        this.customerId = customerId;
+    }
+
+    /**
+     * Перечитать корзину и пересчитать итоги. Вызывается один раз после каждого изменения.
+     */
+    public void reload() {
+        List<CartItem> items = presenter.getCartItems(customerId);
+
+        Map<Integer, FuelProduct> fuelById = new HashMap<>();
+        for (FuelProduct p : presenter.getAllFuel()) {
+            fuelById.put(p.getId(), p);
+        }
+        Map<Integer, ServiceProduct> serviceById = new HashMap<>();
+        for (ServiceProduct s : presenter.getAllServices()) {
+            serviceById.put(s.getId(), s);
+        }
+
+        List<Line> lines = new ArrayList<>(items.size());
+        Map<Integer, Double> fuelQty = new HashMap<>();
+        Map<Integer, Double> serviceQty = new HashMap<>();
+        long total = 0;
+
+        for (CartItem ci : items) {
+            String name;
+            long unitPrice;
+            if ("PRODUCT".equals(ci.getItemType())) {
+                FuelProduct p = fuelById.get(ci.getItemId());
+                name = (p != null ? p.getName() : "неизвестно");
+                unitPrice = (p != null ? p.getPriceKopecks() : 0);
+                fuelQty.merge(ci.getItemId(), ci.getQuantity(), Double::sum);
+            } else {
+                ServiceProduct s = serviceById.get(ci.getItemId());
+                name = (s != null ? s.getName() : "неизвестно");
+                unitPrice = (s != null ? s.getPriceKopecks() : 0);
+                serviceQty.merge(ci.getItemId(), ci.getQuantity(), Double::sum);
+            }
+            long price = Money.times(unitPrice, ci.getQuantityMilli());
+            total = Money.add(total, price);
+            lines.add(new Line(ci.getItemType(), ci.getId(), ci.getItemId(), name, ci.getQuantity(), Money.toRubles(price)));
+        }
+
+        long paid = Money.ofRubles(presenter.getPaid(customerId));
+        long remaining = Math.max(0, total - paid);
+        state = new State(lines, fuelQty, serviceQty, Money.toRubles(total), Money.toRubles(paid), Money.toRubles(remaining));
+
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+
+    /** Подписаться на изменения (вызывается после каждого reload()). */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    public List<Line> getLines() {
+        return state.lines;
+    }
+
+    /** Количество товара в корзине (0, если его там нет). */
+    public double getQuantity(String itemType, int itemId) {
+        Map<Integer, Double> map = "PRODUCT".equals(itemType) ? state.fuelQty : state.serviceQty;
+        return map.getOrDefault(itemId, 0.0);
+    }
+
+    public boolean contains(String itemType, int itemId) {
+        Map<Integer, Double> map = "PRODUCT".equals(itemType) ? state.fuelQty : state.serviceQty;
+        return map.containsKey(itemId);
+    }
+
+    /** Первая строка корзины с этим товаром или null. */
+    public Line findLine(String itemType, int itemId) {
+        for (Line line : state.lines) {
+            if (line.type.equals(itemType) && line.itemId == itemId) {
+                return line;
+            }
+        }
+        return null;
+    }
+
+    public double getTotal() {
+        return state.total;
+    }
+
+    public double getPaid() {
+        return state.paid;
+    }
+
+    public double getRemaining() {
+        return state.remaining;
+    }
+}
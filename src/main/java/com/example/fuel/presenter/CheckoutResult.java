@@ -0,0 +1,86 @@
+package com.example.fuel.presenter;
+
+/**
+ * Результат оплаты: успех или причина отказа, сколько списано и сколько осталось.
+ */
+public final class CheckoutResult {
+
+    /** Почему оплата завершилась так, а не иначе. */
+    public enum Status {
+        OK("оплачено"),
+        NOTHING_TO_PAY("нечего оплачивать: корзина пуста или уже оплачена"),
+        INVALID_AMOUNT("сумма должна быть больше нуля"),
+        EXCEEDS_REMAINING("сумма больше остатка к оплате"),
+        DECLINED("оплата отклонена: недостаточно средств"),
+        ERROR("ошибка при оплате");
+
+        private final String description;
+
+        Status(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    private final Status status;
+    private final int customerId;
+    private final double charged;
+    private final double remaining;
+    private final Throwable error;
+
+    private CheckoutResult(Status status, int customerId, double charged, double remaining, Throwable error) {
+        this.status = status;
+        this.customerId = customerId;
+        this.charged = charged;
+        this.remaining = remaining;
+        this.error = error;
+    }
+
+    public static CheckoutResult ok(int customerId, double charged, double remaining) {
+        return new CheckoutResult(Status.OK, customerId, charged, remaining, null);
+    }
+
+    public static CheckoutResult failed(Status status, int customerId, double remaining) {
+        return new CheckoutResult(status, customerId, 0.0, remaining, null);
+    }
+
+    public static CheckoutResult error(int customerId, Throwable error) {
+        return new CheckoutResult(Status.ERROR, customerId, 0.0, 0.0, error);
+    }
+
+    public boolean isSuccess() {
+        return status == Status.OK;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public int getCustomerId() {
+        return customerId;
+    }
+
+    /** Сколько списано этой операцией (0 при отказе). */
+    public double getCharged() {
+        return charged;
+    }
+
+    /** Остаток к оплате после операции. */
+    public double getRemaining() {
+        return remaining;
+    }
+
+    /** Исключение для статуса ERROR, иначе null. */
+    public Throwable getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CheckoutResult[%s, customer=%d, charged=%.2f, remaining=%.2f]",
+                status, customerId, charged, remaining);
+    }
+}
@@ -1,36 +1,111 @@
 package com.example.fuel.presenter;
 
+import com.example.fuel.db.GroupCommitter;
+import com.example.fuel.metrics.CheckoutEvent;
 import com.example.fuel.model.CartItem;
+import com.example.fuel.model.CatalogKey;
 import com.example.fuel.model.Customer;
 import com.example.fuel.model.FuelProduct;
+import com.example.fuel.model.Money;
 import com.example.fuel.model.PaymentMethod;
 import com.example.fuel.model.ServiceProduct;
 import com.example.fuel.service.CartService;
+import com.example.fuel.service.CustomerLocks;
 import com.example.fuel.service.CustomerService;
 import com.example.fuel.service.PaymentService;
 import com.example.fuel.service.ProductService;
+import com.example.fuel.service.StockReservations;
+import com.example.fuel.storage.StorageProvider;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
 
 /**
  * Presenter в паттерне MVP: хранит информацию о частичных платежах (paidMap),
  * чтобы UI мог показывать НЕ полную сумму, а остаток к оплате.
+ *
+ * Один presenter может обслуживать несколько терминалов (колонок) одновременно:
+ * изменения корзины и оплаты одного клиента идут под его замком (CustomerLocks),
+ * разных клиентов — параллельно. paidMap — ConcurrentHashMap, читать его можно без замка.
+ *
+ * С -Dsmartfuel.groupCommit=true (или с переданным GroupCommitter) оплаты разных терминалов
+ * собираются в общие транзакции: меньше COMMIT-ов при том же результате для каждой продажи.
+ *
+ * Итог корзины не пересчитывается на каждый запрос: CartTotals обновляет его при каждом
+ * изменении корзины и пересчитывает только после изменения цен.
+ *
+ * Топливо резервируется при добавлении в корзину (StockReservations): если свободного остатка
+ * не хватает, addToCart возвращает false. Брошенные корзины очищает фоновая проверка
+ * (startReservationSweep) — не колонка, которой не хватило топлива.
+ *
+ * Внутри суммы хранятся в копейках (см. Money); методы с double — для UI.
+ *
+ * Данные берутся из StorageProvider (по умолчанию — из настройки smartfuel.storage);
+ * групповой COMMIT имеет смысл только для SQLite.
  */
 public class SmartFuelPresenter {
 
-    private final ProductService productService = new ProductService();
-    private final CustomerService customerService = new CustomerService();
+    /** Как часто искать брошенные корзины, мс. */
+    private static final long SWEEP_INTERVAL_MS = Long.getLong("smartfuel.reservation.sweepMs", 60_000);
+
+    /** Один поток на все presenter-ы: проверка короткая и редкая. */
+    private static final ScheduledExecutorService SWEEPER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "reservation-sweep");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final ProductService productService;
+    private final CustomerService customerService;
     private final CartService cartService;
-    private final PaymentService paymentService = new PaymentService();
+    private final PaymentService paymentService;
+
+    private final CustomerLocks locks = new CustomerLocks();
+
+    /** Сколько уже оплатил клиент частями, коп. (по customerId; меняется под замком клиента). */
+    private final Map<Integer, AtomicLong> paidMap = new ConcurrentHashMap<>();
+
+    private final CartTotals cartTotals;
 
-    /** Сколько уже оплатил клиент частями (по customerId). */
-    private final Map<Integer, Double> paidMap = new HashMap<>();
+    /** Резервы топлива в корзинах (общие для всех presenter-ов хранилища). */
+    private final StockReservations reservations;
+
+    /** Групповой COMMIT оплат (null — каждая оплата своей транзакцией). */
+    private final GroupCommitter groupCommitter;
+
+    /** Фоновая очистка брошенных корзин (null — не запущена). */
+    private ScheduledFuture<?> sweep;
 
     public SmartFuelPresenter() {
+        this(StorageProvider.fromConfig());
+    }
+
+    public SmartFuelPresenter(StorageProvider storage) {
+        this(storage, Boolean.getBoolean("smartfuel.groupCommit") && storage == StorageProvider.sqlite()
+                ? GroupCommitter.shared() : null);
+    }
+
+    public SmartFuelPresenter(GroupCommitter groupCommitter) {
+        this(StorageProvider.sqlite(), groupCommitter);
+    }
+
+    public SmartFuelPresenter(StorageProvider storage, GroupCommitter groupCommitter) {
+        this.productService = new ProductService(storage);
+        this.customerService = new CustomerService(storage);
+        this.paymentService = new PaymentService(storage);
         // Инициализируем CartService с передачей productService
-        this.cartService = new CartService(productService);
+        this.cartService = new CartService(productService, storage.cartItemDAO());
+        this.cartTotals = new CartTotals(cartService, productService, locks);
+        this.reservations = StockReservations.of(storage);
+        this.groupCommitter = groupCommitter;
     }
 
     // 1) Продукты и услуги
@@ -43,30 +118,154 @@ public class SmartFuelPresenter {
         return productService.getAllServices();
     }
 
+    /** Сколько литров топлива ещё можно положить в корзину (остаток минус резервы корзин). */
+    public double getAvailableFuel(int productId) {
+        return Money.toUnits(reservations.getAvailableMilli(productId));
+    }
+
+    /** Есть ли такая позиция в каталоге (проверка по кэшу каталога, без обращения к БД). */
+    public boolean isInCatalog(String itemType, int itemId) {
+        return !productService.getByKeys(List.of(new CatalogKey(itemType, itemId))).isEmpty();
+    }
+
     // 2) Корзина
 
-    /** Добавляет элемент и сбрасывает “paid” (т.к. счёт изменился). */
-    public void addToCart(int customerId, String itemType, int itemId, double quantity) {
-        cartService.addToCart(new CartItem(customerId, itemType, itemId, quantity));
-        resetPaid(customerId);
+    /**
+     * Добавляет элемент и сбрасывает “paid” (т.к. счёт изменился).
+     * Топливо сначала резервируется (без замков); false — свободного топлива не хватает
+     * или такой позиции нет в каталоге (тогда в корзину ничего не пишется).
+     */
+    public boolean addToCart(int customerId, String itemType, int itemId, double quantity) {
+        if (!isInCatalog(itemType, itemId)) {
+            return false;
+        }
+        boolean fuel = CatalogKey.FUEL.equals(itemType);
+        long milli = Money.ofUnits(quantity);
+        if (fuel && !reservations.tryReserve(itemId, milli)) {
+            return false;
+        }
+        boolean added = false;
+        try {
+            added = locks.withLock(customerId, () -> {
+                CartItem item = new CartItem(customerId, itemType, itemId, quantity);
+                cartService.addToCart(item);
+                if (item.getId() <= 0) {
+                    return false; // строка не записана (ошибка уже выведена DAO)
+                }
+                cartTotals.added(item);
+                if (fuel) {
+                    reservations.track(item.getId(), customerId, itemId, milli);
+                }
+                reservations.touch(customerId);
+                resetPaid(customerId);
+                return true;
+            });
+        } finally {
+            if (fuel && !added) {
+                reservations.cancel(itemId, milli);
+            }
+        }
+        return added;
     }
 
-    /** Удалить элемент из корзины по внутреннему ID записи и сбрасывает paid. */
-    public void removeCartItemById(int cartItemId, int customerId) {
-        cartService.removeCartItem(cartItemId);
-        resetPaid(customerId);
+    /**
+     * Запустить фоновую очистку брошенных корзин раз в periodMs
+     * (приложение и сервер; в тестах releaseAbandonedCarts() вызывают сами).
+     */
+    public synchronized SmartFuelPresenter startReservationSweep(long periodMs) {
+        if (sweep == null) {
+            sweep = SWEEPER.scheduleWithFixedDelay(() -> {
+                try {
+                    releaseAbandonedCarts();
+                } catch (RuntimeException e) {
+                    // Ошибка одной проверки не должна отменять следующие
+                    e.printStackTrace();
+                }
+            }, periodMs, periodMs, TimeUnit.MILLISECONDS);
+        }
+        return this;
+    }
+
+    /** То же с периодом из -Dsmartfuel.reservation.sweepMs (по умолчанию минута). */
+    public SmartFuelPresenter startReservationSweep() {
+        return startReservationSweep(SWEEP_INTERVAL_MS);
+    }
+
+    public synchronized void stopReservationSweep() {
+        if (sweep != null) {
+            sweep.cancel(false);
+            sweep = null;
+        }
+    }
+
+    /**
+     * Очистить корзины, к которым не обращались дольше таймаута резерва, — их топливо снова доступно.
+     * Корзины с частичной оплатой не трогаем: деньги за них уже списаны.
+     * Возвращает, сколько корзин очищено.
+     */
+    public int releaseAbandonedCarts() {
+        int cleared = 0;
+        for (int customerId : reservations.idleCustomers(System.currentTimeMillis())) {
+            boolean done = locks.withLock(customerId, () -> {
+                // пока ждали замок, клиент мог вернуться к корзине
+                if (paidKopecks(customerId) > 0 || !reservations.isIdle(customerId, System.currentTimeMillis())) {
+                    return false;
+                }
+                if (!cartService.clearCart(customerId)) {
+                    return false;
+                }
+                cartTotals.cleared(customerId);
+                reservations.releaseAll(customerId);
+                return true;
+            });
+            if (done) {
+                cleared++;
+            }
+        }
+        return cleared;
+    }
+
+    /**
+     * Удалить элемент из корзины клиента по внутреннему ID записи и сбросить paid.
+     * false — в корзине этого клиента такой строки нет (итог и резервы не меняются).
+     */
+    public boolean removeCartItemById(int cartItemId, int customerId) {
+        return locks.withLock(customerId, () -> {
+            if (!cartService.removeCartItem(customerId, cartItemId)) {
+                return false;
+            }
+            cartTotals.removedLine(customerId, cartItemId);
+            reservations.release(cartItemId);
+            reservations.touch(customerId);
+            resetPaid(customerId);
+            return true;
+        });
     }
 
     /** Удалить по (customerId, itemType, itemId) и сбросить paid. */
     public void removeFromCart(int customerId, String itemType, int itemId) {
-        cartService.removeFromCart(customerId, itemType, itemId);
-        resetPaid(customerId);
+        locks.withLock(customerId, () -> {
+            cartService.removeFromCart(customerId, itemType, itemId);
+            cartTotals.removedItem(customerId, itemType, itemId);
+            if (CatalogKey.FUEL.equals(itemType)) {
+                reservations.releaseItem(customerId, itemId);
+            }
+            reservations.touch(customerId);
+            resetPaid(customerId);
+        });
     }
 
-    /** Полностью очистить корзину и сбросить paid. */
-    public void clearCart(int customerId) {
-        cartService.clearCart(customerId);
-        resetPaid(customerId);
+    /** Полностью очистить корзину и сбросить paid. false — не удалось (корзина осталась как была). */
+    public boolean clearCart(int customerId) {
+        return locks.withLock(customerId, () -> {
+            if (!cartService.clearCart(customerId)) {
+                return false;
+            }
+            cartTotals.cleared(customerId);
+            reservations.releaseAll(customerId);
+            resetPaid(customerId);
+            return true;
+        });
     }
 
     /** Возвращает все элементы корзины */
@@ -76,25 +275,47 @@ public class SmartFuelPresenter {
 
     /** Полная стоимость корзины (не учитывая частичные платежи) */
     public double getCartTotal(int customerId) {
-        return cartService.calculateCartTotal(customerId);
+        return Money.toRubles(cartTotals.getTotalKopecks(customerId));
     }
 
     /** Сброс "оплачено частями" для данного клиента */
     private void resetPaid(int customerId) {
-        paidMap.put(customerId, 0.0);
+        AtomicLong paid = paidMap.get(customerId);
+        if (paid != null) {
+            paid.set(0);
+        }
     }
 
     /** Возвращает, сколько клиент уже оплатил частями (0.0, если не было) */
     public double getPaid(int customerId) {
-        return paidMap.getOrDefault(customerId, 0.0);
+        return Money.toRubles(paidKopecks(customerId));
     }
 
     /** Остаток к оплате = полная сумма − уже оплачено частями */
     public double getRemaining(int customerId) {
-        double total = getCartTotal(customerId);
-        double paid = getPaid(customerId);
-        double remaining = total - paid;
-        return remaining < 0 ? 0 : remaining;
+        return Money.toRubles(remainingKopecks(customerId));
+    }
+
+    private long paidKopecks(int customerId) {
+        AtomicLong paid = paidMap.get(customerId);
+        return paid != null ? paid.get() : 0;
+    }
+
+    private long remainingKopecks(int customerId) {
+        return Math.max(0, cartTotals.getTotalKopecks(customerId) - paidKopecks(customerId));
+    }
+
+    /**
+     * Остаток к списанию: итог из CartTotals сверяется с фактической корзиной в хранилище.
+     * Если корзину меняли в обход этого presenter-а, итог сбрасывается и списывается фактическая сумма.
+     */
+    private long chargeableKopecks(int customerId) {
+        long cached = cartTotals.getTotalKopecks(customerId);
+        long actual = cartService.calculateCartTotalKopecks(customerId);
+        if (actual != cached) {
+            cartTotals.invalidate(customerId);
+        }
+        return Math.max(0, actual - paidKopecks(customerId));
     }
 
     public boolean isItemInCart(int customerId, String type, int itemId) {
@@ -109,31 +330,54 @@ public class SmartFuelPresenter {
      * сбрасывает paid, очищает корзину и списывает товары со склада.
      */
     public boolean checkoutFullWithMethod(int customerId, PaymentMethod method) {
-        double remaining = getRemaining(customerId);
-        if (remaining <= 0) return false;
+        return tryCheckoutFullWithMethod(customerId, method).isSuccess();
+    }
+
+    /** То же, что checkoutFullWithMethod, но с причиной отказа. */
+    public CheckoutResult tryCheckoutFullWithMethod(int customerId, PaymentMethod method) {
+        return recorded(CheckoutEvent.FULL_WITH_METHOD, customerId, method,
+                () -> doCheckoutFullWithMethod(customerId, method));
+    }
+
+    private CheckoutResult doCheckoutFullWithMethod(int customerId, PaymentMethod method) {
+        long remaining = chargeableKopecks(customerId);
+        if (remaining <= 0) return CheckoutResult.failed(CheckoutResult.Status.NOTHING_TO_PAY, customerId, 0.0);
 
         // пытаемся оплатить ровно оставшуюся сумму одним методом
-        boolean ok = paymentService.payExactAmountWithMethod(customerId, method, remaining);
-        if (!ok) return false;
+        boolean ok = pay(() -> paymentService.payExactAmountWithMethodKopecks(customerId, method, remaining));
+        if (!ok) return CheckoutResult.failed(CheckoutResult.Status.DECLINED, customerId, Money.toRubles(remaining));
 
         // успешная оплата: сброс этих значений и очистка
         resetPaid(customerId);
+        cartTotals.cleared(customerId);
+        reservations.commitAll(customerId);
         // списание со склада и очистка корзины происходит внутри payExactAmountWithMethod
-        return true;
+        return CheckoutResult.ok(customerId, Money.toRubles(remaining), 0.0);
     }
 
     /**
      * Полная комбинированная оплата (cash→card→bonus) ровно оставшейся суммы.
      */
     public boolean checkoutFullCombined(int customerId) {
-        double remaining = getRemaining(customerId);
-        if (remaining <= 0) return false;
+        return tryCheckoutFullCombined(customerId).isSuccess();
+    }
+
+    /** То же, что checkoutFullCombined, но с причиной отказа. */
+    public CheckoutResult tryCheckoutFullCombined(int customerId) {
+        return recorded(CheckoutEvent.FULL_COMBINED, customerId, null, () -> doCheckoutFullCombined(customerId));
+    }
 
-        boolean ok = paymentService.payExactAmountCombined(customerId, remaining);
-        if (!ok) return false;
+    private CheckoutResult doCheckoutFullCombined(int customerId) {
+        long remaining = chargeableKopecks(customerId);
+        if (remaining <= 0) return CheckoutResult.failed(CheckoutResult.Status.NOTHING_TO_PAY, customerId, 0.0);
+
+        boolean ok = pay(() -> paymentService.payExactAmountCombinedKopecks(customerId, remaining));
+        if (!ok) return CheckoutResult.failed(CheckoutResult.Status.DECLINED, customerId, Money.toRubles(remaining));
 
         resetPaid(customerId);
-        return true;
+        cartTotals.cleared(customerId);
+        reservations.commitAll(customerId);
+        return CheckoutResult.ok(customerId, Money.toRubles(remaining), 0.0);
     }
 
     // 4) Частичная оплата
@@ -143,21 +387,69 @@ public class SmartFuelPresenter {
      * Если успешно, увеличиваем paid и возвращаем true.
      */
     public boolean checkoutPartial(int customerId, PaymentMethod method, double amount) {
-        if (amount <= 0) return false;
+        return tryCheckoutPartial(customerId, method, amount).isSuccess();
+    }
+
+    /** То же, что checkoutPartial, но с причиной отказа. */
+    public CheckoutResult tryCheckoutPartial(int customerId, PaymentMethod method, double amount) {
+        long kopecks = Money.ofRubles(amount);
+        if (kopecks <= 0) return CheckoutResult.failed(CheckoutResult.Status.INVALID_AMOUNT, customerId, getRemaining(customerId));
+        // Остаток, списание и paid должны меняться вместе — иначе два терминала
+        // могут оба увидеть один и тот же остаток и переплатить
+        return recorded(CheckoutEvent.PARTIAL, customerId, method, () -> doCheckoutPartial(customerId, method, kopecks));
+    }
 
-        double remaining = getRemaining(customerId);
+    private CheckoutResult doCheckoutPartial(int customerId, PaymentMethod method, long amount) {
+        long remaining = chargeableKopecks(customerId);
         if (amount > remaining) {
             // Можно запретить платить больше, чем остаток
-            return false;
+            return CheckoutResult.failed(CheckoutResult.Status.EXCEEDS_REMAINING, customerId, Money.toRubles(remaining));
         }
 
-        boolean ok = paymentService.payPartial(customerId, method, amount);
-        if (!ok) return false;
+        boolean ok = pay(() -> paymentService.payPartialKopecks(customerId, method, amount));
+        if (!ok) return CheckoutResult.failed(CheckoutResult.Status.DECLINED, customerId, Money.toRubles(remaining));
 
+        reservations.touch(customerId);
         // Увеличиваем сумму, которую клиент уже оплатил
-        double newPaid = getPaid(customerId) + amount;
-        paidMap.put(customerId, newPaid);
-        return true;
+        paidMap.computeIfAbsent(customerId, id -> new AtomicLong()).addAndGet(amount);
+        return CheckoutResult.ok(customerId, Money.toRubles(amount), Money.toRubles(remaining - amount));
+    }
+
+    /**
+     * Оплата под замком клиента, записанная событием JFR (CheckoutEvent) вместе с ожиданием замка.
+     * Пока запись JFR не идёт, begin/commit ничего не делают, а число строк корзины не считается.
+     */
+    private CheckoutResult recorded(String kind, int customerId, PaymentMethod method, Supplier<CheckoutResult> checkout) {
+        CheckoutEvent event = new CheckoutEvent();
+        event.begin();
+        CheckoutResult result = null;
+        try {
+            result = locks.withLock(customerId, () -> {
+                if (event.isEnabled()) {
+                    event.itemCount = cartTotals.getLineCount(customerId);
+                }
+                return checkout.get();
+            });
+            return result;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.kind = kind;
+                event.customerId = customerId;
+                event.method = method == null ? null : method.name();
+                event.amountKopecks = result == null ? 0 : Money.ofRubles(result.getCharged());
+                event.status = result == null ? "ERROR" : result.getStatus().name();
+                event.commit();
+            }
+        }
+    }
+
+    /** Выполнить оплату: сразу или в общей транзакции группового COMMIT (ждём результат после COMMIT). */
+    private boolean pay(BooleanSupplier payment) {
+        if (groupCommitter == null) {
+            return payment.getAsBoolean();
+        }
+        return groupCommitter.execute(payment::getAsBoolean);
     }
 
     // 5) Клиент
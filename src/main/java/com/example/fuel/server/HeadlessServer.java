@@ -0,0 +1,340 @@
+package com.example.fuel.server;
+
+import com.example.fuel.metrics.Histogram;
+import com.example.fuel.metrics.Metrics;
+import com.example.fuel.model.CartItem;
+import com.example.fuel.model.CatalogKey;
+import com.example.fuel.model.Customer;
+import com.example.fuel.model.FuelProduct;
+import com.example.fuel.model.Money;
+import com.example.fuel.model.PaymentMethod;
+import com.example.fuel.model.ServiceProduct;
+import com.example.fuel.presenter.AsyncCheckout;
+import com.example.fuel.presenter.CheckoutResult;
+import com.example.fuel.presenter.SmartFuelPresenter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTP API для безголовых терминалов (колонки, киоски самообслуживания) поверх SmartFuelPresenter.
+ *
+ * Встроенный в JDK HttpServer, каждый запрос — в своём виртуальном потоке, ответы — компактный JSON.
+ * Один presenter обслуживает все терминалы; оплаты идут через AsyncCheckout, поэтому к БД
+ * одновременно обращаются не больше smartfuel.checkout.maxInFlight оплат.
+ *
+ * Параметры передаются в строке запроса (тело запроса не читается):
+ * <pre>
+ * GET    /catalog                                         топливо (со свободным остатком) и услуги
+ * GET    /customers/{id}                                  балансы клиента
+ * GET    /customers/{id}/cart                             строки корзины, сумма, оплачено, остаток
+ * POST   /customers/{id}/cart?type=PRODUCT&item=1&qty=2.5 добавить (409 — топлива не хватает)
+ * DELETE /customers/{id}/cart/{lineId}                    удалить строку
+ * DELETE /customers/{id}/cart                             очистить корзину
+ * POST   /customers/{id}/checkout?method=Карта            полная оплата (без method — комбинированная)
+ * POST   /customers/{id}/checkout/partial?method=Карта&amount=100
+ * GET    /metrics                                         снимок гистограмм (нс) и счётчиков Metrics
+ * </pre>
+ * Адрес — -Dsmartfuel.server.host (по умолчанию 127.0.0.1) и -Dsmartfuel.server.port (8080, 0 — любой свободный).
+ */
+public class HeadlessServer implements AutoCloseable {
+
+    public static final int DEFAULT_PORT = Integer.getInteger("smartfuel.server.port", 8080);
+    private static final String HOST = System.getProperty("smartfuel.server.host", "127.0.0.1");
+    /** Очередь входящих соединений, пока виртуальные потоки разбирают уже принятые. */
+    private static final int BACKLOG = Integer.getInteger("smartfuel.server.backlog", 1024);
+
+    static {
+        // Заголовки и тело ответа уходят отдельными записями в сокет: с алгоритмом Нейгла
+        // и отложенным ACK клиента каждый ответ задерживается на ~40 мс. Читается при первом HttpServer.create().
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final SmartFuelPresenter presenter;
+    private final AsyncCheckout checkout;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final LongAdder requests = new LongAdder();
+
+    private record Response(int status, String json) {}
+
+    public HeadlessServer(SmartFuelPresenter presenter, int port) throws IOException {
+        this.presenter = presenter;
+        this.checkout = new AsyncCheckout(presenter);
+        this.server = HttpServer.create(new InetSocketAddress(HOST, port), BACKLOG);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    public HeadlessServer start() {
+        server.start();
+        return this;
+    }
+
+    /** Фактический порт (если запускали с портом 0). */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /** Сколько запросов обработано с момента запуска. */
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /** Остановить приём запросов и дождаться уже начатых. */
+    @Override
+    public void close() {
+        server.stop(0);
+        checkout.close();
+        executor.close();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.increment();
+        try {
+            exchange.getRequestBody().transferTo(OutputStream.nullOutputStream());
+            Response response;
+            try {
+                response = route(exchange.getRequestMethod(), exchange.getRequestURI().getPath(),
+                        parseQuery(exchange.getRequestURI().getRawQuery()));
+            } catch (IllegalArgumentException e) {
+                response = error(400, e.getMessage());
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                response = error(500, "внутренняя ошибка");
+            }
+            byte[] body = response.json().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(response.status(), body.length);
+            exchange.getResponseBody().write(body);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Response route(String method, String path, Map<String, String> query) {
+        String[] p = path.replaceAll("^/+|/+$", "").split("/+");
+
+        if (p.length == 1 && p[0].equals("catalog")) {
+            return method.equals("GET") ? catalog() : notAllowed();
+        }
+        if (p.length == 1 && p[0].equals("metrics")) {
+            return method.equals("GET") ? metrics() : notAllowed();
+        }
+        if (p.length < 2 || !p[0].equals("customers")) {
+            return error(404, "нет такого адреса: " + path);
+        }
+        int customerId = parseInt(p[1], "id клиента");
+
+        if (p.length == 2) {
+            return method.equals("GET") ? customer(customerId) : notAllowed();
+        }
+        if (p[2].equals("cart")) {
+            if (p.length == 3) {
+                return switch (method) {
+                    case "GET" -> cart(customerId);
+                    case "POST" -> addToCart(customerId, query);
+                    case "DELETE" -> {
+                        presenter.clearCart(customerId);
+                        yield cart(customerId);
+                    }
+                    default -> notAllowed();
+                };
+            }
+            if (p.length == 4) {
+                if (!method.equals("DELETE")) {
+                    return notAllowed();
+                }
+                int lineId = parseInt(p[3], "id строки");
+                if (!presenter.removeCartItemById(lineId, customerId)) {
+                    return error(404, "в корзине клиента " + customerId + " нет строки " + lineId);
+                }
+                return cart(customerId);
+            }
+        }
+        if (p[2].equals("checkout")) {
+            if (!method.equals("POST")) {
+                return notAllowed();
+            }
+            if (p.length == 3) {
+                String m = query.get("method");
+                return checkoutResult(m == null
+                        ? checkout.checkoutFullCombined(customerId).join()
+                        : checkout.checkoutFullWithMethod(customerId, PaymentMethod.valueOf(m)).join());
+            }
+            if (p.length == 4 && p[3].equals("partial")) {
+                PaymentMethod m = PaymentMethod.valueOf(required(query, "method"));
+                double amount = parseDouble(required(query, "amount"), "amount");
+                return checkoutResult(checkout.checkoutPartial(customerId, m, amount).join());
+            }
+        }
+        return error(404, "нет такого адреса: " + path);
+    }
+
+    private Response catalog() {
+        JsonWriter json = new JsonWriter().beginObject().name("fuel").beginArray();
+        for (FuelProduct f : presenter.getAllFuel()) {
+            json.beginObject()
+                    .name("id").value(f.getId())
+                    .name("name").value(f.getName())
+                    .name("price").money(f.getPriceKopecks())
+                    .name("stock").quantity(f.getStockMilli())
+                    .name("available").quantity(Money.ofUnits(presenter.getAvailableFuel(f.getId())))
+                    .endObject();
+        }
+        json.endArray().name("services").beginArray();
+        for (ServiceProduct s : presenter.getAllServices()) {
+            json.beginObject()
+                    .name("id").value(s.getId())
+                    .name("name").value(s.getName())
+                    .name("price").money(s.getPriceKopecks())
+                    .endObject();
+        }
+        return ok(json.endArray().endObject());
+    }
+
+    private static Response metrics() {
+        JsonWriter json = new JsonWriter().beginObject().name("histograms").beginArray();
+        for (Histogram.Snapshot s : Metrics.snapshots()) {
+            json.beginObject()
+                    .name("name").value(s.name())
+                    .name("count").value(s.count())
+                    .name("mean").value(s.mean())
+                    .name("p50").value(s.p50())
+                    .name("p99").value(s.p99())
+                    .name("p999").value(s.p999())
+                    .name("max").value(s.max())
+                    .endObject();
+        }
+        json.endArray().name("counters").beginObject();
+        Metrics.counters().forEach((name, value) -> json.name(name).value(value));
+        return ok(json.endObject().endObject());
+    }
+
+    private Response customer(int customerId) {
+        Customer c = presenter.getCustomer(customerId);
+        if (c == null) {
+            return error(404, "клиент " + customerId + " не найден");
+        }
+        return ok(new JsonWriter().beginObject()
+                .name("id").value(c.getId())
+                .name("name").value(c.getName())
+                .name("wallet").money(c.getWalletKopecks())
+                .name("card").money(c.getCardKopecks())
+                .name("bonus").money(c.getBonusKopecks())
+                .endObject());
+    }
+
+    private Response cart(int customerId) {
+        JsonWriter json = new JsonWriter().beginObject()
+                .name("customerId").value(customerId)
+                .name("items").beginArray();
+        for (CartItem item : presenter.getCartItems(customerId)) {
+            json.beginObject()
+                    .name("lineId").value(item.getId())
+                    .name("type").value(item.getItemType())
+                    .name("item").value(item.getItemId())
+                    .name("qty").quantity(item.getQuantityMilli())
+                    .endObject();
+        }
+        return ok(json.endArray()
+                .name("total").money(Money.ofRubles(presenter.getCartTotal(customerId)))
+                .name("paid").money(Money.ofRubles(presenter.getPaid(customerId)))
+                .name("remaining").money(Money.ofRubles(presenter.getRemaining(customerId)))
+                .endObject());
+    }
+
+    private Response addToCart(int customerId, Map<String, String> query) {
+        String type = required(query, "type");
+        if (!type.equals(CatalogKey.FUEL) && !type.equals(CatalogKey.SERVICE)) {
+            throw new IllegalArgumentException("type должен быть PRODUCT или SERVICE: " + type);
+        }
+        int itemId = parseInt(required(query, "item"), "item");
+        double qty = query.containsKey("qty") ? parseDouble(query.get("qty"), "qty") : 1.0;
+        if (!Double.isFinite(qty) || qty <= 0) {
+            throw new IllegalArgumentException("qty должно быть больше нуля");
+        }
+        if (!presenter.isInCatalog(type, itemId)) {
+            return error(404, "позиции " + type + " " + itemId + " нет в каталоге");
+        }
+        if (!presenter.addToCart(customerId, type, itemId, qty)) {
+            return new Response(409, new JsonWriter().beginObject()
+                    .name("error").value("недостаточно топлива")
+                    .name("available").quantity(Money.ofUnits(presenter.getAvailableFuel(itemId)))
+                    .endObject().toString());
+        }
+        return cart(customerId);
+    }
+
+    private static Response checkoutResult(CheckoutResult r) {
+        int status = r.isSuccess() ? 200 : r.getStatus() == CheckoutResult.Status.ERROR ? 500 : 409;
+        return new Response(status, new JsonWriter().beginObject()
+                .name("status").value(r.getStatus().name())
+                .name("description").value(r.getStatus().getDescription())
+                .name("charged").money(Money.ofRubles(r.getCharged()))
+                .name("remaining").money(Money.ofRubles(r.getRemaining()))
+                .endObject().toString());
+    }
+
+    private static Response ok(JsonWriter json) {
+        return new Response(200, json.toString());
+    }
+
+    private static Response notAllowed() {
+        return error(405, "метод не поддерживается");
+    }
+
+    private static Response error(int status, String message) {
+        return new Response(status, new JsonWriter().beginObject().name("error").value(message).endObject().toString());
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq >= 0 ? pair.substring(0, eq) : pair;
+            String value = eq >= 0 ? pair.substring(eq + 1) : "";
+            query.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    private static String required(Map<String, String> query, String name) {
+        String value = query.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("не указан параметр " + name);
+        }
+        return value;
+    }
+
+    private static int parseInt(String value, String what) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("некорректный " + what + ": " + value);
+        }
+    }
+
+    private static double parseDouble(String value, String what) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("некорректный " + what + ": " + value);
+        }
+    }
+}
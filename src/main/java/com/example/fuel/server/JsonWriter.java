@@ -0,0 +1,132 @@
+package com.example.fuel.server;
+
+import com.example.fuel.model.Money;
+
+/**
+ * Минимальная запись компактного JSON (без пробелов) в StringBuilder.
+ * Запятые между элементами расставляются сами; вложенность — через begin/end.
+ *
+ * Деньги пишутся из копеек точным десятичным числом (money), а не через double,
+ * чтобы в ответе не появлялось 0.30000000000000004.
+ */
+final class JsonWriter {
+
+    private final StringBuilder out = new StringBuilder(256);
+    /** true — следующий элемент на текущем уровне нужно отделить запятой. */
+    private boolean needComma;
+
+    JsonWriter beginObject() {
+        separator();
+        out.append('{');
+        needComma = false;
+        return this;
+    }
+
+    JsonWriter endObject() {
+        out.append('}');
+        needComma = true;
+        return this;
+    }
+
+    JsonWriter beginArray() {
+        separator();
+        out.append('[');
+        needComma = false;
+        return this;
+    }
+
+    JsonWriter endArray() {
+        out.append(']');
+        needComma = true;
+        return this;
+    }
+
+    /** Имя поля; значение пишется следующим вызовом. */
+    JsonWriter name(String name) {
+        separator();
+        string(name);
+        out.append(':');
+        needComma = false;
+        return this;
+    }
+
+    JsonWriter value(String value) {
+        separator();
+        if (value == null) {
+            out.append("null");
+        } else {
+            string(value);
+        }
+        needComma = true;
+        return this;
+    }
+
+    JsonWriter value(long value) {
+        separator();
+        out.append(value);
+        needComma = true;
+        return this;
+    }
+
+    JsonWriter value(boolean value) {
+        separator();
+        out.append(value);
+        needComma = true;
+        return this;
+    }
+
+    /** Сумма в рублях с копейками: 1234.5 ₽ → 1234.50. */
+    JsonWriter money(long kopecks) {
+        separator();
+        out.append(Money.format(kopecks));
+        needComma = true;
+        return this;
+    }
+
+    /** Количество в литрах/штуках с точностью до тысячных: 2500 мл → 2.500. */
+    JsonWriter quantity(long milli) {
+        separator();
+        long abs = Math.abs(milli);
+        long frac = abs % Money.MILLI_PER_UNIT;
+        out.append(milli < 0 ? "-" : "").append(abs / Money.MILLI_PER_UNIT).append('.');
+        if (frac < 100) out.append('0');
+        if (frac < 10) out.append('0');
+        out.append(frac);
+        needComma = true;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+
+    private void separator() {
+        if (needComma) {
+            out.append(',');
+            needComma = false;
+        }
+    }
+
+    private void string(String s) {
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+}
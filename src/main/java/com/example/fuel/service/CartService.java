@@ -1,13 +1,21 @@
 package com.example.fuel.service;
 
 import com.example.fuel.DAO.CartItemDAO;
-import com.example.fuel.DAO.CartItemDAOImpl;
+import com.example.fuel.metrics.CartTotalEvent;
+import com.example.fuel.metrics.Histogram;
+import com.example.fuel.metrics.Metrics;
 import com.example.fuel.model.CartItem;
+import com.example.fuel.model.CatalogKey;
+import com.example.fuel.model.Money;
+import com.example.fuel.model.Product;
+import com.example.fuel.storage.StorageProvider;
 import com.example.fuel.strategy.FuelPricingStrategy;
 import com.example.fuel.strategy.PricingStrategy;
 import com.example.fuel.strategy.ServicePricingStrategy;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Сервис работы с корзиной: добавление, удаление, просмотр.
@@ -15,12 +23,21 @@ import java.util.List;
  */
 public class CartService {
 
-    private final CartItemDAO cartDao = new CartItemDAOImpl();
+    private static final Histogram CART_TOTAL = Metrics.histogram("service.cart.calculateCartTotal");
+
+    private final CartItemDAO cartDao;
+    private final ProductService productService;
 
     private final FuelPricingStrategy fuelStrategy;
     private final ServicePricingStrategy serviceStrategy;
 
     public CartService(ProductService productService) {
+        this(productService, StorageProvider.fromConfig().cartItemDAO());
+    }
+
+    public CartService(ProductService productService, CartItemDAO cartDao) {
+        this.cartDao = cartDao;
+        this.productService = productService;
         // создаём стратегии, передавая сервис продуктов для доступа к данным
         this.fuelStrategy = new FuelPricingStrategy(productService);
         this.serviceStrategy = new ServicePricingStrategy(productService);
@@ -38,29 +55,83 @@ public class CartService {
         cartDao.delete(id);
     }
 
+    /** Удалить строку из корзины клиента; false — такой строки в его корзине нет. */
+    public boolean removeCartItem(int customerId, int id) {
+        return cartDao.delete(customerId, id);
+    }
+
     public void removeFromCart(int customerId, String itemType, int itemId) {
         cartDao.deleteByItem(customerId, itemType, itemId);
     }
 
-    public void clearCart(int customerId) {
-        cartDao.deleteAllByCustomerId(customerId);
+    /** false — корзину очистить не удалось (ошибка БД), она осталась как была. */
+    public boolean clearCart(int customerId) {
+        return cartDao.deleteAllByCustomerId(customerId);
     }
 
     /**
      * Рассчитать итоговую сумму корзины, используя паттерн Стратегия.
+     * Все позиции корзины (топливо и услуги вместе) находятся одним обращением к каталогу,
+     * затем стратегия своего типа считает стоимость каждой строки.
      */
-    public double calculateCartTotal(int customerId) {
-        double total = 0.0;
-        List<CartItem> items = getCartItems(customerId);
+    public long calculateCartTotalKopecks(int customerId) {
+        long start = Metrics.start();
+        CartTotalEvent event = new CartTotalEvent();
+        event.begin();
+        try {
+            List<CartItem> items = getCartItems(customerId);
+            long total = totalKopecks(items);
+            event.customerId = customerId;
+            event.itemCount = items.size();
+            event.totalKopecks = total;
+            return total;
+        } finally {
+            event.commit();
+            Metrics.stop(CART_TOTAL, start);
+        }
+    }
+
+    private long totalKopecks(List<CartItem> items) {
+        List<CatalogKey> keys = new ArrayList<>(items.size());
+        for (CartItem item : items) {
+            keys.add(CatalogKey.of(item));
+        }
+        Map<CatalogKey, Product> products = productService.getByKeys(keys);
+
+        long total = 0;
         for (CartItem item : items) {
             PricingStrategy strategy = selectStrategy(item.getItemType());
-            if (strategy != null) {
-                total += strategy.calculatePrice(item);
+            if (strategy == null) {
+                continue;
+            }
+            Product product = products.get(CatalogKey.of(item));
+            if (product == null) {
+                throw new IllegalArgumentException("Позиция каталога " + item.getItemType() + " с id "
+                        + item.getItemId() + " не найдена");
             }
+            total = Money.add(total, strategy.priceOf(product, item));
         }
         return total;
     }
 
+    /** Итог корзины в рублях (для UI). */
+    public double calculateCartTotal(int customerId) {
+        return Money.toRubles(calculateCartTotalKopecks(customerId));
+    }
+
+    /**
+     * Стоимость одной строки корзины (цена из каталога × количество), коп.
+     */
+    public long calculateLinePriceKopecks(CartItem item) {
+        PricingStrategy strategy = selectStrategy(item.getItemType());
+        return strategy != null ? strategy.calculatePriceKopecks(item) : 0;
+    }
+
+    /** Стоимость одной строки корзины в рублях. */
+    public double calculateLinePrice(CartItem item) {
+        return Money.toRubles(calculateLinePriceKopecks(item));
+    }
+
     /**
      * Выбрать стратегию расчёта цены по типу товара/услуги.
      */
@@ -0,0 +1,66 @@
+package com.example.fuel.service;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Полосатые (striped) блокировки по клиенту.
+ *
+ * Операции одного клиента (корзина, частичная и полная оплата) выполняются строго по очереди,
+ * операции разных клиентов — параллельно. Вместо замка на каждого клиента держим фиксированный
+ * массив замков и выбираем замок по хэшу customerId: память не растёт с числом клиентов,
+ * а два клиента делят замок лишь изредка (это безопасно, просто чуть меньше параллелизма).
+ *
+ * Замки реентерабельны, поэтому вложенные вызовы (например, оплата внутри операции с корзиной)
+ * не блокируют сами себя.
+ */
+public class CustomerLocks {
+
+    private static final int DEFAULT_STRIPES = 64;
+
+    private final ReentrantLock[] stripes;
+
+    public CustomerLocks() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param stripes число замков (округляется вверх до степени двойки)
+     */
+    public CustomerLocks(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /** Замок, отвечающий за данного клиента. */
+    public ReentrantLock lockFor(int customerId) {
+        // Перемешиваем биты, чтобы соседние id попадали в разные замки
+        int h = customerId * 0x9E3779B9;
+        return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+    }
+
+    /** Выполнить action под замком клиента и вернуть его результат. */
+    public <T> T withLock(int customerId, Supplier<T> action) {
+        ReentrantLock lock = lockFor(customerId);
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Выполнить action под замком клиента. */
+    public void withLock(int customerId, Runnable action) {
+        ReentrantLock lock = lockFor(customerId);
+        lock.lock();
+        try {
+            action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
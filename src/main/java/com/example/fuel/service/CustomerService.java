@@ -2,24 +2,47 @@ package com.example.fuel.service;
 
 
 import com.example.fuel.DAO.CustomerDAO;
-import com.example.fuel.DAO.CustomerDAOImpl;
 import com.example.fuel.model.Customer;
+import com.example.fuel.storage.CachingCustomerDAO;
+import com.example.fuel.storage.SegmentedLruCache;
+import com.example.fuel.storage.StorageProvider;
 
 /**
  * Сервис для работы с клиентом.
+ * Для SQLite клиенты читаются через кэш (CachingCustomerDAO).
  */
 public class CustomerService {
 
-    private final CustomerDAO customerDAO = new CustomerDAOImpl();
+    private final CustomerDAO customerDAO;
+
+    public CustomerService() {
+        this(StorageProvider.fromConfig());
+    }
+
+    public CustomerService(StorageProvider storage) {
+        this.customerDAO = storage.customerDAO();
+    }
 
     // Получить клиента по ID
     public Customer getCustomer(int id) {
         return customerDAO.getById(id);
     }
 
-    // Обновить балансы клиента (после оплаты)
-    public void updateCustomer(Customer customer) {
-        customerDAO.update(customer);
+    // Обновить балансы клиента (false — клиента успели изменить, нужно перечитать и повторить)
+    public boolean updateCustomer(Customer customer) {
+        return customerDAO.update(customer);
+    }
+
+    // Клиента изменили в обход сервиса (другая программа, прямой SQL) — перечитать при следующем обращении
+    public void invalidateCustomer(int id) {
+        if (customerDAO instanceof CachingCustomerDAO cached) {
+            cached.invalidate(id);
+        }
+    }
+
+    // Статистика кэша клиентов (null — хранилище без кэша)
+    public SegmentedLruCache.Stats getCacheStats() {
+        return customerDAO instanceof CachingCustomerDAO cached ? cached.getStats() : null;
     }
 
     // Проверить, достаточно ли денег в кошельке
@@ -0,0 +1,220 @@
+package com.example.fuel.service;
+
+import com.example.fuel.DAO.PaymentDAO;
+import com.example.fuel.DAO.PaymentDAOImpl;
+import com.example.fuel.db.DatabaseManager;
+import com.example.fuel.model.Payment;
+import com.example.fuel.storage.StorageProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Журнал платежей (таблица payments) с пакетной записью.
+ *
+ * append() только кладёт платёж в очередь — касса не ждёт диска.
+ * Фоновый поток забирает из очереди до maxBatch платежей (подождав не дольше lingerMs,
+ * пока пачка наберётся) и пишет их одной транзакцией: один COMMIT на пачку, а не на платёж.
+ *
+ * flush() ждёт, пока всё, что было добавлено до него, окажется в БД.
+ * При завершении JVM очередь дописывается до закрытия соединений (DatabaseManager.beforeShutdown).
+ * В синхронном режиме (тесты, -Dsmartfuel.ledger.sync=true) append() пишет сразу.
+ */
+public class PaymentLedger {
+
+    private static final int MAX_BATCH = Integer.getInteger("smartfuel.ledger.maxBatch", 256);
+    private static final long LINGER_MS = Long.getLong("smartfuel.ledger.lingerMs", 20);
+    /** Сколько раз повторить запись пачки, если БД занята или недоступна. */
+    private static final int WRITE_ATTEMPTS = 3;
+
+    private static final PaymentLedger SHARED = new PaymentLedger(new PaymentDAOImpl(), MAX_BATCH, LINGER_MS);
+
+    static {
+        SHARED.setSynchronous(Boolean.getBoolean("smartfuel.ledger.sync"));
+        DatabaseManager.beforeShutdown(SHARED::close);
+    }
+
+    private final PaymentDAO paymentDAO;
+    private final int maxBatch;
+    private final long lingerMs;
+    /** Платежи и маркеры flush() (CountDownLatch) в порядке поступления. */
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    private final Object startLock = new Object();
+    private volatile Thread writer;
+    private volatile boolean synchronous;
+    private volatile boolean closed;
+
+    public PaymentLedger(PaymentDAO paymentDAO, int maxBatch, long lingerMs) {
+        this.paymentDAO = paymentDAO;
+        this.maxBatch = maxBatch;
+        this.lingerMs = lingerMs;
+    }
+
+    private static final Map<StorageProvider, PaymentLedger> BY_STORAGE = new ConcurrentHashMap<>();
+
+    /** Общий журнал приложения (SQLite). */
+    public static PaymentLedger shared() {
+        return SHARED;
+    }
+
+    /**
+     * Журнал для хранилища: для SQLite — shared(), для остальных — свой,
+     * с синхронной записью (в память пачки не нужны).
+     */
+    public static PaymentLedger of(StorageProvider storage) {
+        if (storage == StorageProvider.sqlite()) {
+            return SHARED;
+        }
+        return BY_STORAGE.computeIfAbsent(storage, s -> {
+            PaymentLedger ledger = new PaymentLedger(s.paymentDAO(), MAX_BATCH, LINGER_MS);
+            ledger.setSynchronous(true);
+            return ledger;
+        });
+    }
+
+    /**
+     * true — append() пишет платёж в БД сразу, в вызывающем потоке.
+     * Перед включением дописывает то, что уже стоит в очереди.
+     */
+    public void setSynchronous(boolean synchronous) {
+        if (synchronous) {
+            flush();
+        }
+        this.synchronous = synchronous;
+    }
+
+    public boolean isSynchronous() {
+        return synchronous;
+    }
+
+    /** Записать платёж в журнал (в фоновом режиме — поставить в очередь). */
+    public void append(Payment payment) {
+        if (synchronous || closed) {
+            write(List.of(payment));
+            return;
+        }
+        ensureWriter();
+        queue.add(payment);
+    }
+
+    /** Дождаться записи в БД всех платежей, добавленных до этого вызова. */
+    public void flush() {
+        if (writer == null) {
+            return;
+        }
+        CountDownLatch done = new CountDownLatch(1);
+        queue.add(done);
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Сколько платежей и маркеров ещё ждут записи. */
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    /**
+     * Дописать очередь и остановить фоновый поток.
+     * После закрытия append() пишет синхронно, так что платежи не теряются.
+     */
+    public void close() {
+        closed = true;
+        flush();
+        synchronized (startLock) {
+            if (writer != null) {
+                writer.interrupt();
+                writer = null;
+            }
+        }
+    }
+
+    private void ensureWriter() {
+        if (writer != null) {
+            return;
+        }
+        synchronized (startLock) {
+            if (writer == null) {
+                Thread t = new Thread(this::runWriter, "payment-ledger");
+                t.setDaemon(true);
+                t.start();
+                writer = t;
+            }
+        }
+    }
+
+    private void runWriter() {
+        List<Payment> batch = new ArrayList<>(maxBatch);
+        List<CountDownLatch> flushes = new ArrayList<>();
+        while (true) {
+            try {
+                // Ждём первый элемент, затем добираем пачку не дольше lingerMs
+                collect(queue.take(), batch, flushes);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+                while (batch.size() < maxBatch && flushes.isEmpty()) {
+                    long left = deadline - System.nanoTime();
+                    if (left <= 0) break;
+                    Object next = queue.poll(left, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    collect(next, batch, flushes);
+                }
+            } catch (InterruptedException e) {
+                // close(): дописываем всё, что успело попасть в очередь, и выходим
+                List<Object> rest = new ArrayList<>();
+                queue.drainTo(rest);
+                rest.forEach(item -> collect(item, batch, flushes));
+                writeBatch(batch, flushes);
+                return;
+            }
+            writeBatch(batch, flushes);
+        }
+    }
+
+    private void writeBatch(List<Payment> batch, List<CountDownLatch> flushes) {
+        try {
+            write(batch);
+        } catch (Throwable t) {
+            // Поток не должен умирать: иначе flush() и close() (из хука завершения JVM) ждали бы вечно
+            System.err.println("Журнал платежей: ошибка при записи " + batch.size() + " платеж(ей): " + batch);
+            t.printStackTrace();
+        } finally {
+            batch.clear();
+            flushes.forEach(CountDownLatch::countDown);
+            flushes.clear();
+        }
+    }
+
+    private static void collect(Object item, List<Payment> batch, List<CountDownLatch> flushes) {
+        if (item instanceof CountDownLatch latch) {
+            flushes.add(latch);
+        } else {
+            batch.add((Payment) item);
+        }
+    }
+
+    private void write(List<Payment> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        for (int attempt = 1; attempt <= WRITE_ATTEMPTS; attempt++) {
+            if (paymentDAO.insertAll(batch)) {
+                return;
+            }
+            try {
+                Thread.sleep(50L * attempt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        System.err.println("Журнал платежей: не удалось записать " + batch.size() + " платеж(ей): " + batch);
+    }
+}
@@ -1,147 +1,279 @@
 package com.example.fuel.service;
 
 import com.example.fuel.DAO.CartItemDAO;
-import com.example.fuel.DAO.CartItemDAOImpl;
 import com.example.fuel.DAO.CustomerDAO;
-import com.example.fuel.DAO.CustomerDAOImpl;
+import com.example.fuel.metrics.Histogram;
+import com.example.fuel.metrics.Metrics;
 import com.example.fuel.model.CartItem;
+import com.example.fuel.model.CatalogKey;
 import com.example.fuel.model.Customer;
+import com.example.fuel.model.Money;
+import com.example.fuel.model.Payment;
 import com.example.fuel.model.PaymentMethod;
-import com.example.fuel.model.ServiceProduct;
+import com.example.fuel.storage.StorageProvider;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Сервис оплаты:
  * – payPartial (частичная оплата)
  * – payExactAmountWithMethod (списать ровно указанную сумму одним методом)
  * – payExactAmountCombined (списать ровно указанную сумму комбинированно)
+ *
+ * Полная оплата выполняется одной транзакцией: списание баланса, списание топлива
+ * и очистка корзины фиксируются одним COMMIT (один fsync на продажу).
+ *
+ * Каждое успешное списание (и каждая часть комбинированной оплаты) после COMMIT
+ * записывается в журнал платежей PaymentLedger.
+ *
+ * Все суммы считаются в копейках (методы ...Kopecks); варианты с double — обёртки
+ * для вызовов из UI, сумма в них округляется до копейки один раз на входе.
+ *
+ * Время каждой оплаты и число SQL-запросов на полную оплату пишутся в Metrics.
  */
 public class PaymentService {
 
-    private final CustomerDAO customerDAO = new CustomerDAOImpl();
-    private final CartItemDAO cartItemDAO = new CartItemDAOImpl();
-    private final ProductService productService = new ProductService();
+    /** Сколько раз пробовать оплату при конфликте версий клиента. */
+    private static final int MAX_ATTEMPTS = 5;
+    private static final LongAdder CONFLICT_RETRIES = new LongAdder();
 
+    private static final Histogram PAY_PARTIAL = Metrics.histogram("service.payment.payPartial");
+    private static final Histogram PAY_WITH_METHOD = Metrics.histogram("service.payment.payExactAmountWithMethod");
+    private static final Histogram PAY_COMBINED = Metrics.histogram("service.payment.payExactAmountCombined");
     /**
-     * Частичная оплата: списывает amount с указанного метода.
+     * SQL-запросов на одну полную оплату (включая повторы при конфликте) — до конца её транзакции.
+     * Действия после COMMIT (обновление каталога) не считаются: при групповом COMMIT они выполняются
+     * после всей пачки, и иначе одна и та же оплата давала бы разные числа в двух режимах.
      */
+    private static final Histogram CHECKOUT_SQL = Metrics.histogram("checkout.sqlStatements");
+
+    private final StorageProvider storage;
+    private final CustomerDAO customerDAO;
+    private final CartItemDAO cartItemDAO;
+    private final ProductService productService;
+    private final PaymentLedger ledger;
+
+    public PaymentService() {
+        this(StorageProvider.fromConfig());
+    }
+
+    public PaymentService(StorageProvider storage) {
+        this(storage, storage.customerDAO());
+    }
+
+    public PaymentService(CustomerDAO customerDAO) {
+        this(StorageProvider.fromConfig(), customerDAO);
+    }
+
+    /** customerDAO — вместо DAO клиентов хранилища (например, обёртка в тестах). */
+    public PaymentService(StorageProvider storage, CustomerDAO customerDAO) {
+        this.storage = storage;
+        this.customerDAO = customerDAO;
+        this.cartItemDAO = storage.cartItemDAO();
+        this.productService = new ProductService(storage);
+        this.ledger = PaymentLedger.of(storage);
+    }
+
     public boolean payPartial(int customerId, PaymentMethod method, double amount) {
-        Customer cust = customerDAO.getById(customerId);
-        if (cust == null) return false;
-
-        switch (method) {
-            case Наличные:
-                if (cust.getWalletBalance() >= amount) {
-                    cust.setWalletBalance(cust.getWalletBalance() - amount);
-                } else {
-                    return false;
-                }
-                break;
-            case Карта:
-                if (cust.getCardBalance() >= amount) {
-                    cust.setCardBalance(cust.getCardBalance() - amount);
-                } else {
-                    return false;
-                }
-                break;
-            case Бонусы:
-                if (cust.getBonusPoints() >= amount) {
-                    cust.setBonusPoints(cust.getBonusPoints() - amount);
-                } else {
-                    return false;
-                }
-                break;
-        }
-        customerDAO.update(cust);
-        return true;
+        return payPartialKopecks(customerId, method, Money.ofRubles(amount));
     }
 
     /**
-     * Полная оплата одним способом, ровно sum (остаток).
-     * Списывает sum, очищает корзину и списывает товары со склада.
+     * Частичная оплата: списывает amount коп. с указанного метода.
+     * Списание — один условный UPDATE, поэтому баланс не уйдёт в минус даже при гонке.
      */
-    public boolean payExactAmountWithMethod(int customerId, PaymentMethod method, double sum) {
-        Customer cust = customerDAO.getById(customerId);
-        if (cust == null) return false;
-
-        switch (method) {
-            case Наличные:
-                if (cust.getWalletBalance() >= sum) {
-                    cust.setWalletBalance(cust.getWalletBalance() - sum);
-                } else return false;
-                break;
-            case Карта:
-                if (cust.getCardBalance() >= sum) {
-                    cust.setCardBalance(cust.getCardBalance() - sum);
-                } else return false;
-                break;
-            case Бонусы:
-                if (cust.getBonusPoints() >= sum) {
-                    cust.setBonusPoints(cust.getBonusPoints() - sum);
-                } else return false;
-                break;
+    public boolean payPartialKopecks(int customerId, PaymentMethod method, long amount) {
+        long start = Metrics.start();
+        try {
+            if (!customerDAO.debit(customerId, method, amount)) {
+                return false;
+            }
+            record(customerId, method, amount);
+            return true;
+        } finally {
+            Metrics.stop(PAY_PARTIAL, start);
         }
+    }
 
-        customerDAO.update(cust);
-        deductStockAndClearCart(customerId);
-        return true;
+    public boolean payExactAmountWithMethod(int customerId, PaymentMethod method, double sum) {
+        return payExactAmountWithMethodKopecks(customerId, method, Money.ofRubles(sum));
     }
 
     /**
-     * Полная комбинированная оплата ровно sum: сначала cash→card→bonus.
+     * Полная оплата одним способом, ровно sum коп. (остаток).
+     * Списывает sum, очищает корзину и списывает товары со склада — всё в одной транзакции.
      */
+    public boolean payExactAmountWithMethodKopecks(int customerId, PaymentMethod method, long sum) {
+        long start = Metrics.start();
+        SqlCount sql = new SqlCount();
+        try {
+            return storage.inTransaction(() -> {
+                try {
+                    if (!customerDAO.debit(customerId, method, sum) || !deductStockAndClearCart(customerId)) {
+                        return false;
+                    }
+                    record(customerId, method, sum);
+                    return true;
+                } finally {
+                    sql.workDone();
+                }
+            });
+        } finally {
+            finishCheckout(PAY_WITH_METHOD, start, sql);
+        }
+    }
+
     public boolean payExactAmountCombined(int customerId, double sum) {
-        Customer cust = customerDAO.getById(customerId);
-        if (cust == null) return false;
+        return payExactAmountCombinedKopecks(customerId, Money.ofRubles(sum));
+    }
 
-        double remaining = sum;
+    /**
+     * Полная комбинированная оплата ровно sum коп.: сначала cash→card→bonus.
+     * Если всех средств не хватает, ничего не списывается.
+     *
+     * Балансы читаются без блокировки записи, части суммы считаются вне транзакции,
+     * а запись проверяет версию строки клиента. Если клиента успели изменить
+     * (другая сессия списала деньги), попытка откатывается и повторяется с паузой —
+     * не больше MAX_ATTEMPTS раз.
+     */
+    public boolean payExactAmountCombinedKopecks(int customerId, long sum) {
+        long start = Metrics.start();
+        SqlCount sql = new SqlCount();
+        try {
+            return payCombinedWithRetries(customerId, sum, sql);
+        } finally {
+            finishCheckout(PAY_COMBINED, start, sql);
+        }
+    }
+
+    private boolean payCombinedWithRetries(int customerId, long sum, SqlCount sql) {
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            Customer cust = customerDAO.getById(customerId);
+            if (cust == null) return false;
 
-        // 1) Наличные
-        double payCash = Math.min(cust.getWalletBalance(), remaining);
-        cust.setWalletBalance(cust.getWalletBalance() - payCash);
-        remaining -= payCash;
+            long remaining = sum;
 
-        // 2) Карта
-        if (remaining > 0) {
-            double payCard = Math.min(cust.getCardBalance(), remaining);
-            cust.setCardBalance(cust.getCardBalance() - payCard);
+            // 1) Наличные
+            long payCash = Math.min(cust.getWalletKopecks(), remaining);
+            remaining -= payCash;
+
+            // 2) Карта
+            long payCard = Math.min(cust.getCardKopecks(), remaining);
             remaining -= payCard;
-        }
 
-        // 3) Бонусы
-        if (remaining > 0) {
-            double payBonus = Math.min(cust.getBonusPoints(), remaining);
-            cust.setBonusPoints(cust.getBonusPoints() - payBonus);
+            // 3) Бонусы
+            long payBonus = Math.min(cust.getBonusKopecks(), remaining);
             remaining -= payBonus;
+
+            if (remaining > 0) {
+                // Не удалось собрать ровно sum — ничего не списываем
+                return false;
+            }
+
+            cust.setWalletKopecks(cust.getWalletKopecks() - payCash);
+            cust.setCardKopecks(cust.getCardKopecks() - payCard);
+            cust.setBonusKopecks(cust.getBonusKopecks() - payBonus);
+
+            AtomicBoolean conflict = new AtomicBoolean();
+            final long cash = payCash, card = payCard, bonus = payBonus;
+            boolean ok = storage.inTransaction(() -> {
+                try {
+                    if (!customerDAO.update(cust)) {
+                        conflict.set(true);
+                        return false;
+                    }
+                    if (!deductStockAndClearCart(customerId)) {
+                        return false;
+                    }
+                    record(customerId, PaymentMethod.Наличные, cash);
+                    record(customerId, PaymentMethod.Карта, card);
+                    record(customerId, PaymentMethod.Бонусы, bonus);
+                    return true;
+                } finally {
+                    sql.workDone();
+                }
+            });
+            if (ok || !conflict.get()) {
+                return ok;
+            }
+
+            CONFLICT_RETRIES.increment();
+            backoff(attempt);
         }
+        return false;
+    }
 
-        if (remaining > 0.0001) {
-            // Не удалось собрать ровно sum
-            // Откат
-            customerDAO.update(cust); // в начале мы сняли, но откатывать будем неявно: чаще имеет смысл откатить логику ручками
-            return false;
+    private static void finishCheckout(Histogram latency, long start, SqlCount sql) {
+        if (Metrics.ENABLED) {
+            latency.recordSince(start);
+            CHECKOUT_SQL.record(sql.count());
         }
+    }
+
+    /**
+     * Счётчик SQL-запросов оплаты. Снимается в том потоке, где оплата выполняется
+     * (при групповом COMMIT — в потоке писателя), от начала оплаты до конца работы её последней транзакции.
+     */
+    private static final class SqlCount {
+        private final long before = Metrics.sqlStatementsOnThisThread();
+        private long atWorkEnd = -1;
 
-        // Успешная оплата
-        customerDAO.update(cust);
-        deductStockAndClearCart(customerId);
-        return true;
+        void workDone() {
+            atWorkEnd = Metrics.sqlStatementsOnThisThread();
+        }
+
+        /** Если до транзакции дело не дошло (не хватило средств) — всё, что выполнено к этому моменту. */
+        long count() {
+            return (atWorkEnd >= 0 ? atWorkEnd : Metrics.sqlStatementsOnThisThread()) - before;
+        }
     }
 
-    /** Списание товаров со склада и очистка корзины */
-    private void deductStockAndClearCart(int customerId) {
+    /** Сколько раз оплата повторялась из-за конфликта версий (с момента запуска). */
+    public static long getConflictRetryCount() {
+        return CONFLICT_RETRIES.sum();
+    }
+
+    /** Пауза перед повтором: 1, 2, 4, 8… мс плюс случайная добавка, чтобы сессии не сталкивались снова. */
+    private static void backoff(int attempt) {
+        long base = 1L << Math.min(attempt - 1, 6);
+        try {
+            Thread.sleep(base + ThreadLocalRandom.current().nextLong(base + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Записать платёж в журнал после COMMIT (при откате запись отбрасывается).
+     * Нулевые части комбинированной оплаты не записываются.
+     */
+    private void record(int customerId, PaymentMethod method, long amount) {
+        if (amount <= 0) {
+            return;
+        }
+        Payment payment = Payment.ofKopecks(0, customerId, method, amount, System.currentTimeMillis());
+        storage.afterCommit(() -> ledger.append(payment));
+    }
+
+    /**
+     * Списание товаров со склада и очистка корзины (вызывается внутри транзакции оплаты).
+     * Количество суммируется по позициям каталога и списывается одним пакетом UPDATE;
+     * у услуг остатка нет, и их строки UPDATE не меняет.
+     */
+    private boolean deductStockAndClearCart(int customerId) {
         List<CartItem> items = cartItemDAO.getByCustomerId(customerId);
+        Map<CatalogKey, Long> milliByKey = new HashMap<>();
         for (CartItem ci : items) {
-            if ("PRODUCT".equals(ci.getItemType())) {
-                productService.decreaseFuelStock(ci.getItemId(), ci.getQuantity());
-            } else {
-                ServiceProduct s = productService.getServiceById(ci.getItemId());
-                if (s != null) {
-                    // если нужно списывать услуги, допишите здесь
-                }
-            }
+            milliByKey.merge(CatalogKey.of(ci), ci.getQuantityMilli(), Long::sum);
+        }
+        if (!productService.decreaseStock(milliByKey)) {
+            return false;
         }
-        cartItemDAO.deleteAllByCustomerId(customerId);
+        return cartItemDAO.deleteAllByCustomerId(customerId);
     }
 }
@@ -0,0 +1,242 @@
+package com.example.fuel.service;
+
+import com.example.fuel.DAO.ProductDAO;
+import com.example.fuel.model.CatalogKey;
+import com.example.fuel.model.FuelProduct;
+import com.example.fuel.model.Product;
+import com.example.fuel.model.ServiceProduct;
+import com.example.fuel.storage.StorageProvider;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Кэш каталога (топливо и услуги) в памяти.
+ *
+ * Каталог маленький и меняется редко, а читается на каждую строку корзины и каждое обновление таблиц.
+ * Поэтому держим неизменяемый снимок (карты id → товар) и подменяем его целиком через AtomicReference:
+ * чтение не берёт блокировок, запись цены или остатка строит новый снимок.
+ *
+ * Снимок помнит «поколение» хранилища (StorageProvider.getGeneration()) и перечитывается,
+ * если база была пересоздана. На каждое хранилище — свой каталог (of()).
+ *
+ * getPriceVersion() растёт при каждом изменении цен (и при полной перезагрузке) —
+ * по нему кэши, посчитанные по старым ценам (итоги корзин), понимают, что устарели.
+ *
+ * Чтения из БД могут завершиться не в том порядке, в каком начались (две записи остатка подряд,
+ * обновления после коммита идут из разных потоков). Поэтому каждое чтение получает номер до обращения
+ * к БД, а снимок помнит, каким чтением получена каждая позиция: результат более раннего чтения
+ * не затирает более позднее.
+ */
+public class ProductCatalog {
+
+    private static final Map<StorageProvider, ProductCatalog> BY_STORAGE = new ConcurrentHashMap<>();
+
+    private final StorageProvider storage;
+    private final ProductDAO productDAO;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    private final AtomicLong priceVersion = new AtomicLong();
+    private final AtomicLong reads = new AtomicLong();
+
+    public ProductCatalog(StorageProvider storage) {
+        this.storage = storage;
+        this.productDAO = storage.productDAO();
+    }
+
+    /** Общий каталог хранилища (один на все экземпляры ProductService, работающие с ним). */
+    public static ProductCatalog of(StorageProvider storage) {
+        return BY_STORAGE.computeIfAbsent(storage, ProductCatalog::new);
+    }
+
+    /** Общий каталог приложения (хранилище из настроек). */
+    public static ProductCatalog shared() {
+        return of(StorageProvider.fromConfig());
+    }
+
+    public List<FuelProduct> getAllFuel() {
+        return current().fuelList;
+    }
+
+    public FuelProduct getFuel(int id) {
+        return current().fuel.get(id);
+    }
+
+    public List<ServiceProduct> getAllServices() {
+        return current().serviceList;
+    }
+
+    public ServiceProduct getService(int id) {
+        return current().services.get(id);
+    }
+
+    /** Позиция каталога любого типа по ключу (или null). */
+    public Product get(CatalogKey key) {
+        Snapshot s = current();
+        if (CatalogKey.FUEL.equals(key.itemType())) {
+            return s.fuel.get(key.itemId());
+        }
+        if (CatalogKey.SERVICE.equals(key.itemType())) {
+            return s.services.get(key.itemId());
+        }
+        return null;
+    }
+
+    /** Номер версии цен: меняется, когда любая цена могла измениться. */
+    public long getPriceVersion() {
+        current();
+        return priceVersion.get();
+    }
+
+    /**
+     * Сбросить снимок: следующее чтение загрузит каталог из БД заново.
+     */
+    public void invalidate() {
+        snapshot.set(null);
+        priceVersion.incrementAndGet();
+    }
+
+    /**
+     * Немедленно перечитать весь каталог из БД.
+     */
+    public void reload() {
+        Snapshot loaded = load();
+        snapshot.updateAndGet(s -> s == null || s.generation != loaded.generation ? loaded : loaded.withNewerOf(s));
+        priceVersion.incrementAndGet();
+    }
+
+    /**
+     * Перечитать из БД указанные позиции (топливо и услуги вместе, одним запросом)
+     * и подменить их в снимке — после изменения остатка или цены.
+     * Позиции, которые в снимке уже получены более поздним чтением, не трогаем.
+     */
+    public void refresh(Collection<CatalogKey> keys) {
+        long seq = reads.incrementAndGet();
+        Map<CatalogKey, Product> fresh = productDAO.getByIds(keys);
+        Snapshot before = snapshot.getAndUpdate(s -> s == null ? null : s.with(fresh.values(), seq));
+        if (before != null && fresh.values().stream().anyMatch(p -> priceChanged(before.get(p), p.getPriceKopecks()))) {
+            priceVersion.incrementAndGet();
+        }
+    }
+
+    private Snapshot current() {
+        Snapshot s = snapshot.get();
+        if (s == null || s.generation != storage.getGeneration()) {
+            Snapshot loaded = load();
+            if (!snapshot.compareAndSet(s, loaded)) {
+                // Снимок успел подменить другой поток — берём его, если он про ту же базу
+                Snapshot installed = snapshot.get();
+                return installed != null && installed.generation == loaded.generation ? installed : loaded;
+            }
+            priceVersion.incrementAndGet();
+            return loaded;
+        }
+        return s;
+    }
+
+    private static boolean priceChanged(Product old, long newPriceKopecks) {
+        return old == null || old.getPriceKopecks() != newPriceKopecks;
+    }
+
+    private Snapshot load() {
+        long generation = storage.getGeneration();
+        long seq = reads.incrementAndGet();
+        return new Snapshot(generation, new LinkedHashMap<>(), new LinkedHashMap<>(), new HashMap<>())
+                .with(productDAO.getAll(), seq);
+    }
+
+    /**
+     * Неизменяемый снимок каталога. Объекты товаров внутри не меняются —
+     * при изменении строится новый снимок с новыми объектами.
+     * readSeq — номер чтения, которым получена каждая позиция.
+     */
+    private static final class Snapshot {
+        final long generation;
+        final Map<Integer, FuelProduct> fuel;
+        final Map<Integer, ServiceProduct> services;
+        final List<FuelProduct> fuelList;
+        final List<ServiceProduct> serviceList;
+        final Map<CatalogKey, Long> readSeq;
+
+        Snapshot(long generation, Map<Integer, FuelProduct> fuel, Map<Integer, ServiceProduct> services,
+                 Map<CatalogKey, Long> readSeq) {
+            this.generation = generation;
+            this.fuel = Collections.unmodifiableMap(fuel);
+            this.services = Collections.unmodifiableMap(services);
+            this.fuelList = List.copyOf(fuel.values());
+            this.serviceList = List.copyOf(services.values());
+            this.readSeq = Collections.unmodifiableMap(readSeq);
+        }
+
+        Product get(Product like) {
+            return like instanceof FuelProduct ? fuel.get(like.getId()) : services.get(like.getId());
+        }
+
+        /** Новый снимок с заменёнными (или добавленными) позициями, прочитанными чтением seq. */
+        Snapshot with(Collection<? extends Product> changed, long seq) {
+            Builder b = new Builder(this);
+            for (Product p : changed) {
+                b.put(p, seq);
+            }
+            return b.changed ? b.build() : this;
+        }
+
+        /** Этот снимок плюс позиции из other, прочитанные позже, чем здесь. */
+        Snapshot withNewerOf(Snapshot other) {
+            Builder b = new Builder(this);
+            for (Product p : other.fuelList) {
+                b.put(p, other.readSeq.get(keyOf(p)));
+            }
+            for (Product p : other.serviceList) {
+                b.put(p, other.readSeq.get(keyOf(p)));
+            }
+            return b.changed ? b.build() : this;
+        }
+
+        private static CatalogKey keyOf(Product p) {
+            return p instanceof FuelProduct ? CatalogKey.fuel(p.getId()) : CatalogKey.service(p.getId());
+        }
+
+        private static final class Builder {
+            final long generation;
+            final Map<Integer, FuelProduct> fuel;
+            final Map<Integer, ServiceProduct> services;
+            final Map<CatalogKey, Long> readSeq;
+            boolean changed;
+
+            Builder(Snapshot from) {
+                this.generation = from.generation;
+                this.fuel = new LinkedHashMap<>(from.fuel);
+                this.services = new LinkedHashMap<>(from.services);
+                this.readSeq = new HashMap<>(from.readSeq);
+            }
+
+            void put(Product p, long seq) {
+                CatalogKey key = keyOf(p);
+                Long seen = readSeq.get(key);
+                if (seen != null && seen >= seq) {
+                    return;
+                }
+                if (p instanceof FuelProduct f) {
+                    fuel.put(f.getId(), f);
+                } else if (p instanceof ServiceProduct s) {
+                    services.put(s.getId(), s);
+                } else {
+                    return;
+                }
+                readSeq.put(key, seq);
+                changed = true;
+            }
+
+            Snapshot build() {
+                return new Snapshot(generation, fuel, services, readSeq);
+            }
+        }
+    }
+}
@@ -2,51 +2,136 @@ package com.example.fuel.service;
 
 
 import com.example.fuel.DAO.ProductDAO;
-import com.example.fuel.DAO.ProductDAOImpl;
+import com.example.fuel.model.CatalogKey;
 import com.example.fuel.model.FuelProduct;
+import com.example.fuel.model.Money;
+import com.example.fuel.model.Product;
 import com.example.fuel.model.ServiceProduct;
+import com.example.fuel.storage.StorageProvider;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Сервис для работы с продуктами и услугами.
+ * Чтение идёт из кэша каталога (ProductCatalog), запись — в БД с последующим обновлением кэша.
  */
 public class ProductService {
 
-    private final ProductDAO productDAO = new ProductDAOImpl();
+    private final StorageProvider storage;
+    private final ProductDAO productDAO;
+    private final ProductCatalog catalog;
+
+    public ProductService() {
+        this(StorageProvider.fromConfig());
+    }
+
+    public ProductService(StorageProvider storage) {
+        this.storage = storage;
+        this.productDAO = storage.productDAO();
+        this.catalog = ProductCatalog.of(storage);
+    }
+
+    // Получить позиции каталога любого типа (ключ → товар/услуга; отсутствующих ключей в карте нет)
+    public Map<CatalogKey, Product> getByKeys(Collection<CatalogKey> keys) {
+        Map<CatalogKey, Product> result = new HashMap<>();
+        for (CatalogKey key : keys) {
+            Product p = catalog.get(key);
+            if (p != null) {
+                result.put(key, p);
+            }
+        }
+        return result;
+    }
 
     // Получить все виды топлива
     public List<FuelProduct> getAllFuel() {
-        return productDAO.getAllFuelProducts();
+        return catalog.getAllFuel();
     }
 
     // Получить конкретное топливо по ID
     public FuelProduct getFuelById(int id) {
-        return productDAO.getFuelProductById(id);
+        return catalog.getFuel(id);
+    }
+
+    // Получить несколько видов топлива (id → топливо; отсутствующих id в карте нет)
+    public Map<Integer, FuelProduct> getFuelByIds(Collection<Integer> ids) {
+        Map<Integer, FuelProduct> result = new HashMap<>();
+        for (Integer id : ids) {
+            FuelProduct p = catalog.getFuel(id);
+            if (p != null) {
+                result.put(id, p);
+            }
+        }
+        return result;
     }
 
-    // Уменьшить запас топлива
+    // Уменьшить запас топлива (вычитание в SQL, без чтения текущего остатка)
     public void decreaseFuelStock(int id, double amount) {
-        FuelProduct p = productDAO.getFuelProductById(id);
-        if (p != null) {
-            double newStock = p.getStockQty() - amount;
-            if (newStock < 0) newStock = 0;
-            productDAO.updateFuelStock(id, newStock);
+        decreaseStock(Map.of(CatalogKey.fuel(id), Money.ofUnits(amount)));
+    }
+
+    // Уменьшить остатки сразу по нескольким позициям (ключ → тысячные доли; услуги не учитываются).
+    // Остаток в кэше обновляется после COMMIT, чтобы откат транзакции его не испортил.
+    public boolean decreaseStock(Map<CatalogKey, Long> milliByKey) {
+        if (!productDAO.decreaseStock(milliByKey)) {
+            return false;
         }
+        if (!milliByKey.isEmpty()) {
+            List<CatalogKey> keys = List.copyOf(milliByKey.keySet());
+            storage.afterCommit(() -> catalog.refresh(keys));
+        }
+        return true;
+    }
+
+    // Изменить цену топлива
+    public void updateFuelPrice(int id, double newPrice) {
+        productDAO.updateFuelPrice(id, Money.ofRubles(newPrice));
+        storage.afterCommit(() -> catalog.refresh(List.of(CatalogKey.fuel(id))));
     }
 
     // Получить все услуги
     public List<ServiceProduct> getAllServices() {
-        return productDAO.getAllServiceProducts();
+        return catalog.getAllServices();
     }
 
     // Получить конкретную услугу по ID
     public ServiceProduct getServiceById(int id) {
-        return productDAO.getServiceById(id);
+        return catalog.getService(id);
+    }
+
+    // Получить несколько услуг (id → услуга)
+    public Map<Integer, ServiceProduct> getServicesByIds(Collection<Integer> ids) {
+        Map<Integer, ServiceProduct> result = new HashMap<>();
+        for (Integer id : ids) {
+            ServiceProduct s = catalog.getService(id);
+            if (s != null) {
+                result.put(id, s);
+            }
+        }
+        return result;
+    }
+
+    // Изменить цену услуги
+    public void updateServicePrice(int id, double newPrice) {
+        productDAO.updateServicePrice(id, Money.ofRubles(newPrice));
+        storage.afterCommit(() -> catalog.refresh(List.of(CatalogKey.service(id))));
+    }
+
+    // Версия цен каталога: меняется при любом изменении цен (см. ProductCatalog.getPriceVersion())
+    public long getPriceVersion() {
+        return catalog.getPriceVersion();
+    }
+
+    // Сбросить кэш каталога (например, если цены поменяли напрямую в БД)
+    public void invalidateCatalog() {
+        catalog.invalidate();
     }
 
-    // (необязательный) обновить запас услуги
-    public void decreaseServiceStock(int id) {
-        productDAO.updateServiceStock(id, 0); // если есть logic
+    // Перечитать каталог из БД прямо сейчас
+    public void reloadCatalog() {
+        catalog.reload();
     }
 }
@@ -0,0 +1,255 @@
+package com.example.fuel.service;
+
+import com.example.fuel.DAO.CartItemDAO;
+import com.example.fuel.model.CartItem;
+import com.example.fuel.model.CatalogKey;
+import com.example.fuel.model.FuelProduct;
+import com.example.fuel.storage.StorageProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Резервирование топлива под строки корзин.
+ *
+ * Для каждого вида топлива держим счётчик свободного остатка (мл): остаток в БД минус то,
+ * что уже лежит в корзинах. tryReserve() уменьшает его CAS-циклом и никогда не уводит ниже нуля,
+ * так что две колонки не положат в корзины больше топлива, чем есть, — а проверка не берёт
+ * замков и не выполняет SQL.
+ *
+ * Резерв привязан к строке корзины: удаление строки или очистка корзины возвращают литры (release),
+ * оплата фиксирует их (commit) — остаток в БД уменьшается на те же литры, свободный остаток не меняется.
+ * Корзина, к которой не обращались дольше idleTimeout (-Dsmartfuel.reservation.idleTimeoutMs),
+ * считается брошенной: фоновая проверка presenter-а очищает её, и литры снова доступны.
+ *
+ * Счётчики строятся из хранилища (остатки каталога минус строки корзин) при первом обращении
+ * и заново — если хранилище пересоздано или вызван invalidate().
+ */
+public class StockReservations {
+
+    private static final long IDLE_TIMEOUT_MS =
+            Long.getLong("smartfuel.reservation.idleTimeoutMs", 30 * 60_000L);
+
+    private static final Map<StorageProvider, StockReservations> BY_STORAGE = new ConcurrentHashMap<>();
+
+    /** Зарезервированная строка корзины. */
+    private record Line(int customerId, int productId, long milli) {}
+
+    /** Счётчики и резервы одного поколения хранилища. */
+    private static final class State {
+        final long generation;
+        final Map<Integer, AtomicLong> available = new ConcurrentHashMap<>();
+        final Map<Integer, Line> lines = new ConcurrentHashMap<>();
+        final Map<Integer, Set<Integer>> linesByCustomer = new ConcurrentHashMap<>();
+        final Map<Integer, AtomicLong> lastActivity = new ConcurrentHashMap<>();
+
+        State(long generation) {
+            this.generation = generation;
+        }
+    }
+
+    private final StorageProvider storage;
+    private final ProductService productService;
+    private final CartItemDAO cartItemDAO;
+    private final AtomicReference<State> state = new AtomicReference<>();
+    private volatile long idleTimeoutMs = IDLE_TIMEOUT_MS;
+
+    public StockReservations(StorageProvider storage) {
+        this.storage = storage;
+        this.productService = new ProductService(storage);
+        this.cartItemDAO = storage.cartItemDAO();
+    }
+
+    /** Общие резервы хранилища (одни на все presenter-ы, работающие с ним). */
+    public static StockReservations of(StorageProvider storage) {
+        return BY_STORAGE.computeIfAbsent(storage, StockReservations::new);
+    }
+
+    /**
+     * Зарезервировать milli мл топлива productId.
+     * false — столько свободного топлива нет (или такого топлива нет в каталоге).
+     */
+    public boolean tryReserve(int productId, long milli) {
+        if (milli <= 0) {
+            return true;
+        }
+        AtomicLong counter = counter(state(), productId);
+        if (counter == null) {
+            return false;
+        }
+        while (true) {
+            long free = counter.get();
+            if (free < milli) {
+                return false;
+            }
+            if (counter.compareAndSet(free, free - milli)) {
+                return true;
+            }
+        }
+    }
+
+    /** Вернуть резерв, который так и не попал в корзину (строку не удалось добавить). */
+    public void cancel(int productId, long milli) {
+        AtomicLong counter = counter(state(), productId);
+        if (counter != null && milli > 0) {
+            counter.addAndGet(milli);
+        }
+    }
+
+    /** Привязать сделанный резерв к добавленной строке корзины. */
+    public void track(int cartItemId, int customerId, int productId, long milli) {
+        State s = state();
+        s.lines.put(cartItemId, new Line(customerId, productId, milli));
+        s.linesByCustomer.computeIfAbsent(customerId, id -> ConcurrentHashMap.newKeySet()).add(cartItemId);
+        touch(customerId);
+    }
+
+    /** Клиент работал с корзиной — отодвинуть истечение его резервов. */
+    public void touch(int customerId) {
+        State s = state();
+        if (s.linesByCustomer.containsKey(customerId)) {
+            s.lastActivity.computeIfAbsent(customerId, id -> new AtomicLong()).set(System.currentTimeMillis());
+        }
+    }
+
+    /** Строка удалена из корзины — вернуть её литры. */
+    public void release(int cartItemId) {
+        State s = state();
+        Line line = s.lines.remove(cartItemId);
+        if (line != null) {
+            forget(s, line.customerId(), cartItemId);
+            counter(s, line.productId()).addAndGet(line.milli());
+        }
+    }
+
+    /** Из корзины удалено топливо productId (все его строки). */
+    public void releaseItem(int customerId, int productId) {
+        State s = state();
+        for (int cartItemId : linesOf(s, customerId)) {
+            Line line = s.lines.get(cartItemId);
+            if (line != null && line.productId() == productId) {
+                release(cartItemId);
+            }
+        }
+    }
+
+    /** Корзина очищена — вернуть все её литры. */
+    public void releaseAll(int customerId) {
+        for (int cartItemId : linesOf(state(), customerId)) {
+            release(cartItemId);
+        }
+    }
+
+    /** Корзина оплачена — литры списаны со склада, резервы просто снимаются. */
+    public void commitAll(int customerId) {
+        State s = state();
+        for (int cartItemId : linesOf(s, customerId)) {
+            if (s.lines.remove(cartItemId) != null) {
+                forget(s, customerId, cartItemId);
+            }
+        }
+    }
+
+    /** Клиенты с резервами, не обращавшиеся к корзине дольше таймаута. */
+    public List<Integer> idleCustomers(long nowMillis) {
+        State s = state();
+        List<Integer> idle = new ArrayList<>();
+        for (Integer customerId : s.linesByCustomer.keySet()) {
+            if (isIdle(s, customerId, nowMillis)) {
+                idle.add(customerId);
+            }
+        }
+        return idle;
+    }
+
+    public boolean isIdle(int customerId, long nowMillis) {
+        return isIdle(state(), customerId, nowMillis);
+    }
+
+    /** Сколько топлива можно положить в корзину, мл (0 — если такого топлива нет). */
+    public long getAvailableMilli(int productId) {
+        AtomicLong counter = counter(state(), productId);
+        return counter != null ? counter.get() : 0;
+    }
+
+    public void setIdleTimeoutMillis(long idleTimeoutMs) {
+        this.idleTimeoutMs = idleTimeoutMs;
+    }
+
+    /** Перестроить счётчики из хранилища при следующем обращении (например, остатки изменили напрямую). */
+    public void invalidate() {
+        state.set(null);
+    }
+
+    private boolean isIdle(State s, int customerId, long nowMillis) {
+        AtomicLong last = s.lastActivity.get(customerId);
+        return last != null && s.linesByCustomer.containsKey(customerId)
+                && nowMillis - last.get() >= idleTimeoutMs;
+    }
+
+    private static List<Integer> linesOf(State s, int customerId) {
+        Set<Integer> ids = s.linesByCustomer.get(customerId);
+        return ids != null ? List.copyOf(ids) : List.of();
+    }
+
+    private static void forget(State s, int customerId, int cartItemId) {
+        Set<Integer> ids = s.linesByCustomer.get(customerId);
+        if (ids != null) {
+            ids.remove(cartItemId);
+            if (ids.isEmpty()) {
+                s.linesByCustomer.remove(customerId, ids);
+                s.lastActivity.remove(customerId);
+            }
+        }
+    }
+
+    /** Счётчик топлива; для топлива, появившегося в каталоге после сборки, — по текущему остатку. */
+    private AtomicLong counter(State s, int productId) {
+        AtomicLong counter = s.available.get(productId);
+        if (counter != null) {
+            return counter;
+        }
+        FuelProduct p = productService.getFuelById(productId);
+        return p == null ? null : s.available.computeIfAbsent(productId, id -> new AtomicLong(p.getStockMilli()));
+    }
+
+    private State state() {
+        State s = state.get();
+        if (s != null && s.generation == storage.getGeneration()) {
+            return s;
+        }
+        synchronized (this) {
+            s = state.get();
+            if (s == null || s.generation != storage.getGeneration()) {
+                s = rebuild();
+                state.set(s);
+            }
+            return s;
+        }
+    }
+
+    /** Свободный остаток = остаток каталога − количество в строках корзин (они и есть резервы). */
+    private State rebuild() {
+        State s = new State(storage.getGeneration());
+        for (FuelProduct p : productService.getAllFuel()) {
+            s.available.put(p.getId(), new AtomicLong(p.getStockMilli()));
+        }
+        long now = System.currentTimeMillis();
+        for (CartItem ci : cartItemDAO.getAllByType(CatalogKey.FUEL)) {
+            AtomicLong counter = s.available.get(ci.getItemId());
+            if (counter == null) {
+                continue;
+            }
+            counter.addAndGet(-ci.getQuantityMilli());
+            s.lines.put(ci.getId(), new Line(ci.getCustomerId(), ci.getItemId(), ci.getQuantityMilli()));
+            s.linesByCustomer.computeIfAbsent(ci.getCustomerId(), id -> ConcurrentHashMap.newKeySet()).add(ci.getId());
+            s.lastActivity.computeIfAbsent(ci.getCustomerId(), id -> new AtomicLong(now));
+        }
+        return s;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.fuel.storage;
+
+import com.example.fuel.DAO.CustomerDAO;
+import com.example.fuel.model.Customer;
+import com.example.fuel.model.PaymentMethod;
+
+import java.util.List;
+
+/**
+ * Кэш клиентов поверх CustomerDAO: балансы показываются после каждого действия
+ * и читаются при каждой оплате, а постоянные клиенты приезжают снова и снова.
+ *
+ * – getById() отдаёт копию из SegmentedLruCache, при промахе читает источник и кладёт результат;
+ * – update() — write-through: после COMMIT в кэш кладётся записанная версия клиента;
+ * – debit() меняет баланс прямо в SQL, поэтому запись клиента просто убирается из кэша;
+ * – при откате транзакции кэш не меняется (изменения применяются через afterCommit);
+ * – при смене поколения хранилища (БД пересоздана) кэш очищается.
+ *
+ * Размер — -Dsmartfuel.customerCache.size (по умолчанию 10 000, 0 — без кэша, см. SqliteStorage).
+ * Если клиентов меняют в обход этого DAO — вызвать invalidate()/invalidateAll().
+ */
+public final class CachingCustomerDAO implements CustomerDAO {
+
+    private static final int SHARDS = 16;
+
+    private final CustomerDAO delegate;
+    private final StorageProvider storage;
+    private final SegmentedLruCache<Integer, Customer> cache;
+    private volatile long generation;
+
+    public CachingCustomerDAO(CustomerDAO delegate, StorageProvider storage, int capacity) {
+        this.delegate = delegate;
+        this.storage = storage;
+        this.cache = new SegmentedLruCache<>(capacity, SHARDS);
+        this.generation = storage.getGeneration();
+    }
+
+    @Override
+    public Customer getById(int id) {
+        checkGeneration();
+        Customer cached = cache.get(id);
+        if (cached != null) {
+            return copy(cached);
+        }
+        long stamp = cache.stamp(id);
+        Customer loaded = delegate.getById(id);
+        // Внутри транзакции читаем её незафиксированные изменения — такое в кэш класть нельзя
+        if (loaded != null && !storage.isInTransaction()) {
+            cache.putIfUnchanged(id, copy(loaded), stamp);
+        }
+        return loaded;
+    }
+
+    /** Список всех клиентов читается мимо кэша и не вытесняет из него постоянных. */
+    @Override
+    public List<Customer> getAll() {
+        return delegate.getAll();
+    }
+
+    @Override
+    public boolean update(Customer customer) {
+        int id = customer.getId();
+        long stamp = cache.invalidate(id);
+        boolean updated = delegate.update(customer);
+        Customer written = updated ? copy(customer) : null;
+        storage.afterCommit(() -> cache.completeWrite(id, written, stamp));
+        return updated;
+    }
+
+    @Override
+    public int insert(Customer customer) {
+        return delegate.insert(customer);
+    }
+
+    @Override
+    public boolean debit(int customerId, PaymentMethod method, long amountKopecks) {
+        cache.invalidate(customerId);
+        boolean debited = delegate.debit(customerId, method, amountKopecks);
+        if (debited) {
+            storage.afterCommit(() -> cache.invalidate(customerId));
+        }
+        return debited;
+    }
+
+    /** Клиента изменили в обход кэша — следующий getById прочитает его из источника. */
+    public void invalidate(int id) {
+        cache.invalidate(id);
+    }
+
+    public void invalidateAll() {
+        cache.clear();
+    }
+
+    public SegmentedLruCache.Stats getStats() {
+        return cache.stats();
+    }
+
+    private void checkGeneration() {
+        long current = storage.getGeneration();
+        if (current != generation) {
+            synchronized (this) {
+                if (current != generation) {
+                    cache.clear();
+                    generation = current;
+                }
+            }
+        }
+    }
+
+    /** Customer изменяемый — наружу и в кэш отдаём только копии. */
+    private static Customer copy(Customer c) {
+        return Customer.ofKopecks(c.getId(), c.getName(), c.getWalletKopecks(), c.getCardKopecks(),
+                c.getBonusKopecks(), c.getVersion());
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.fuel.storage;
+
+import com.example.fuel.DAO.CartItemDAO;
+import com.example.fuel.model.CartItem;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Корзины в памяти: строки клиента лежат в одном списке, который меняется под замком полосы клиента.
+ * owners (id строки → клиент) нужен для удаления по id строки.
+ */
+final class MemoryCartItemDAO implements CartItemDAO {
+
+    private static final Comparator<CartItem> BY_ID = Comparator.comparingInt(CartItem::getId);
+
+    private final MemoryStorage storage;
+    private final Map<Integer, List<CartItem>> carts = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> owners = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    MemoryCartItemDAO(MemoryStorage storage) {
+        this.storage = storage;
+    }
+
+    void clear() {
+        carts.clear();
+        owners.clear();
+        nextId.set(0);
+    }
+
+    @Override
+    public List<CartItem> getByCustomerId(int customerId) {
+        ReentrantLock lock = storage.lockFor(customerId);
+        lock.lock();
+        try {
+            List<CartItem> cart = carts.get(customerId);
+            List<CartItem> copy = new ArrayList<>(cart != null ? cart.size() : 0);
+            if (cart != null) {
+                for (CartItem ci : cart) {
+                    copy.add(copyOf(ci));
+                }
+            }
+            return copy;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<CartItem> getAllByType(String itemType) {
+        List<CartItem> list = new ArrayList<>();
+        for (Integer customerId : carts.keySet()) {
+            for (CartItem ci : getByCustomerId(customerId)) {
+                if (ci.getItemType().equals(itemType)) {
+                    list.add(ci);
+                }
+            }
+        }
+        list.sort(BY_ID);
+        return list;
+    }
+
+    @Override
+    public void insert(CartItem item) {
+        int id = nextId.incrementAndGet();
+        item.setId(id);
+        int customerId = item.getCustomerId();
+        ReentrantLock lock = storage.lockFor(customerId);
+        lock.lock();
+        try {
+            carts.computeIfAbsent(customerId, k -> new ArrayList<>()).add(copyOf(item));
+            owners.put(id, customerId);
+        } finally {
+            lock.unlock();
+        }
+        storage.onRollback(() -> delete(id));
+    }
+
+    @Override
+    public void delete(int id) {
+        Integer customerId = owners.get(id);
+        if (customerId == null) {
+            return;
+        }
+        removeMatching(customerId, ci -> ci.getId() == id);
+    }
+
+    @Override
+    public boolean delete(int customerId, int id) {
+        return removeMatching(customerId, ci -> ci.getId() == id);
+    }
+
+    @Override
+    public boolean deleteAllByCustomerId(int customerId) {
+        removeMatching(customerId, ci -> true);
+        return true;
+    }
+
+    @Override
+    public void deleteByItem(int customerId, String itemType, int itemId) {
+        removeMatching(customerId, ci -> ci.getItemId() == itemId && ci.getItemType().equals(itemType));
+    }
+
+    /** Удалить строки корзины клиента, подходящие под filter; true — что-то удалено. */
+    private boolean removeMatching(int customerId, Predicate<CartItem> filter) {
+        List<CartItem> removed = new ArrayList<>();
+        ReentrantLock lock = storage.lockFor(customerId);
+        lock.lock();
+        try {
+            List<CartItem> cart = carts.get(customerId);
+            if (cart == null) {
+                return false;
+            }
+            cart.removeIf(ci -> {
+                if (filter.test(ci)) {
+                    removed.add(ci);
+                    return true;
+                }
+                return false;
+            });
+            removed.forEach(ci -> owners.remove(ci.getId()));
+        } finally {
+            lock.unlock();
+        }
+        if (removed.isEmpty()) {
+            return false;
+        }
+        storage.onRollback(() -> restore(customerId, removed));
+        return true;
+    }
+
+    /** Компенсация удаления: вернуть строки с прежними id. */
+    private void restore(int customerId, List<CartItem> lines) {
+        ReentrantLock lock = storage.lockFor(customerId);
+        lock.lock();
+        try {
+            List<CartItem> cart = carts.computeIfAbsent(customerId, k -> new ArrayList<>());
+            cart.addAll(lines);
+            cart.sort(BY_ID);
+            lines.forEach(ci -> owners.put(ci.getId(), customerId));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static CartItem copyOf(CartItem ci) {
+        return CartItem.ofMilli(ci.getId(), ci.getCustomerId(), ci.getItemType(), ci.getItemId(), ci.getQuantityMilli());
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.fuel.storage;
+
+import com.example.fuel.DAO.CustomerDAO;
+import com.example.fuel.model.Customer;
+import com.example.fuel.model.PaymentMethod;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Клиенты в памяти. Строка меняется только под замком своей полосы;
+ * наружу отдаются копии (Customer), как при чтении из БД.
+ */
+final class MemoryCustomerDAO implements CustomerDAO {
+
+    /** Строка таблицы customers. */
+    private static final class Row {
+        final int id;
+        final String name;
+        long wallet;
+        long card;
+        long bonus;
+        long version;
+
+        Row(int id, String name, long wallet, long card, long bonus) {
+            this.id = id;
+            this.name = name;
+            this.wallet = wallet;
+            this.card = card;
+            this.bonus = bonus;
+        }
+
+        Customer toCustomer() {
+            return Customer.ofKopecks(id, name, wallet, card, bonus, version);
+        }
+    }
+
+    private final MemoryStorage storage;
+    private final Map<Integer, Row> rows = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    MemoryCustomerDAO(MemoryStorage storage) {
+        this.storage = storage;
+    }
+
+    void clear() {
+        rows.clear();
+        nextId.set(0);
+    }
+
+    @Override
+    public Customer getById(int id) {
+        Row r = rows.get(id);
+        if (r == null) {
+            return null;
+        }
+        ReentrantLock lock = storage.lockFor(id);
+        lock.lock();
+        try {
+            return r.toCustomer();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Customer> getAll() {
+        List<Customer> list = new ArrayList<>();
+        for (Integer id : rows.keySet()) {
+            Customer c = getById(id);
+            if (c != null) {
+                list.add(c);
+            }
+        }
+        list.sort(Comparator.comparingInt(Customer::getId));
+        return list;
+    }
+
+    @Override
+    public boolean update(Customer customer) {
+        Row r = rows.get(customer.getId());
+        if (r == null) {
+            return false;
+        }
+        long dWallet, dCard, dBonus;
+        ReentrantLock lock = storage.lockFor(customer.getId());
+        lock.lock();
+        try {
+            if (r.version != customer.getVersion()) {
+                return false;
+            }
+            dWallet = customer.getWalletKopecks() - r.wallet;
+            dCard = customer.getCardKopecks() - r.card;
+            dBonus = customer.getBonusKopecks() - r.bonus;
+            r.wallet = customer.getWalletKopecks();
+            r.card = customer.getCardKopecks();
+            r.bonus = customer.getBonusKopecks();
+            r.version++;
+            customer.setVersion(r.version);
+        } finally {
+            lock.unlock();
+        }
+        storage.onRollback(() -> change(r, -dWallet, -dCard, -dBonus));
+        return true;
+    }
+
+    @Override
+    public int insert(Customer customer) {
+        int id = nextId.incrementAndGet();
+        rows.put(id, new Row(id, customer.getName(),
+                customer.getWalletKopecks(), customer.getCardKopecks(), customer.getBonusKopecks()));
+        customer.setId(id);
+        storage.onRollback(() -> rows.remove(id));
+        return id;
+    }
+
+    @Override
+    public boolean debit(int customerId, PaymentMethod method, long amountKopecks) {
+        Row r = rows.get(customerId);
+        if (r == null) {
+            return false;
+        }
+        long dWallet = 0, dCard = 0, dBonus = 0;
+        switch (method) {
+            case Наличные -> dWallet = amountKopecks;
+            case Карта -> dCard = amountKopecks;
+            case Бонусы -> dBonus = amountKopecks;
+        }
+        ReentrantLock lock = storage.lockFor(customerId);
+        lock.lock();
+        try {
+            if (r.wallet < dWallet || r.card < dCard || r.bonus < dBonus) {
+                return false;
+            }
+            r.wallet -= dWallet;
+            r.card -= dCard;
+            r.bonus -= dBonus;
+            r.version++;
+        } finally {
+            lock.unlock();
+        }
+        long w = dWallet, c = dCard, b = dBonus;
+        storage.onRollback(() -> change(r, w, c, b));
+        return true;
+    }
+
+    /** Компенсация при откате: вернуть разницу и сменить версию (прочитанное в транзакции устарело). */
+    private void change(Row r, long dWallet, long dCard, long dBonus) {
+        ReentrantLock lock = storage.lockFor(r.id);
+        lock.lock();
+        try {
+            r.wallet += dWallet;
+            r.card += dCard;
+            r.bonus += dBonus;
+            r.version++;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.fuel.storage;
+
+import com.example.fuel.DAO.PaymentDAO;
+import com.example.fuel.model.Payment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Журнал платежей в памяти (список платежей на клиента).
+ */
+final class MemoryPaymentDAO implements PaymentDAO {
+
+    private final MemoryStorage storage;
+    private final Map<Integer, List<Payment>> byCustomer = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    MemoryPaymentDAO(MemoryStorage storage) {
+        this.storage = storage;
+    }
+
+    void clear() {
+        byCustomer.clear();
+        nextId.set(0);
+    }
+
+    @Override
+    public boolean insertAll(List<Payment> payments) {
+        for (Payment p : payments) {
+            Payment copy = Payment.ofKopecks(nextId.incrementAndGet(), p.getCustomerId(), p.getMethod(),
+                    p.getAmountKopecks(), p.getCreatedAt() != 0 ? p.getCreatedAt() : System.currentTimeMillis());
+            List<Payment> list = byCustomer.computeIfAbsent(p.getCustomerId(), k -> new ArrayList<>());
+            synchronized (list) {
+                list.add(copy);
+            }
+            storage.onRollback(() -> {
+                synchronized (list) {
+                    list.remove(copy);
+                }
+            });
+        }
+        return true;
+    }
+
+    @Override
+    public List<Payment> getByCustomerId(int customerId) {
+        List<Payment> list = byCustomer.get(customerId);
+        if (list == null) {
+            return new ArrayList<>();
+        }
+        synchronized (list) {
+            return new ArrayList<>(list);
+        }
+    }
+
+    @Override
+    public long getTotalKopecksByCustomerId(int customerId) {
+        long total = 0;
+        for (Payment p : getByCustomerId(customerId)) {
+            total += p.getAmountKopecks();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.fuel.storage;
+
+import com.example.fuel.DAO.ProductDAO;
+import com.example.fuel.model.CatalogKey;
+import com.example.fuel.model.FuelProduct;
+import com.example.fuel.model.Money;
+import com.example.fuel.model.Product;
+import com.example.fuel.model.ServiceProduct;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Каталог в памяти. Строка — неизменяемая запись; изменение цены или остатка
+ * атомарно подменяет её через ConcurrentHashMap.compute.
+ * stockMilli = null у услуг (остаток не ведётся), как stock_ml = NULL в SQLite.
+ */
+final class MemoryProductDAO implements ProductDAO {
+
+    private record Row(CatalogKey key, String name, long priceKopecks, Long stockMilli) {
+        Product toProduct() {
+            if (CatalogKey.FUEL.equals(key.itemType())) {
+                return new FuelProduct(key.itemId(), name, priceKopecks, stockMilli != null ? stockMilli : 0);
+            }
+            return new ServiceProduct(key.itemId(), name, priceKopecks, Money.MILLI_PER_UNIT);
+        }
+    }
+
+    private static final Comparator<Row> ORDER = Comparator
+            .comparing((Row r) -> r.key().itemType())
+            .thenComparingInt(r -> r.key().itemId());
+
+    private final MemoryStorage storage;
+    private final Map<CatalogKey, Row> rows = new ConcurrentHashMap<>();
+
+    MemoryProductDAO(MemoryStorage storage) {
+        this.storage = storage;
+    }
+
+    void put(Product p) {
+        Long stock = p instanceof FuelProduct ? p.getStockMilli() : null;
+        rows.put(p.getKey(), new Row(p.getKey(), p.getName(), p.getPriceKopecks(), stock));
+    }
+
+    void clear() {
+        rows.clear();
+    }
+
+    @Override
+    public List<Product> getAll() {
+        List<Product> list = new ArrayList<>();
+        rows.values().stream().sorted(ORDER).forEach(r -> list.add(r.toProduct()));
+        return list;
+    }
+
+    @Override
+    public Map<CatalogKey, Product> getByIds(Collection<CatalogKey> keys) {
+        Map<CatalogKey, Product> result = new HashMap<>();
+        for (CatalogKey key : keys) {
+            Row r = rows.get(key);
+            if (r != null) {
+                result.put(key, r.toProduct());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<FuelProduct> getAllFuelProducts() {
+        return allOfType(CatalogKey.FUEL, FuelProduct.class);
+    }
+
+    @Override
+    public FuelProduct getFuelProductById(int id) {
+        Row r = rows.get(CatalogKey.fuel(id));
+        return r != null ? (FuelProduct) r.toProduct() : null;
+    }
+
+    @Override
+    public void updateFuelStock(int id, long newStockMilli) {
+        CatalogKey key = CatalogKey.fuel(id);
+        long[] delta = new long[1];
+        Row changed = rows.computeIfPresent(key, (k, r) -> {
+            delta[0] = newStockMilli - (r.stockMilli() != null ? r.stockMilli() : 0);
+            return new Row(k, r.name(), r.priceKopecks(), newStockMilli);
+        });
+        if (changed != null) {
+            // Откат — на ту же разницу, чтобы не затереть параллельные списания
+            long back = delta[0];
+            storage.onRollback(() -> rows.computeIfPresent(key,
+                    (k, r) -> new Row(k, r.name(), r.priceKopecks(), r.stockMilli() - back)));
+        }
+    }
+
+    @Override
+    public void updateFuelPrice(int id, long newPriceKopecks) {
+        updatePrice(CatalogKey.fuel(id), newPriceKopecks);
+    }
+
+    @Override
+    public boolean decreaseStock(Map<CatalogKey, Long> milliByKey) {
+        for (Map.Entry<CatalogKey, Long> e : milliByKey.entrySet()) {
+            long[] taken = new long[1];
+            rows.computeIfPresent(e.getKey(), (k, r) -> {
+                if (r.stockMilli() == null) {
+                    return r;
+                }
+                long next = Math.max(0, r.stockMilli() - e.getValue());
+                taken[0] = r.stockMilli() - next;
+                return new Row(k, r.name(), r.priceKopecks(), next);
+            });
+            if (taken[0] > 0) {
+                CatalogKey key = e.getKey();
+                long back = taken[0];
+                storage.onRollback(() -> rows.computeIfPresent(key,
+                        (k, r) -> new Row(k, r.name(), r.priceKopecks(), r.stockMilli() + back)));
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public List<ServiceProduct> getAllServiceProducts() {
+        return allOfType(CatalogKey.SERVICE, ServiceProduct.class);
+    }
+
+    @Override
+    public ServiceProduct getServiceById(int id) {
+        Row r = rows.get(CatalogKey.service(id));
+        return r != null ? (ServiceProduct) r.toProduct() : null;
+    }
+
+    @Override
+    public void updateServicePrice(int id, long newPriceKopecks) {
+        updatePrice(CatalogKey.service(id), newPriceKopecks);
+    }
+
+    private void updatePrice(CatalogKey key, long newPriceKopecks) {
+        long[] old = new long[1];
+        Row changed = rows.computeIfPresent(key, (k, r) -> {
+            old[0] = r.priceKopecks();
+            return new Row(k, r.name(), newPriceKopecks, r.stockMilli());
+        });
+        if (changed != null) {
+            long previous = old[0];
+            storage.onRollback(() -> rows.computeIfPresent(key,
+                    (k, r) -> new Row(k, r.name(), previous, r.stockMilli())));
+        }
+    }
+
+    private <T extends Product> List<T> allOfType(String itemType, Class<T> type) {
+        List<T> list = new ArrayList<>();
+        rows.values().stream()
+                .filter(r -> r.key().itemType().equals(itemType))
+                .sorted(ORDER)
+                .forEach(r -> list.add(type.cast(r.toProduct())));
+        return list;
+    }
+}
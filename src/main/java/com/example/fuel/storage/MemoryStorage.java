@@ -0,0 +1,213 @@
+package com.example.fuel.storage;
+
+import com.example.fuel.DAO.CartItemDAO;
+import com.example.fuel.DAO.CustomerDAO;
+import com.example.fuel.DAO.PaymentDAO;
+import com.example.fuel.DAO.ProductDAO;
+import com.example.fuel.db.DatabaseManager.TransactionWork;
+import com.example.fuel.model.Customer;
+import com.example.fuel.model.FuelProduct;
+import com.example.fuel.model.Money;
+import com.example.fuel.model.ServiceProduct;
+import com.example.fuel.service.CustomerLocks;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Хранилище целиком в памяти — без файла, SQL и fsync.
+ *
+ * Строки клиентов и корзин защищены полосатыми замками по id клиента (свой экземпляр CustomerLocks):
+ * операции над разными клиентами не ждут друг друга, а условное списание и проверка версии
+ * выполняются под замком строки так же атомарно, как условный UPDATE в SQLite.
+ *
+ * Транзакции, как и у SQLite, выполняются по одной (один «писатель»). Каждое изменение внутри
+ * транзакции записывает компенсирующее действие; при откате они выполняются в обратном порядке
+ * (возврат списанной суммы, остатка, удалённых строк корзины), поэтому откат не затирает
+ * изменения, сделанные параллельно вне транзакции.
+ */
+public final class MemoryStorage implements StorageProvider {
+
+    private static final int STRIPES = Integer.getInteger("smartfuel.storage.memory.stripes", 64);
+
+    private static volatile MemoryStorage shared;
+
+    private final CustomerLocks rowLocks = new CustomerLocks(STRIPES);
+    private final ReentrantLock writer = new ReentrantLock();
+    private final ThreadLocal<Tx> currentTx = new ThreadLocal<>();
+
+    private final MemoryProductDAO productDAO = new MemoryProductDAO(this);
+    private final MemoryCustomerDAO customerDAO = new MemoryCustomerDAO(this);
+    private final MemoryCartItemDAO cartItemDAO = new MemoryCartItemDAO(this);
+    private final MemoryPaymentDAO paymentDAO = new MemoryPaymentDAO(this);
+
+    private volatile long generation;
+
+    /** Открытая транзакция потока: компенсации для отката и действия после фиксации. */
+    private static final class Tx {
+        final List<Runnable> undo = new ArrayList<>();
+        final List<Runnable> afterCommit = new ArrayList<>();
+    }
+
+    /** Пустое хранилище. */
+    public MemoryStorage() {}
+
+    /** Хранилище с теми же начальными данными, что DatabaseInitializer кладёт в новую БД. */
+    public static MemoryStorage withDemoData() {
+        MemoryStorage storage = new MemoryStorage();
+        storage.seedDemoData();
+        return storage;
+    }
+
+    /** Общее хранилище в памяти (для -Dsmartfuel.storage=memory). */
+    public static MemoryStorage shared() {
+        MemoryStorage s = shared;
+        if (s == null) {
+            synchronized (MemoryStorage.class) {
+                if (shared == null) {
+                    shared = withDemoData();
+                }
+                s = shared;
+            }
+        }
+        return s;
+    }
+
+    /**
+     * Вернуться к начальным данным (аналог удаления файла БД и DatabaseInitializer.initialize()).
+     * Поколение меняется, так что кэши каталога перечитают данные.
+     */
+    public void resetToDemoData() {
+        writer.lock();
+        try {
+            productDAO.clear();
+            customerDAO.clear();
+            cartItemDAO.clear();
+            paymentDAO.clear();
+            seedDemoData();
+            generation++;
+        } finally {
+            writer.unlock();
+        }
+    }
+
+    private void seedDemoData() {
+        productDAO.put(new FuelProduct(1, "АИ-95", Money.ofRubles(56.0), Money.ofUnits(10000.0)));
+        productDAO.put(new FuelProduct(2, "Дизель", Money.ofRubles(50.0), Money.ofUnits(8000.0)));
+        productDAO.put(new FuelProduct(3, "АИ-98", Money.ofRubles(86.0), Money.ofUnits(5000.0)));
+        productDAO.put(new ServiceProduct(1, "Автомойка", Money.ofRubles(300.0), Money.MILLI_PER_UNIT));
+        productDAO.put(new ServiceProduct(2, "Подкачка шин", Money.ofRubles(150.0), Money.MILLI_PER_UNIT));
+        productDAO.put(new ServiceProduct(3, "Замена масла", Money.ofRubles(500.0), Money.MILLI_PER_UNIT));
+        customerDAO.insert(new Customer(0, "Иван Иванов", 1000.00, 2000.00, 150.00));
+    }
+
+    @Override
+    public ProductDAO productDAO() {
+        return productDAO;
+    }
+
+    @Override
+    public CustomerDAO customerDAO() {
+        return customerDAO;
+    }
+
+    @Override
+    public CartItemDAO cartItemDAO() {
+        return cartItemDAO;
+    }
+
+    @Override
+    public PaymentDAO paymentDAO() {
+        return paymentDAO;
+    }
+
+    @Override
+    public boolean inTransaction(TransactionWork work) {
+        Tx current = currentTx.get();
+        if (current != null) {
+            return inSavepoint(current, work);
+        }
+
+        Tx tx = new Tx();
+        boolean ok = false;
+        writer.lock();
+        currentTx.set(tx);
+        try {
+            ok = work.run();
+        } catch (SQLException | RuntimeException e) {
+            e.printStackTrace();
+        } finally {
+            currentTx.remove();
+            if (!ok) {
+                for (int i = tx.undo.size() - 1; i >= 0; i--) {
+                    tx.undo.get(i).run();
+                }
+            }
+            writer.unlock();
+        }
+
+        if (ok) {
+            tx.afterCommit.forEach(Runnable::run);
+        }
+        return ok;
+    }
+
+    /** Вложенная транзакция — как SAVEPOINT в SQLite: при false откатываются только её изменения. */
+    private static boolean inSavepoint(Tx tx, TransactionWork work) {
+        int undoMark = tx.undo.size();
+        int afterCommitMark = tx.afterCommit.size();
+        boolean ok = false;
+        try {
+            ok = work.run();
+        } catch (SQLException | RuntimeException e) {
+            e.printStackTrace();
+        }
+        if (!ok) {
+            for (int i = tx.undo.size() - 1; i >= undoMark; i--) {
+                tx.undo.remove(i).run();
+            }
+            tx.afterCommit.subList(afterCommitMark, tx.afterCommit.size()).clear();
+        }
+        return ok;
+    }
+
+    @Override
+    public void afterCommit(Runnable action) {
+        Tx tx = currentTx.get();
+        if (tx != null) {
+            tx.afterCommit.add(action);
+        } else {
+            action.run();
+        }
+    }
+
+    @Override
+    public boolean isInTransaction() {
+        return currentTx.get() != null;
+    }
+
+    @Override
+    public long getGeneration() {
+        return generation;
+    }
+
+    @Override
+    public String toString() {
+        return "memory";
+    }
+
+    /** Замок строк клиента customerId (для DAO этого хранилища). */
+    ReentrantLock lockFor(int customerId) {
+        return rowLocks.lockFor(customerId);
+    }
+
+    /** Запомнить компенсацию изменения на случай отката (вне транзакции — не нужна). */
+    void onRollback(Runnable undo) {
+        Tx tx = currentTx.get();
+        if (tx != null) {
+            tx.undo.add(undo);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.fuel.storage;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ограниченный кэш с вытеснением «сегментированный LRU» (SLRU).
+ *
+ * Новая запись попадает в испытательный сегмент (probation); повторное обращение переводит её
+ * в защищённый (protected, ~80% места). Вытесняется самая старая запись испытательного сегмента,
+ * поэтому разовые обращения (клиент заехал один раз, просмотр списка) не вымывают постоянных клиентов.
+ *
+ * Кэш разбит на шарды по хешу ключа, у каждого свой замок — разные ключи не мешают друг другу.
+ *
+ * Чтобы не положить в кэш устаревшее значение, у шарда есть счётчик изменений (stamp):
+ * читатель запоминает его до чтения из БД и кладёт результат только если за это время
+ * в шарде не было записей (putIfUnchanged); запись вызывает invalidate() до изменения
+ * и completeWrite() после фиксации.
+ */
+public final class SegmentedLruCache<K, V> {
+
+    /** Статистика кэша. */
+    public record Stats(long hits, long misses, long evictions, int size, int capacity) {
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0.0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("попаданий %d, промахов %d (%.1f%%), вытеснено %d, записей %d/%d",
+                    hits, misses, hitRate() * 100, evictions, size, capacity);
+        }
+    }
+
+    private final Shard<K, V>[] shards;
+    private final int capacity;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public SegmentedLruCache(int capacity, int shardCount) {
+        if (capacity < 1 || shardCount < 1) {
+            throw new IllegalArgumentException("capacity и shardCount должны быть >= 1");
+        }
+        int count = Math.min(shardCount, capacity);
+        this.capacity = capacity;
+        @SuppressWarnings("unchecked")
+        Shard<K, V>[] s = (Shard<K, V>[]) new Shard<?, ?>[count];
+        for (int i = 0; i < count; i++) {
+            // Остаток от деления раздаём первым шардам, чтобы сумма была ровно capacity
+            s[i] = new Shard<>(capacity / count + (i < capacity % count ? 1 : 0));
+        }
+        this.shards = s;
+    }
+
+    /** Значение из кэша (или null) — с учётом в статистике попаданий. */
+    public V get(K key) {
+        Shard<K, V> shard = shardFor(key);
+        V value;
+        synchronized (shard) {
+            value = shard.get(key);
+        }
+        (value != null ? hits : misses).increment();
+        return value;
+    }
+
+    /** Текущий счётчик изменений шарда ключа — запомнить перед чтением из источника. */
+    public long stamp(K key) {
+        Shard<K, V> shard = shardFor(key);
+        synchronized (shard) {
+            return shard.stamp;
+        }
+    }
+
+    /** Положить прочитанное значение, если с момента stamp() в шарде ничего не менялось. */
+    public void putIfUnchanged(K key, V value, long stamp) {
+        Shard<K, V> shard = shardFor(key);
+        synchronized (shard) {
+            if (shard.stamp == stamp) {
+                shard.put(key, value, evictions);
+            }
+        }
+    }
+
+    /** Ключ меняется: убрать запись и сделать недействительными начатые чтения. Возвращает новый stamp. */
+    public long invalidate(K key) {
+        Shard<K, V> shard = shardFor(key);
+        synchronized (shard) {
+            shard.remove(key);
+            return ++shard.stamp;
+        }
+    }
+
+    /**
+     * Изменение зафиксировано: записать новое значение (write-through), если после invalidate()
+     * в шарде не было других изменений, иначе — просто убрать ключ (прочитается заново).
+     */
+    public void completeWrite(K key, V value, long stamp) {
+        Shard<K, V> shard = shardFor(key);
+        synchronized (shard) {
+            if (value != null && shard.stamp == stamp) {
+                shard.put(key, value, evictions);
+            } else {
+                shard.remove(key);
+            }
+            shard.stamp++;
+        }
+    }
+
+    public void clear() {
+        for (Shard<K, V> shard : shards) {
+            synchronized (shard) {
+                shard.probation.clear();
+                shard.protectedSegment.clear();
+                shard.stamp++;
+            }
+        }
+    }
+
+    public Stats stats() {
+        int size = 0;
+        for (Shard<K, V> shard : shards) {
+            synchronized (shard) {
+                size += shard.probation.size() + shard.protectedSegment.size();
+            }
+        }
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), size, capacity);
+    }
+
+    private Shard<K, V> shardFor(K key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return shards[Math.floorMod(h, shards.length)];
+    }
+
+    /** Шард: два LRU-списка. Все методы вызываются под замком шарда. */
+    private static final class Shard<K, V> {
+        final int capacity;
+        final int protectedCapacity;
+        /** Порядок вставки: первая запись — кандидат на вытеснение. */
+        final LinkedHashMap<K, V> probation = new LinkedHashMap<>();
+        /** Порядок обращений: первая запись — давно не использованная. */
+        final LinkedHashMap<K, V> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+        long stamp;
+
+        Shard(int capacity) {
+            this.capacity = capacity;
+            this.protectedCapacity = Math.max(1, capacity * 4 / 5);
+        }
+
+        V get(K key) {
+            V value = protectedSegment.get(key);
+            if (value != null) {
+                return value;
+            }
+            value = probation.remove(key);
+            if (value != null) {
+                // Второе обращение — запись заслужила место в защищённом сегменте
+                promote(key, value);
+            }
+            return value;
+        }
+
+        void put(K key, V value, LongAdder evictions) {
+            if (protectedSegment.containsKey(key)) {
+                protectedSegment.put(key, value);
+                return;
+            }
+            probation.remove(key);
+            probation.put(key, value);
+            while (probation.size() + protectedSegment.size() > capacity) {
+                Map<K, V> victims = probation.isEmpty() ? protectedSegment : probation;
+                Iterator<K> eldest = victims.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+
+        void remove(K key) {
+            if (probation.remove(key) == null) {
+                protectedSegment.remove(key);
+            }
+        }
+
+        private void promote(K key, V value) {
+            protectedSegment.put(key, value);
+            if (protectedSegment.size() > protectedCapacity) {
+                // Самая давняя защищённая запись получает ещё один шанс в испытательном сегменте
+                Iterator<Map.Entry<K, V>> eldest = protectedSegment.entrySet().iterator();
+                Map.Entry<K, V> demoted = eldest.next();
+                eldest.remove();
+                probation.put(demoted.getKey(), demoted.getValue());
+            }
+        }
+    }
+}
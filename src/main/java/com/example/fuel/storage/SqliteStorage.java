@@ -0,0 +1,88 @@
+package com.example.fuel.storage;
+
+import com.example.fuel.DAO.CartItemDAO;
+import com.example.fuel.DAO.CustomerDAO;
+import com.example.fuel.DAO.CustomerDAOImpl;
+import com.example.fuel.DAO.PaymentDAO;
+import com.example.fuel.DAO.PaymentDAOImpl;
+import com.example.fuel.DAO.ProductDAO;
+import com.example.fuel.DAO.ProductDAOImpl;
+import com.example.fuel.db.DatabaseManager;
+import com.example.fuel.db.DatabaseManager.TransactionWork;
+import com.example.fuel.metrics.Metrics;
+
+/**
+ * Хранилище в SQLite: DAO-реализации поверх DatabaseManager
+ * (файл — smart_fuel.db или -Dsmartfuel.db.file=...).
+ * Клиенты читаются через кэш CachingCustomerDAO.
+ * Время каждого метода DAO пишется в Metrics (dao.product.*, dao.customer.*, ...);
+ * для клиентов измеряются обращения к БД — попадания в кэш в dao.customer.* не входят.
+ */
+final class SqliteStorage implements StorageProvider {
+
+    /** Размер кэша клиентов (0 — читать клиентов всегда из БД). Объявлен до INSTANCE — он нужен конструктору. */
+    private static final int CUSTOMER_CACHE_SIZE = Integer.getInteger("smartfuel.customerCache.size", 10_000);
+
+    static final SqliteStorage INSTANCE = new SqliteStorage();
+
+    private final ProductDAO productDAO =
+            Metrics.instrument(ProductDAO.class, new ProductDAOImpl(), "dao.product");
+    private final CustomerDAO customerDAO = withCache(
+            Metrics.instrument(CustomerDAO.class, new CustomerDAOImpl(), "dao.customer"));
+    private final PaymentDAO paymentDAO =
+            Metrics.instrument(PaymentDAO.class, new PaymentDAOImpl(), "dao.payment");
+    /** Корзина — SQL или InMemoryCartItemDAO с отложенной записью (см. CartItemDAO.create()). */
+    private final CartItemDAO cartItemDAO =
+            Metrics.instrument(CartItemDAO.class, CartItemDAO.create(), "dao.cartItem");
+
+    private SqliteStorage() {}
+
+    private CustomerDAO withCache(CustomerDAO dao) {
+        return CUSTOMER_CACHE_SIZE > 0 ? new CachingCustomerDAO(dao, this, CUSTOMER_CACHE_SIZE) : dao;
+    }
+
+    @Override
+    public ProductDAO productDAO() {
+        return productDAO;
+    }
+
+    @Override
+    public CustomerDAO customerDAO() {
+        return customerDAO;
+    }
+
+    @Override
+    public CartItemDAO cartItemDAO() {
+        return cartItemDAO;
+    }
+
+    @Override
+    public PaymentDAO paymentDAO() {
+        return paymentDAO;
+    }
+
+    @Override
+    public boolean inTransaction(TransactionWork work) {
+        return DatabaseManager.inTransaction(work);
+    }
+
+    @Override
+    public void afterCommit(Runnable action) {
+        DatabaseManager.afterCommit(action);
+    }
+
+    @Override
+    public boolean isInTransaction() {
+        return DatabaseManager.isInTransaction();
+    }
+
+    @Override
+    public long getGeneration() {
+        return DatabaseManager.getGeneration();
+    }
+
+    @Override
+    public String toString() {
+        return "sqlite:" + DatabaseManager.getDatabaseFile();
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.fuel.storage;
+
+import com.example.fuel.DAO.CartItemDAO;
+import com.example.fuel.DAO.CustomerDAO;
+import com.example.fuel.DAO.PaymentDAO;
+import com.example.fuel.DAO.ProductDAO;
+import com.example.fuel.db.DatabaseManager.TransactionWork;
+
+/**
+ * Хранилище данных: набор DAO и транзакции над ними.
+ *
+ * Сервисы получают хранилище через конструктор и не знают, где лежат данные.
+ * Реализации:
+ * – SqliteStorage — файл SQLite через DatabaseManager (по умолчанию);
+ * – MemoryStorage — всё в памяти, для тестов, бенчмарков бизнес-логики и нагрузочных прогонов.
+ *
+ * Выбор по умолчанию — -Dsmartfuel.storage=sqlite|memory (см. fromConfig()).
+ */
+public interface StorageProvider {
+
+    ProductDAO productDAO();
+
+    CustomerDAO customerDAO();
+
+    CartItemDAO cartItemDAO();
+
+    PaymentDAO paymentDAO();
+
+    /**
+     * Выполнить work атомарно: все изменения через DAO этого хранилища фиксируются вместе,
+     * если work вернула true, и отменяются, если false или ошибка.
+     * Вложенный вызов выполняется внутри открытой транзакции как точка сохранения:
+     * его false откатывает только его изменения.
+     */
+    boolean inTransaction(TransactionWork work);
+
+    /** Выполнить action после успешной фиксации текущей транзакции (вне транзакции — сразу). */
+    void afterCommit(Runnable action);
+
+    /** true — текущий поток внутри inTransaction() (видит ещё не зафиксированные изменения). */
+    boolean isInTransaction();
+
+    /** Номер «поколения» данных: меняется, когда хранилище пересоздано, — по нему кэши сбрасываются. */
+    long getGeneration();
+
+    /** Хранилище SQLite (общее для приложения). */
+    static StorageProvider sqlite() {
+        return SqliteStorage.INSTANCE;
+    }
+
+    /** Хранилище, выбранное настройкой smartfuel.storage (sqlite — по умолчанию, memory — в памяти). */
+    static StorageProvider fromConfig() {
+        String kind = System.getProperty("smartfuel.storage", "sqlite");
+        return switch (kind) {
+            case "sqlite" -> sqlite();
+            case "memory" -> MemoryStorage.shared();
+            default -> throw new IllegalArgumentException("Неизвестное хранилище smartfuel.storage=" + kind);
+        };
+    }
+}
@@ -2,11 +2,17 @@ package com.example.fuel.strategy;
 
 import com.example.fuel.model.CartItem;
 import com.example.fuel.model.FuelProduct;
+import com.example.fuel.model.Money;
+import com.example.fuel.model.Product;
 import com.example.fuel.service.ProductService;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Стратегия расчёта стоимости для топлива (FuelProduct).
- * Стоимость = цена за литр * количество литров.
+ * Стоимость = цена за литр (коп.) × количество (мл) / 1000, с округлением до копейки.
  */
 public class FuelPricingStrategy implements PricingStrategy {
 
@@ -17,11 +23,38 @@ public class FuelPricingStrategy implements PricingStrategy {
     }
 
     @Override
-    public double calculatePrice(CartItem item) {
+    public long priceOf(Product product, CartItem item) {
+        return Money.times(product.getPriceKopecks(), item.getQuantityMilli());
+    }
+
+    @Override
+    public long calculatePriceKopecks(CartItem item) {
         FuelProduct product = productService.getFuelById(item.getItemId());
         if (product == null) {
             throw new IllegalArgumentException("Топливо с id " + item.getItemId() + " не найдено");
         }
-        return product.getPrice() * item.getQuantity();
+        return priceOf(product, item);
+    }
+
+    /**
+     * Цены всех элементов берём одним запросом WHERE id IN (...).
+     */
+    @Override
+    public long calculateTotalKopecks(List<CartItem> items) {
+        List<Integer> ids = new ArrayList<>(items.size());
+        for (CartItem item : items) {
+            ids.add(item.getItemId());
+        }
+        Map<Integer, FuelProduct> products = productService.getFuelByIds(ids);
+
+        long total = 0;
+        for (CartItem item : items) {
+            FuelProduct product = products.get(item.getItemId());
+            if (product == null) {
+                throw new IllegalArgumentException("Топливо с id " + item.getItemId() + " не найдено");
+            }
+            total = Money.add(total, priceOf(product, item));
+        }
+        return total;
     }
 }
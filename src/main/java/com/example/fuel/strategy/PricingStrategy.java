@@ -1,16 +1,53 @@
 package com.example.fuel.strategy;
 
 import com.example.fuel.model.CartItem;
+import com.example.fuel.model.Money;
+import com.example.fuel.model.Product;
+
+import java.util.List;
 
 /**
  * Интерфейс стратегии расчёта стоимости элемента корзины.
+ * Расчёт ведётся в копейках (см. Money), варианты в рублях — обёртки для UI.
  */
 public interface PricingStrategy {
 
+    /**
+     * Стоимость элемента корзины по уже найденной позиции каталога (без обращения к каталогу).
+     * @param product позиция каталога, на которую ссылается item
+     * @param item элемент корзины
+     * @return стоимость, коп.
+     */
+    long priceOf(Product product, CartItem item);
+
     /**
      * Рассчитать стоимость элемента корзины.
      * @param item элемент корзины
-     * @return стоимость
+     * @return стоимость, коп.
      */
-    double calculatePrice(CartItem item);
+    long calculatePriceKopecks(CartItem item);
+
+    /**
+     * Рассчитать суммарную стоимость сразу нескольких элементов.
+     * Реализации загружают все нужные товары одним запросом вместо запроса на каждую строку.
+     * @param items элементы корзины одного типа
+     * @return суммарная стоимость, коп.
+     */
+    default long calculateTotalKopecks(List<CartItem> items) {
+        long total = 0;
+        for (CartItem item : items) {
+            total = Money.add(total, calculatePriceKopecks(item));
+        }
+        return total;
+    }
+
+    /** Стоимость элемента в рублях. */
+    default double calculatePrice(CartItem item) {
+        return Money.toRubles(calculatePriceKopecks(item));
+    }
+
+    /** Суммарная стоимость в рублях. */
+    default double calculateTotal(List<CartItem> items) {
+        return Money.toRubles(calculateTotalKopecks(items));
+    }
 }
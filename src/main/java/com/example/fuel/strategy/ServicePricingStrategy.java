@@ -1,9 +1,15 @@
 package com.example.fuel.strategy;
 
 import com.example.fuel.model.CartItem;
+import com.example.fuel.model.Money;
+import com.example.fuel.model.Product;
 import com.example.fuel.model.ServiceProduct;
 import com.example.fuel.service.ProductService;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Стратегия расчёта стоимости для услуги (ServiceProduct).
  * Стоимость — фиксированная цена услуги.
@@ -17,11 +23,38 @@ public class ServicePricingStrategy implements PricingStrategy {
     }
 
     @Override
-    public double calculatePrice(CartItem item) {
+    public long priceOf(Product product, CartItem item) {
+        return product.getPriceKopecks();
+    }
+
+    @Override
+    public long calculatePriceKopecks(CartItem item) {
         ServiceProduct service = productService.getServiceById(item.getItemId());
         if (service == null) {
             throw new IllegalArgumentException("Услуга с id " + item.getItemId() + " не найдена");
         }
-        return service.getPrice();
+        return priceOf(service, item);
+    }
+
+    /**
+     * Цены всех элементов берём одним запросом WHERE id IN (...).
+     */
+    @Override
+    public long calculateTotalKopecks(List<CartItem> items) {
+        List<Integer> ids = new ArrayList<>(items.size());
+        for (CartItem item : items) {
+            ids.add(item.getItemId());
+        }
+        Map<Integer, ServiceProduct> services = productService.getServicesByIds(ids);
+
+        long total = 0;
+        for (CartItem item : items) {
+            ServiceProduct service = services.get(item.getItemId());
+            if (service == null) {
+                throw new IllegalArgumentException("Услуга с id " + item.getItemId() + " не найдена");
+            }
+            total = Money.add(total, priceOf(service, item));
+        }
+        return total;
     }
 }
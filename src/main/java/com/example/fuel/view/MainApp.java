@@ -1,9 +1,9 @@
 package com.example.fuel.view;
 
-import com.example.fuel.model.CartItem;
 import com.example.fuel.model.FuelProduct;
 import com.example.fuel.model.PaymentMethod;
 import com.example.fuel.model.ServiceProduct;
+import com.example.fuel.presenter.CartViewModel;
 import com.example.fuel.presenter.SmartFuelPresenter;
 import com.example.fuel.db.DatabaseInitializer;
 import com.example.fuel.model.Customer;
@@ -23,16 +23,27 @@ import javafx.stage.Stage;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * JavaFX‐приложение SmartFuel (без FXML):
  * при частичной оплате, если остаток достигает нуля, корзина очищается и показывается сообщение.
+ *
+ * Все обращения к презентеру (и к БД) выполняются в фоне через UiTaskRunner,
+ * поток JavaFX только показывает диалоги и готовые данные.
  */
 public class MainApp extends Application {
 
     private SmartFuelPresenter presenter;
+    private CartViewModel cartModel;   // корзина, загруженная один раз на изменение
+    private UiTaskRunner tasks;        // фоновое выполнение вызовов презентера
     private final int CUSTOMER_ID = 1;
 
+    /** Перезагрузка экрана уже запланирована (повторные запросы сливаются в неё). */
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+    /** Клиент из последней загрузки экрана. */
+    private Customer customer;
+
     // Панель балансов
     private Label lblCash;
     private Label lblCard;
@@ -55,11 +66,12 @@ public class MainApp extends Application {
 
     @Override
     public void start(Stage primaryStage) {
-        presenter = new SmartFuelPresenter();
+        presenter = new SmartFuelPresenter().startReservationSweep();
+        cartModel = new CartViewModel(presenter, CUSTOMER_ID);
+        tasks = new UiTaskRunner(e -> showAlert("Ошибка", "Операция не выполнена: " + e.getMessage()));
 
         // 1) Панель балансов
         HBox balanceBox = createBalanceBox();
-        updateBalances();
 
         // 2) Вкладки: Топливо, Услуги, Корзина
         TabPane tabPane = new TabPane();
@@ -82,10 +94,55 @@ public class MainApp extends Application {
         primaryStage.setResizable(false);
         primaryStage.show();
 
-        // 4) Загрузка данных
-        loadFuelData();
-        loadServiceData();
-        loadCartData();
+        // 4) Загрузка данных (в фоне)
+        requestRefresh();
+    }
+
+    @Override
+    public void stop() {
+        tasks.shutdown();
+    }
+
+    // -----------------------------
+    // Обновление экрана
+    // -----------------------------
+
+    /** Всё, что нужно экрану, загруженное в фоне за один проход. */
+    private static final class ScreenData {
+        final List<FuelProduct> fuel;
+        final List<ServiceProduct> services;
+        final Customer customer;
+
+        ScreenData(List<FuelProduct> fuel, List<ServiceProduct> services, Customer customer) {
+            this.fuel = fuel;
+            this.services = services;
+            this.customer = customer;
+        }
+    }
+
+    /**
+     * Запросить перезагрузку таблиц, корзины и балансов.
+     * Несколько запросов подряд (в пределах одного кадра) сливаются в одну загрузку.
+     */
+    private void requestRefresh() {
+        if (!refreshScheduled.compareAndSet(false, true)) {
+            return; // загрузка уже в очереди — она покажет и эти изменения
+        }
+        tasks.submit(() -> {
+            refreshScheduled.set(false);
+            cartModel.reload();
+            return new ScreenData(presenter.getAllFuel(), presenter.getAllServices(),
+                    presenter.getCustomer(CUSTOMER_ID));
+        }, this::applyScreenData);
+    }
+
+    private void applyScreenData(ScreenData data) {
+        fuelTable.setItems(FXCollections.observableArrayList(data.fuel));
+        fuelTable.refresh();
+        serviceTable.setItems(FXCollections.observableArrayList(data.services));
+        serviceTable.refresh();
+        showCart();
+        showBalances(data.customer);
     }
 
     // -----------------------------
@@ -121,8 +178,8 @@ public class MainApp extends Application {
         return pair;
     }
 
-    private void updateBalances() {
-        Customer c = presenter.getCustomer(CUSTOMER_ID);
+    private void showBalances(Customer c) {
+        customer = c;
         if (c != null) {
             lblCash.setText(String.format("%.2f ₽", c.getWalletBalance()));
             lblCard.setText(String.format("%.2f ₽", c.getCardBalance()));
@@ -167,17 +224,13 @@ public class MainApp extends Application {
                 new SimpleDoubleProperty(cell.getValue().getStockQty()).asObject());
         colStock.setPrefWidth(100);
 
-        // Колонка "В корзине (л)"
+        // Колонка "В корзине (л)": количество берётся из модели корзины, без запроса к БД
         TableColumn<FuelProduct, String> colInCart = new TableColumn<>("В корзине (л)");
         colInCart.setCellValueFactory(cellData -> {
-            FuelProduct fuel = cellData.getValue();
-            List<CartItem> cartItems = presenter.getCartItems(CUSTOMER_ID);
-            Optional<CartItem> match = cartItems.stream()
-                    .filter(ci -> ci.getItemType().equals("PRODUCT") && ci.getItemId() == fuel.getId())
-                    .findFirst();
-            return new SimpleStringProperty(match
-                    .map(ci -> String.format("%.2f", ci.getQuantity()))
-                    .orElse(""));
+            int fuelId = cellData.getValue().getId();
+            return new SimpleStringProperty(cartModel.contains("PRODUCT", fuelId)
+                    ? String.format("%.2f", cartModel.getQuantity("PRODUCT", fuelId))
+                    : "");
         });
         colInCart.setPrefWidth(100);
 
@@ -216,22 +269,30 @@ public class MainApp extends Application {
     }
 
     private void onAddFuel() {
+        if (tasks.isBusy()) return; // предыдущая операция ещё выполняется
         FuelProduct selected = fuelTable.getSelectionModel().getSelectedItem();
         if (selected == null) {
             showAlert("Внимание", "Пожалуйста, выберите топливо.");
             return;
         }
 
-        boolean alreadyInCart = presenter.isItemInCart(CUSTOMER_ID, "PRODUCT", selected.getId());
+        boolean alreadyInCart = cartModel.contains("PRODUCT", selected.getId());
         if (alreadyInCart) {
             showAlert("Корзина", "Данное топливо уже есть в корзине.\nУдалите его для изменения количества.");
             return;
         }
 
+        // Свободный остаток может потребовать пересчёта резервов (SQL) — читаем его в фоне
+        tasks.submit(() -> presenter.getAvailableFuel(selected.getId()),
+                available -> askFuelQuantity(selected, available));
+    }
+
+    /** Спросить количество литров (в потоке JavaFX) и добавить топливо в корзину в фоне. */
+    private void askFuelQuantity(FuelProduct selected, double available) {
         TextInputDialog qtyDialog = new TextInputDialog();
         qtyDialog.setTitle("Количество литров");
         qtyDialog.setHeaderText("Укажите количество литров для «" + selected.getName() +
-                "» (макс. " + selected.getStockQty() + "):");
+                "» (доступно " + available + "):");
 
         Optional<String> res = qtyDialog.showAndWait();
         if (res.isEmpty()) {
@@ -256,43 +317,44 @@ public class MainApp extends Application {
             }
         }
 
-        presenter.addToCart(CUSTOMER_ID, "PRODUCT", selected.getId(), qty);
-        showAlert("Успешно добавлено", "Топливо «" + selected.getName() + "» добавлено в корзину.\nКоличество: "
-                + String.format("%.2f", qty) + " л.");
-
-        loadFuelData();
-        loadCartData();
-        updateBalances();
+        double litres = qty;
+        tasks.submit(() -> presenter.addToCart(CUSTOMER_ID, "PRODUCT", selected.getId(), litres), added -> {
+            if (!added) {
+                showAlert("Недостаточно топлива", "Свободного топлива «" + selected.getName() + "» меньше "
+                        + String.format("%.2f", litres) + " л — часть остатка уже в корзинах других клиентов.");
+                return;
+            }
+            requestRefresh();
+            showAlert("Успешно добавлено", "Топливо «" + selected.getName() + "» добавлено в корзину.\nКоличество: "
+                    + String.format("%.2f", litres) + " л.");
+        });
     }
 
     private void onRemoveFuelFromCart() {
+        if (tasks.isBusy()) return;
         FuelProduct selected = fuelTable.getSelectionModel().getSelectedItem();
         if (selected == null) {
             showAlert("Внимание", "Пожалуйста, выберите топливо.");
             return;
         }
-        List<CartItem> cartItems = presenter.getCartItems(CUSTOMER_ID);
-        Optional<CartItem> toRemove = cartItems.stream()
-                .filter(ci -> ci.getItemType().equals("PRODUCT") && ci.getItemId() == selected.getId())
-                .findFirst();
-
-        if (toRemove.isEmpty()) {
+        CartViewModel.Line toRemove = cartModel.findLine("PRODUCT", selected.getId());
+        if (toRemove == null) {
             showAlert("Информация", "Это топливо отсутствует в корзине.");
             return;
         }
 
-        presenter.removeCartItemById(toRemove.get().getId(), CUSTOMER_ID);
-        showAlert("Успешно удалено", "Топливо «" + selected.getName() + "» удалено из корзины.");
-        loadCartData();
-        loadFuelData();
-        updateBalances();
+        removeFromCart(toRemove.getCartItemId(), "Топливо «" + selected.getName() + "» удалено из корзины.");
     }
 
-    private void loadFuelData() {
-        List<FuelProduct> list = presenter.getAllFuel();
-        ObservableList<FuelProduct> obs = FXCollections.observableArrayList(list);
-        fuelTable.setItems(obs);
-        fuelTable.refresh();
+    /** Удалить строку корзины в фоне и показать сообщение. */
+    private void removeFromCart(int cartItemId, String message) {
+        tasks.submit(() -> {
+            presenter.removeCartItemById(cartItemId, CUSTOMER_ID);
+            return null;
+        }, ignored -> {
+            requestRefresh();
+            showAlert("Успешно удалено", message);
+        });
     }
 
     // -----------------------------
@@ -323,17 +385,13 @@ public class MainApp extends Application {
                 new SimpleDoubleProperty(cell.getValue().getPrice()).asObject());
         colSprice.setPrefWidth(100);
 
-        // Колонка "В корзине (шт)"
+        // Колонка "В корзине (шт)": тоже из модели корзины
         TableColumn<ServiceProduct, String> colInCart = new TableColumn<>("В корзине (шт)");
         colInCart.setCellValueFactory(cellData -> {
-            ServiceProduct service = cellData.getValue();
-            List<CartItem> cartItems = presenter.getCartItems(CUSTOMER_ID);
-            Optional<CartItem> match = cartItems.stream()
-                    .filter(ci -> ci.getItemType().equals("SERVICE") && ci.getItemId() == service.getId())
-                    .findFirst();
-            return new SimpleStringProperty(match
-                    .map(ci -> String.format("%.0f", ci.getQuantity()))
-                    .orElse(""));
+            int serviceId = cellData.getValue().getId();
+            return new SimpleStringProperty(cartModel.contains("SERVICE", serviceId)
+                    ? String.format("%.0f", cartModel.getQuantity("SERVICE", serviceId))
+                    : "");
         });
         colInCart.setPrefWidth(100);
 
@@ -372,52 +430,41 @@ public class MainApp extends Application {
     }
 
     private void onAddService() {
+        if (tasks.isBusy()) return;
         ServiceProduct selected = serviceTable.getSelectionModel().getSelectedItem();
         if (selected == null) {
             showAlert("Внимание", "Пожалуйста, выберите услугу.");
             return;
         }
-        boolean alreadyInCart = presenter.isItemInCart(CUSTOMER_ID, "SERVICE", selected.getId());
+        boolean alreadyInCart = cartModel.contains("SERVICE", selected.getId());
         if (alreadyInCart) {
             showAlert("Корзина", "Эта услуга уже есть в корзине.\nУдалите её для изменения.");
             return;
         }
 
-        presenter.addToCart(CUSTOMER_ID, "SERVICE", selected.getId(), 1.0);
-        showAlert("Успешно добавлено", "Услуга «" + selected.getName() + "» добавлена в корзину.");
-        loadServiceData();
-        loadCartData();
-        updateBalances();
+        tasks.submit(() -> {
+            presenter.addToCart(CUSTOMER_ID, "SERVICE", selected.getId(), 1.0);
+            return null;
+        }, ignored -> {
+            requestRefresh();
+            showAlert("Успешно добавлено", "Услуга «" + selected.getName() + "» добавлена в корзину.");
+        });
     }
 
     private void onRemoveServiceFromCart() {
+        if (tasks.isBusy()) return;
         ServiceProduct selected = serviceTable.getSelectionModel().getSelectedItem();
         if (selected == null) {
             showAlert("Внимание", "Пожалуйста, выберите услугу.");
             return;
         }
-        List<CartItem> cartItems = presenter.getCartItems(CUSTOMER_ID);
-        Optional<CartItem> toRemove = cartItems.stream()
-                .filter(ci -> ci.getItemType().equals("SERVICE") && ci.getItemId() == selected.getId())
-                .findFirst();
-
-        if (toRemove.isEmpty()) {
+        CartViewModel.Line toRemove = cartModel.findLine("SERVICE", selected.getId());
+        if (toRemove == null) {
             showAlert("Информация", "Эта услуга отсутствует в корзине.");
             return;
         }
 
-        presenter.removeCartItemById(toRemove.get().getId(), CUSTOMER_ID);
-        showAlert("Успешно удалено", "Услуга «" + selected.getName() + "» удалена из корзины.");
-        loadCartData();
-        loadServiceData();
-        updateBalances();
-    }
-
-    private void loadServiceData() {
-        List<ServiceProduct> list = presenter.getAllServices();
-        ObservableList<ServiceProduct> obs = FXCollections.observableArrayList(list);
-        serviceTable.setItems(obs);
-        serviceTable.refresh();
+        removeFromCart(toRemove.getCartItemId(), "Услуга «" + selected.getName() + "» удалена из корзины.");
     }
 
     // -----------------------------
@@ -499,35 +546,15 @@ public class MainApp extends Application {
         return root;
     }
 
-    private void loadCartData() {
-        List<CartItem> items = presenter.getCartItems(CUSTOMER_ID);
+    /** Показать корзину из модели (сама загрузка — в requestRefresh). */
+    private void showCart() {
         ObservableList<CartRow> rows = FXCollections.observableArrayList();
-        double total = presenter.getCartTotal(CUSTOMER_ID);
-        double paid = presenter.getPaid(CUSTOMER_ID);
-        double remaining = presenter.getRemaining(CUSTOMER_ID);
-
-        for (CartItem ci : items) {
-            String type = ci.getItemType();
-            int cartItemId = ci.getId();
-            int id = ci.getItemId();
-            double qty = ci.getQuantity();
-            String name;
-            double unitPrice;
-
-            if ("PRODUCT".equals(type)) {
-                FuelProduct p = presenter.getAllFuel().stream()
-                        .filter(fp -> fp.getId() == id).findFirst().orElse(null);
-                name = (p != null ? p.getName() : "неизвестно");
-                unitPrice = (p != null ? p.getPrice() : 0.0);
-            } else {
-                ServiceProduct s = presenter.getAllServices().stream()
-                        .filter(sp -> sp.getId() == id).findFirst().orElse(null);
-                name = (s != null ? s.getName() : "неизвестно");
-                unitPrice = (s != null ? s.getPrice() : 0.0);
-            }
+        double total = cartModel.getTotal();
+        double remaining = cartModel.getRemaining();
 
-            double price = unitPrice * qty;
-            rows.add(new CartRow(type, cartItemId, id, name, qty, price));
+        for (CartViewModel.Line line : cartModel.getLines()) {
+            rows.add(new CartRow(line.getType(), line.getCartItemId(), line.getItemId(),
+                    line.getName(), line.getQuantity(), line.getPrice()));
         }
 
         cartTable.setItems(rows);
@@ -538,17 +565,13 @@ public class MainApp extends Application {
     }
 
     private void onDeleteSelectedItem() {
+        if (tasks.isBusy()) return;
         CartRow row = cartTable.getSelectionModel().getSelectedItem();
         if (row == null) {
             showAlert("Внимание", "Пожалуйста, выберите элемент для удаления.");
             return;
         }
-        presenter.removeCartItemById(row.cartItemIdProperty().get(), CUSTOMER_ID);
-        showAlert("Успешно удалено", "Элемент удалён из корзины.");
-        loadCartData();
-        loadFuelData();
-        loadServiceData();
-        updateBalances();
+        removeFromCart(row.cartItemIdProperty().get(), "Элемент удалён из корзины.");
     }
 
     /**
@@ -558,24 +581,18 @@ public class MainApp extends Application {
      * Если что-то не так, возвращает текст ошибки, иначе — null.
      */
     private String validateCart() {
-        List<CartItem> items = presenter.getCartItems(CUSTOMER_ID);
-
         // 1) Проверка, что для топлива указано количество > 0
-        for (CartItem ci : items) {
-            if ("PRODUCT".equals(ci.getItemType())) {
-                if (ci.getQuantity() <= 0) {
-                    FuelProduct p = presenter.getAllFuel().stream()
-                            .filter(fp -> fp.getId() == ci.getItemId())
-                            .findFirst().orElse(null);
-                    String name = (p != null ? p.getName() : ("ID=" + ci.getItemId()));
-                    return "Топливо «" + name + "» не взвешено. Укажите количество литров.";
+        for (CartViewModel.Line line : cartModel.getLines()) {
+            if ("PRODUCT".equals(line.getType())) {
+                if (line.getQuantity() <= 0) {
+                    return "Топливо «" + line.getName() + "» не взвешено. Укажите количество литров.";
                 }
             }
         }
 
         // 2) Проверка средств: сумма цен всех позиций vs суммарный баланс клиента
-        double totalCost = presenter.getCartTotal(CUSTOMER_ID);
-        Customer c = presenter.getCustomer(CUSTOMER_ID);
+        double totalCost = cartModel.getTotal();
+        Customer c = customer;
         if (c == null) {
             return "Ошибка: клиент не найден.";
         }
@@ -592,13 +609,14 @@ public class MainApp extends Application {
 // Методы оплаты
 // -----------------------------
     private void onFullCheckout() {
+        if (tasks.isBusy()) return;
         String error = validateCart();
         if (error != null) {
             showAlert("Ошибка", error);
             return;
         }
 
-        double remaining = presenter.getRemaining(CUSTOMER_ID);
+        double remaining = cartModel.getRemaining();
         if (remaining <= 0) {
             showAlert("Информация", "Корзина пуста или все уже оплачено.");
             return;
@@ -615,26 +633,25 @@ public class MainApp extends Application {
         if (methodResult.isEmpty()) return;
         PaymentMethod method = methodResult.get();
 
-        boolean ok = presenter.checkoutFullWithMethod(CUSTOMER_ID, method);
-        if (ok) {
-            showAlert("Оплата прошла", "Полная оплата (" + method + ") выполнена успешно.");
-            loadCartData();
-            loadFuelData();
-            loadServiceData();
-            updateBalances();
-        } else {
-            showAlert("Ошибка оплаты", "Недостаточно средств по способу: " + method);
-        }
+        tasks.submit(() -> presenter.checkoutFullWithMethod(CUSTOMER_ID, method), ok -> {
+            if (ok) {
+                requestRefresh();
+                showAlert("Оплата прошла", "Полная оплата (" + method + ") выполнена успешно.");
+            } else {
+                showAlert("Ошибка оплаты", "Недостаточно средств по способу: " + method);
+            }
+        });
     }
 
     private void onPartialCheckout() {
+        if (tasks.isBusy()) return;
         String error = validateCart();
         if (error != null) {
             showAlert("Ошибка", error);
             return;
         }
 
-        double remaining = presenter.getRemaining(CUSTOMER_ID);
+        double remaining = cartModel.getRemaining();
         if (remaining <= 0) {
             showAlert("Информация", "Корзина пуста или все уже оплачено.");
             return;
@@ -674,26 +691,30 @@ public class MainApp extends Application {
             return;
         }
 
-        boolean ok = presenter.checkoutPartial(CUSTOMER_ID, method, amount);
-        if (!ok) {
-            showAlert("Ошибка оплаты", "Недостаточно средств по способу: " + method);
-            return;
-        }
-
-        double newRemaining = presenter.getRemaining(CUSTOMER_ID);
-        if (newRemaining < 0.000001) {
-            presenter.clearCart(CUSTOMER_ID);
-            showAlert("Оплата завершена", "Вы полностью оплатили чек. Спасибо за покупку!");
-        } else {
-            showAlert("Частичная оплата",
-                    "Сумма " + String.format("%.2f ₽", amount) +
-                            " списана (" + method + "), остаток: " + String.format("%.2f ₽", newRemaining));
-        }
-
-        loadCartData();
-        loadFuelData();
-        loadServiceData();
-        updateBalances();
+        // null — оплата не прошла, иначе новый остаток
+        tasks.submit(() -> {
+            if (!presenter.checkoutPartial(CUSTOMER_ID, method, amount)) {
+                return null;
+            }
+            double newRemaining = presenter.getRemaining(CUSTOMER_ID);
+            if (newRemaining < 0.000001) {
+                presenter.clearCart(CUSTOMER_ID);
+            }
+            return newRemaining;
+        }, newRemaining -> {
+            if (newRemaining == null) {
+                showAlert("Ошибка оплаты", "Недостаточно средств по способу: " + method);
+                return;
+            }
+            requestRefresh();
+            if (newRemaining < 0.000001) {
+                showAlert("Оплата завершена", "Вы полностью оплатили чек. Спасибо за покупку!");
+            } else {
+                showAlert("Частичная оплата",
+                        "Сумма " + String.format("%.2f ₽", amount) +
+                                " списана (" + method + "), остаток: " + String.format("%.2f ₽", newRemaining));
+            }
+        });
     }
 
 
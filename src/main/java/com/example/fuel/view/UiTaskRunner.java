@@ -0,0 +1,68 @@
+package com.example.fuel.view;
+
+import javafx.application.Platform;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Выполняет вызовы презентера (и, значит, SQLite) вне потока JavaFX.
+ *
+ * Работа идёт в одном фоновом потоке — команды кассира выполняются строго по очереди,
+ * а результат возвращается в UI через Platform.runLater. Пока есть незавершённые задачи,
+ * isBusy() = true: обработчики кнопок по нему игнорируют повторные нажатия.
+ */
+public class UiTaskRunner {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "presenter-worker");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Consumer<Throwable> onError;
+
+    /**
+     * @param onError что показать пользователю при ошибке (вызывается в потоке JavaFX)
+     */
+    public UiTaskRunner(Consumer<Throwable> onError) {
+        this.onError = onError;
+    }
+
+    /**
+     * Выполнить work в фоне, затем onSuccess(результат) в потоке JavaFX.
+     */
+    public <T> void submit(Callable<T> work, Consumer<T> onSuccess) {
+        inFlight.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                T result = work.call();
+                Platform.runLater(() -> {
+                    try {
+                        onSuccess.accept(result);
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                });
+            } catch (Exception e) {
+                e.printStackTrace();
+                Platform.runLater(() -> {
+                    inFlight.decrementAndGet();
+                    onError.accept(e);
+                });
+            }
+        });
+    }
+
+    /** true — есть задачи, результат которых ещё не применён к UI. */
+    public boolean isBusy() {
+        return inFlight.get() > 0;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -1,13 +1,24 @@
 package com.example.fuel.test;
 
+import com.example.fuel.DAO.CartItemDAOImpl;
+import com.example.fuel.DAO.InMemoryCartItemDAO;
+import com.example.fuel.DAO.ProductDAOImpl;
 import com.example.fuel.db.DatabaseInitializer;
+import com.example.fuel.db.DatabaseManager;
 import com.example.fuel.model.CartItem;
+import com.example.fuel.model.CatalogKey;
+import com.example.fuel.model.FuelProduct;
+import com.example.fuel.model.PaymentMethod;
+import com.example.fuel.model.Product;
+import com.example.fuel.model.ServiceProduct;
+import com.example.fuel.presenter.SmartFuelPresenter;
 import com.example.fuel.service.CartService;
 import com.example.fuel.service.ProductService;
 import org.junit.jupiter.api.*;
 
 import java.io.File;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -69,6 +80,30 @@ class CartServiceTest {
         assertEquals(580.0, total, 0.001, "Итоговая сумма корзины должна быть 580.0.");
     }
 
+    @Test
+    void testCalculateCartTotalWithManyLines() {
+        // Несколько строк одного типа, в том числе с повторяющимся товаром
+        cartService.addToCart(new CartItem(1, "PRODUCT", 1, 2.0));   // 112.0
+        cartService.addToCart(new CartItem(1, "PRODUCT", 2, 4.0));   // 200.0
+        cartService.addToCart(new CartItem(1, "PRODUCT", 1, 1.0));   //  56.0
+        cartService.addToCart(new CartItem(1, "SERVICE", 2, 1.0));   // 150.0
+        cartService.addToCart(new CartItem(1, "SERVICE", 3, 1.0));   // 500.0
+
+        double total = cartService.calculateCartTotal(1);
+        assertEquals(1018.0, total, 0.001);
+    }
+
+    @Test
+    void testPriceChangeIsVisibleInCartTotal() {
+        cartService.addToCart(new CartItem(1, "PRODUCT", 1, 10.0));
+        assertEquals(560.0, cartService.calculateCartTotal(1), 0.001);
+
+        // Новая цена должна сразу попасть в кэш каталога
+        productService.updateFuelPrice(1, 60.0);
+        assertEquals(600.0, cartService.calculateCartTotal(1), 0.001);
+        assertEquals(60.0, productService.getFuelById(1).getPrice(), 0.001);
+    }
+
     @Test
     void testClearCart() {
         // Добавим топливо ID=2 (цена 50.0, количество 3 → 150.0)
@@ -83,4 +118,114 @@ class CartServiceTest {
         List<CartItem> afterClear = cartService.getCartItems(1);
         assertTrue(afterClear.isEmpty(), "Корзина должна быть пустой после clearCart.");
     }
+
+    @Test
+    void testInMemoryCartIsWrittenBehind() {
+        CartItemDAOImpl sqlDao = new CartItemDAOImpl();
+        // Интервал большой — записываем только явным flush()
+        try (InMemoryCartItemDAO memoryDao = new InMemoryCartItemDAO(60_000).start()) {
+            CartService memoryCart = new CartService(productService, memoryDao);
+            memoryCart.addToCart(new CartItem(1, "PRODUCT", 1, 5.0));
+            memoryCart.addToCart(new CartItem(1, "SERVICE", 1, 1.0));
+
+            List<CartItem> items = memoryCart.getCartItems(1);
+            assertEquals(2, items.size());
+            assertEquals(580.0, memoryCart.calculateCartTotal(1), 0.001);
+            assertTrue(sqlDao.getByCustomerId(1).isEmpty(), "До flush() в БД ничего нет");
+
+            memoryDao.flush();
+            assertEquals(2, sqlDao.getByCustomerId(1).size());
+
+            // Удаление по id работает и для строк, которые уже в БД
+            memoryCart.removeCartItem(items.get(0).getId());
+            memoryDao.flush();
+            List<CartItem> persisted = sqlDao.getByCustomerId(1);
+            assertEquals(1, persisted.size());
+            assertEquals("SERVICE", persisted.get(0).getItemType());
+        }
+    }
+
+    @Test
+    void testInMemoryCartClearFollowsTransaction() {
+        CartItemDAOImpl sqlDao = new CartItemDAOImpl();
+        try (InMemoryCartItemDAO memoryDao = new InMemoryCartItemDAO(60_000).start()) {
+            memoryDao.insert(new CartItem(1, "PRODUCT", 1, 5.0));
+            memoryDao.flush();
+            memoryDao.insert(new CartItem(1, "SERVICE", 1, 1.0));
+
+            // Откат: строки и несохранённое изменение возвращаются
+            assertFalse(DatabaseManager.inTransaction(() -> {
+                memoryDao.deleteAllByCustomerId(1);
+                assertTrue(memoryDao.getByCustomerId(1).isEmpty());
+                return false;
+            }));
+            assertEquals(2, memoryDao.getByCustomerId(1).size());
+            memoryDao.flush();
+            assertEquals(2, sqlDao.getByCustomerId(1).size());
+
+            // COMMIT: корзина уже чиста, flush() оплаченные строки не вернёт
+            assertTrue(DatabaseManager.inTransaction(() -> {
+                memoryDao.deleteAllByCustomerId(1);
+                return true;
+            }));
+            memoryDao.flush();
+            assertTrue(sqlDao.getByCustomerId(1).isEmpty());
+            assertTrue(memoryDao.getByCustomerId(1).isEmpty());
+        }
+    }
+
+    @Test
+    void testPresenterTotalFollowsCartChangesAndPrices() {
+        SmartFuelPresenter presenter = new SmartFuelPresenter();
+        presenter.addToCart(1, "PRODUCT", 1, 2.0);   // 112₽
+        presenter.addToCart(1, "SERVICE", 2, 1.0);   // 150₽
+        presenter.addToCart(1, "PRODUCT", 2, 3.0);   // 150₽
+        assertEquals(412.0, presenter.getCartTotal(1), 0.001);
+
+        presenter.removeFromCart(1, "SERVICE", 2);
+        assertEquals(262.0, presenter.getCartTotal(1), 0.001);
+
+        int fuelLine = presenter.getCartItems(1).get(0).getId();
+        presenter.removeCartItemById(fuelLine, 1);
+        assertEquals(150.0, presenter.getCartTotal(1), 0.001);
+
+        // Смена цены делает итог устаревшим — он пересчитывается по новой цене
+        productService.updateFuelPrice(2, 60.0);
+        assertEquals(180.0, presenter.getCartTotal(1), 0.001);
+        assertEquals(cartService.calculateCartTotal(1), presenter.getCartTotal(1), 0.001);
+
+        presenter.clearCart(1);
+        assertEquals(0.0, presenter.getCartTotal(1), 0.0);
+    }
+
+    @Test
+    void testCheckoutChargesActualCartWhenChangedElsewhere() {
+        SmartFuelPresenter terminal = new SmartFuelPresenter();
+        terminal.addToCart(1, "PRODUCT", 1, 10.0);   // 560₽
+        terminal.addToCart(1, "SERVICE", 1, 1.0);    // 300₽
+        assertEquals(860.0, terminal.getCartTotal(1), 0.001);
+
+        // Услугу убрали через другой presenter — итог первого об этом не знает
+        int washLine = terminal.getCartItems(1).get(1).getId();
+        assertTrue(new SmartFuelPresenter().removeCartItemById(washLine, 1));
+
+        assertTrue(terminal.checkoutFullWithMethod(1, PaymentMethod.Карта));
+        assertEquals(2000.0 - 560.0, terminal.getCustomer(1).getCardBalance(), 0.001);
+    }
+
+    @Test
+    void testCatalogLookupByTypeAndId() {
+        // id 1 есть и у топлива (АИ-95), и у услуги (Автомойка) — различаются типом
+        Map<CatalogKey, Product> found = new ProductDAOImpl().getByIds(
+                List.of(CatalogKey.fuel(1), CatalogKey.service(1), CatalogKey.fuel(99)));
+        assertEquals(2, found.size());
+        assertInstanceOf(FuelProduct.class, found.get(CatalogKey.fuel(1)));
+        assertInstanceOf(ServiceProduct.class, found.get(CatalogKey.service(1)));
+        assertEquals(300.0, found.get(CatalogKey.service(1)).getPrice(), 0.001);
+
+        // Смешанная корзина: 2 л × 56 + мойка 300
+        cartService.addToCart(new CartItem(1, "PRODUCT", 1, 2.0));
+        cartService.addToCart(new CartItem(1, "SERVICE", 1, 1.0));
+        assertEquals(41_200L, cartService.calculateCartTotalKopecks(1));
+    }
 }
@@ -0,0 +1,86 @@
+package com.example.fuel.test;
+
+import com.example.fuel.db.DatabaseInitializer;
+import com.example.fuel.model.Customer;
+import com.example.fuel.model.PaymentMethod;
+import com.example.fuel.service.CustomerService;
+import com.example.fuel.service.PaymentLedger;
+import com.example.fuel.service.PaymentService;
+import com.example.fuel.storage.SegmentedLruCache;
+import com.example.fuel.storage.StorageProvider;
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Кэш клиентов: повторные чтения из памяти, но балансы после оплат и откатов — всегда актуальные.
+ */
+class CustomerCacheTest {
+
+    @BeforeEach
+    void resetDatabase() {
+        File dbFile = new File("smart_fuel.db");
+        if (dbFile.exists()) {
+            //noinspection ResultOfMethodCallIgnored
+            dbFile.delete();
+        }
+        PaymentLedger.shared().setSynchronous(true);
+        DatabaseInitializer.initialize();
+    }
+
+    @Test
+    void testBalancesStayFreshThroughCache() {
+        CustomerService customerService = new CustomerService();
+        PaymentService paymentService = new PaymentService();
+
+        customerService.getCustomer(1);
+        long hitsBefore = customerService.getCacheStats().hits();
+        assertEquals(1000.0, customerService.getCustomer(1).getWalletBalance(), 0.001);
+        assertEquals(hitsBefore + 1, customerService.getCacheStats().hits());
+
+        // Списание (SQL debit) и запись балансов (update) видны сразу
+        assertTrue(paymentService.payPartial(1, PaymentMethod.Наличные, 300.0));
+        assertEquals(700.0, customerService.getCustomer(1).getWalletBalance(), 0.001);
+        Customer c = customerService.getCustomer(1);
+        c.setCardBalance(50.0);
+        assertTrue(customerService.updateCustomer(c));
+        assertEquals(50.0, customerService.getCustomer(1).getCardBalance(), 0.001);
+
+        // Изменения откатившейся транзакции в кэш не попадают
+        StorageProvider storage = StorageProvider.sqlite();
+        assertFalse(storage.inTransaction(() -> {
+            Customer inTx = storage.customerDAO().getById(1);
+            inTx.setWalletBalance(0.0);
+            assertTrue(storage.customerDAO().update(inTx));
+            return false;
+        }));
+        assertEquals(700.0, customerService.getCustomer(1).getWalletBalance(), 0.001);
+
+        // Копия из кэша — изменение объекта не меняет кэш
+        customerService.getCustomer(1).setWalletBalance(1.0);
+        assertEquals(700.0, customerService.getCustomer(1).getWalletBalance(), 0.001);
+    }
+
+    @Test
+    void testOneOffReadsDoNotEvictRegulars() {
+        SegmentedLruCache<Integer, String> cache = new SegmentedLruCache<>(100, 1);
+        for (int regular = 0; regular < 50; regular++) {
+            cache.putIfUnchanged(regular, "постоянный " + regular, cache.stamp(regular));
+            cache.get(regular);   // второе обращение — в защищённый сегмент
+        }
+
+        // Тысяча разовых клиентов проходит через испытательный сегмент
+        for (int once = 1000; once < 2000; once++) {
+            cache.putIfUnchanged(once, "разовый", cache.stamp(once));
+        }
+
+        for (int regular = 0; regular < 50; regular++) {
+            assertNotNull(cache.get(regular), "вытеснен постоянный клиент " + regular);
+        }
+        SegmentedLruCache.Stats stats = cache.stats();
+        assertEquals(100, stats.size());
+        assertEquals(950, stats.evictions());
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.fuel.test;
+
+import com.example.fuel.model.Customer;
+import com.example.fuel.presenter.SmartFuelPresenter;
+import com.example.fuel.server.HeadlessServer;
+import com.example.fuel.storage.MemoryStorage;
+import org.junit.jupiter.api.*;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HTTP API без окна: запросы по сети к одному серверу от многих терминалов сразу.
+ * Хранилище в памяти — чтобы проверять сервер, а не диск (пропускная способность — см. LoadGenerator).
+ */
+class HeadlessServerTest {
+
+    private static final int TERMINALS = 32;
+    private static final int SALES_PER_TERMINAL = 25;
+    private static final String CASH = URLEncoder.encode("Наличные", StandardCharsets.UTF_8);
+
+    private MemoryStorage storage;
+    private HeadlessServer server;
+    private HttpClient client;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        storage = MemoryStorage.withDemoData();
+        server = new HeadlessServer(new SmartFuelPresenter(storage), 0).start();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    @Test
+    void testCartAndCheckoutOverHttp() throws Exception {
+        assertTrue(send("GET", "/catalog").body().contains("\"name\":\"АИ-95\",\"price\":56.00"));
+
+        HttpResponse<String> added = send("POST", "/customers/1/cart?type=PRODUCT&item=1&qty=2.5");
+        assertEquals(200, added.statusCode());
+        assertTrue(added.body().endsWith("\"total\":140.00,\"paid\":0.00,\"remaining\":140.00}"), added.body());
+
+        assertEquals(409, send("POST", "/customers/1/cart?type=PRODUCT&item=3&qty=5000.5").statusCode());
+        assertEquals(400, send("POST", "/customers/1/cart?type=PRODUCT&item=abc").statusCode());
+        assertEquals(404, send("GET", "/nowhere").statusCode());
+        assertEquals(404, send("POST", "/customers/1/cart?type=SERVICE&item=99").statusCode());
+        assertEquals(1, storage.cartItemDAO().getByCustomerId(1).size());
+
+        HttpResponse<String> paid = send("POST", "/customers/1/checkout?method=" + CASH);
+        assertEquals(200, paid.statusCode());
+        assertEquals("{\"status\":\"OK\",\"description\":\"оплачено\",\"charged\":140.00,\"remaining\":0.00}", paid.body());
+        assertTrue(send("GET", "/customers/1").body().contains("\"wallet\":860.00"));
+        assertEquals(409, send("POST", "/customers/1/checkout").statusCode());
+    }
+
+    @Test
+    void testCannotRemoveAnotherCustomersLine() throws Exception {
+        int other = storage.customerDAO().insert(new Customer(0, "Другой клиент", 1000.0, 0.0, 0.0));
+        send("POST", "/customers/1/cart?type=PRODUCT&item=1&qty=2.5");
+        send("POST", "/customers/1/cart?type=SERVICE&item=1&qty=1");
+        int washLine = storage.cartItemDAO().getByCustomerId(1).get(1).getId();
+
+        assertEquals(404, send("DELETE", "/customers/" + other + "/cart/" + washLine).statusCode());
+        assertEquals(2, storage.cartItemDAO().getByCustomerId(1).size());
+
+        HttpResponse<String> paid = send("POST", "/customers/1/checkout?method=" + CASH);
+        assertTrue(paid.body().contains("\"charged\":440.00"), paid.body());
+    }
+
+    @Test
+    void testManyTerminalsThroughOneServer() throws Exception {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < TERMINALS; i++) {
+            ids.add(storage.customerDAO().insert(new Customer(0, "Терминал " + i, 10_000.0, 0.0, 0.0)));
+        }
+
+        ExecutorService terminals = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int id : ids) {
+                futures.add(terminals.submit(() -> {
+                    // Каждая продажа: 1 л АИ-95 в корзину и полная оплата наличными
+                    for (int k = 0; k < SALES_PER_TERMINAL; k++) {
+                        assertEquals(200, send("POST", "/customers/" + id + "/cart?type=PRODUCT&item=1&qty=1").statusCode());
+                        assertEquals(200, send("POST", "/customers/" + id + "/checkout?method=" + CASH).statusCode());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            terminals.shutdownNow();
+        }
+
+        long requests = 2L * TERMINALS * SALES_PER_TERMINAL;
+        assertEquals(requests, server.getRequestCount());
+
+        for (int id : ids) {
+            assertEquals(10_000.0 - 56.0 * SALES_PER_TERMINAL, storage.customerDAO().getById(id).getWalletBalance(), 0.001);
+        }
+        assertEquals(10_000.0 - TERMINALS * SALES_PER_TERMINAL,
+                storage.productDAO().getFuelProductById(1).getStockQty(), 0.001);
+    }
+
+    private HttpResponse<String> send(String method, String path) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + path))
+                .method(method, HttpRequest.BodyPublishers.noBody())
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
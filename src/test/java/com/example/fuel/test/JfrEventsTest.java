@@ -0,0 +1,75 @@
+package com.example.fuel.test;
+
+import com.example.fuel.db.DatabaseInitializer;
+import com.example.fuel.model.PaymentMethod;
+import com.example.fuel.presenter.SmartFuelPresenter;
+import com.example.fuel.service.CartService;
+import com.example.fuel.service.PaymentLedger;
+import com.example.fuel.service.ProductService;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * События JFR: оплата, расчёт итога и SQL-запросы попадают в запись с нужными полями.
+ */
+class JfrEventsTest {
+
+    @Test
+    void testCheckoutIsRecorded() throws Exception {
+        File dbFile = new File("smart_fuel.db");
+        if (dbFile.exists()) {
+            //noinspection ResultOfMethodCallIgnored
+            dbFile.delete();
+        }
+        PaymentLedger.shared().setSynchronous(true);
+        DatabaseInitializer.initialize();
+        SmartFuelPresenter presenter = new SmartFuelPresenter();
+
+        Path file = Files.createTempFile("smartfuel", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("smartfuel.Checkout");
+            recording.enable("smartfuel.CartTotal").withThreshold(Duration.ZERO);
+            recording.enable("smartfuel.Sql").withThreshold(Duration.ZERO);
+            recording.start();
+
+            presenter.addToCart(1, "PRODUCT", 1, 2.0);
+            presenter.addToCart(1, "SERVICE", 1, 1);
+            long total = new CartService(new ProductService()).calculateCartTotalKopecks(1);
+            assertTrue(presenter.checkoutFullWithMethod(1, PaymentMethod.Наличные));
+            assertFalse(presenter.checkoutFullCombined(1));
+
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            List<RecordedEvent> checkouts = events.stream()
+                    .filter(e -> e.getEventType().getName().equals("smartfuel.Checkout")).toList();
+            assertEquals(2, checkouts.size());
+            RecordedEvent paid = checkouts.stream()
+                    .filter(e -> "FULL_WITH_METHOD".equals(e.getString("kind"))).findFirst().orElseThrow();
+            assertEquals(1, paid.getInt("customerId"));
+            assertEquals(2, paid.getInt("itemCount"));
+            assertEquals(total, paid.getLong("amountKopecks"));
+            assertEquals("OK", paid.getString("status"));
+            assertEquals("Наличные", paid.getString("method"));
+            assertTrue(checkouts.stream().anyMatch(e -> "NOTHING_TO_PAY".equals(e.getString("status"))));
+
+            assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().equals("smartfuel.CartTotal")
+                    && e.getInt("customerId") == 1));
+            assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().equals("smartfuel.Sql")
+                    && "UPDATE".equals(e.getString("operation")) && e.getInt("sqlHash") != 0));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
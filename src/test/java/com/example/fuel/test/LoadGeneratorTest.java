@@ -0,0 +1,50 @@
+package com.example.fuel.test;
+
+import com.example.fuel.db.DatabaseInitializer;
+import com.example.fuel.load.LoadGenerator;
+import com.example.fuel.load.LoadProfile;
+import com.example.fuel.service.PaymentLedger;
+import com.example.fuel.storage.MemoryStorage;
+import com.example.fuel.storage.StorageProvider;
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Нагрузочный прогон в миниатюре: все колонки отработали, остатки и деньги сошлись.
+ */
+class LoadGeneratorTest {
+
+    @Test
+    void testShortRunOnSqliteIsConsistent() throws Exception {
+        File dbFile = new File("smart_fuel.db");
+        if (dbFile.exists()) {
+            //noinspection ResultOfMethodCallIgnored
+            dbFile.delete();
+        }
+        PaymentLedger.shared().setSynchronous(true);
+        DatabaseInitializer.initialize();
+
+        LoadGenerator.Report report = new LoadGenerator(StorageProvider.sqlite(),
+                LoadProfile.ofSessions(64, 16, 10)).run();
+
+        assertTrue(report.isConsistent(), report.format());
+        assertEquals(160, report.sessions());
+        assertEquals(0, report.errors());
+        assertTrue(report.checkouts() > 0);
+        assertTrue(report.partialPayments() > 0);
+        assertTrue(report.checkoutLatency().count() > 0);
+    }
+
+    @Test
+    void testShortRunInMemoryIsConsistent() throws Exception {
+        LoadGenerator.Report report = new LoadGenerator(MemoryStorage.withDemoData(),
+                LoadProfile.ofSessions(200, 50, 40)).run();
+
+        assertTrue(report.isConsistent(), report.format());
+        assertEquals(2000, report.sessions());
+        assertEquals(report.sessions(), report.checkouts() + report.declined());
+    }
+}
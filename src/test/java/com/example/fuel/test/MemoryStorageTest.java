@@ -0,0 +1,126 @@
+package com.example.fuel.test;
+
+import com.example.fuel.DAO.CustomerDAO;
+import com.example.fuel.model.CartItem;
+import com.example.fuel.model.CatalogKey;
+import com.example.fuel.model.Customer;
+import com.example.fuel.model.PaymentMethod;
+import com.example.fuel.presenter.SmartFuelPresenter;
+import com.example.fuel.service.ProductService;
+import com.example.fuel.service.StockReservations;
+import com.example.fuel.storage.MemoryStorage;
+import org.junit.jupiter.api.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Та же бизнес-логика поверх хранилища в памяти: без файла БД и без DatabaseInitializer.
+ */
+class MemoryStorageTest {
+
+    private MemoryStorage storage;
+
+    @BeforeEach
+    void createStorage() {
+        storage = MemoryStorage.withDemoData();
+    }
+
+    @Test
+    void testCheckoutThroughPresenter() {
+        SmartFuelPresenter presenter = new SmartFuelPresenter(storage);
+        presenter.addToCart(1, "PRODUCT", 1, 2.0);   // 2 л × 56₽
+        presenter.addToCart(1, "SERVICE", 2, 1.0);   // подкачка шин 150₽
+        assertEquals(262.0, presenter.getCartTotal(1), 0.001);
+
+        assertTrue(presenter.checkoutPartial(1, PaymentMethod.Карта, 62.0));
+        assertTrue(presenter.checkoutFullWithMethod(1, PaymentMethod.Наличные));
+
+        Customer c = presenter.getCustomer(1);
+        assertEquals(800.0, c.getWalletBalance(), 0.001);
+        assertEquals(1938.0, c.getCardBalance(), 0.001);
+        assertTrue(presenter.getCartItems(1).isEmpty());
+        assertEquals(9998.0, new ProductService(storage).getFuelById(1).getStockQty(), 0.001);
+        assertEquals(26_200L, storage.paymentDAO().getTotalKopecksByCustomerId(1));
+    }
+
+    @Test
+    void testAbandonedCartGivesBackReservedFuel() {
+        SmartFuelPresenter presenter = new SmartFuelPresenter(storage);
+        assertTrue(presenter.addToCart(2, "PRODUCT", 3, 5000.0));   // весь АИ-98
+        assertFalse(presenter.addToCart(1, "PRODUCT", 3, 10.0));
+
+        // Корзина клиента 2 «брошена»: добавление по-прежнему не ждёт очистки, её делает фоновая проверка
+        StockReservations.of(storage).setIdleTimeoutMillis(0);
+        assertFalse(presenter.addToCart(1, "PRODUCT", 3, 10.0));
+        presenter.startReservationSweep(10);
+        try {
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                while (!presenter.getCartItems(2).isEmpty()) {
+                    Thread.sleep(5);
+                }
+            });
+        } finally {
+            presenter.stopReservationSweep();
+        }
+        assertTrue(presenter.addToCart(1, "PRODUCT", 3, 10.0));
+        assertEquals(4990.0, presenter.getAvailableFuel(3), 0.001);
+
+        // Оплата списывает зарезервированное со склада, свободный остаток не меняется
+        StockReservations.of(storage).setIdleTimeoutMillis(60_000);
+        assertTrue(presenter.checkoutFullWithMethod(1, PaymentMethod.Наличные));
+        assertEquals(4990.0, presenter.getAvailableFuel(3), 0.001);
+        assertEquals(4990.0, new ProductService(storage).getFuelById(3).getStockQty(), 0.001);
+    }
+
+    @Test
+    void testRolledBackTransactionRestoresEverything() {
+        storage.cartItemDAO().insert(new CartItem(1, "PRODUCT", 2, 5.0));
+
+        boolean committed = storage.inTransaction(() -> {
+            assertTrue(storage.customerDAO().debit(1, PaymentMethod.Наличные, 10_000));
+            storage.productDAO().decreaseStock(Map.of(CatalogKey.fuel(2), 5_000L));
+            storage.cartItemDAO().deleteAllByCustomerId(1);
+            return false;
+        });
+
+        assertFalse(committed);
+        assertEquals(100_000L, storage.customerDAO().getById(1).getWalletKopecks());
+        assertEquals(8_000_000L, storage.productDAO().getFuelProductById(2).getStockMilli());
+        assertEquals(1, storage.cartItemDAO().getByCustomerId(1).size());
+    }
+
+    @Test
+    void testConcurrentDebitsNeverOverdraw() throws Exception {
+        CustomerDAO customers = storage.customerDAO();
+        AtomicInteger succeeded = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(32);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                futures.add(pool.submit(() -> {
+                    if (customers.debit(1, PaymentMethod.Бонусы, 100)) {
+                        succeeded.incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // 150₽ бонусов — ровно 150 списаний по 1₽
+        assertEquals(150, succeeded.get());
+        assertEquals(0L, customers.getById(1).getBonusKopecks());
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.fuel.test;
+
+import com.example.fuel.db.DatabaseInitializer;
+import com.example.fuel.db.GroupCommitter;
+import com.example.fuel.metrics.Histogram;
+import com.example.fuel.metrics.Metrics;
+import com.example.fuel.model.PaymentMethod;
+import com.example.fuel.presenter.SmartFuelPresenter;
+import com.example.fuel.service.PaymentLedger;
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Метрики: точность перцентилей и то, что оплата через SQLite действительно измеряется.
+ */
+class MetricsTest {
+
+    @Test
+    void testPercentilesWithinBucketPrecision() {
+        Histogram h = Metrics.histogram("test.uniform");
+        for (long v = 1; v <= 100_000; v++) {
+            h.record(v);
+        }
+        Histogram.Snapshot s = h.snapshot();
+        assertEquals(100_000, s.count());
+        assertEquals(100_000, s.max());
+        assertEquals(50_000, s.p50(), 50_000 * 0.04);
+        assertEquals(99_000, s.p99(), 99_000 * 0.04);
+        assertEquals(99_900, s.p999(), 99_900 * 0.04);
+        assertEquals(50_000, s.mean());
+    }
+
+    @Test
+    void testCheckoutIsMeasured() {
+        File dbFile = new File("smart_fuel.db");
+        if (dbFile.exists()) {
+            //noinspection ResultOfMethodCallIgnored
+            dbFile.delete();
+        }
+        PaymentLedger.shared().setSynchronous(true);
+        DatabaseInitializer.initialize();
+        Metrics.reset();
+
+        SmartFuelPresenter presenter = new SmartFuelPresenter();
+        presenter.addToCart(1, "PRODUCT", 1, 2.0);
+        assertTrue(presenter.checkoutFullWithMethod(1, PaymentMethod.Наличные));
+
+        assertEquals(1, Metrics.histogram("service.payment.payExactAmountWithMethod").snapshot().count());
+        assertEquals(1, Metrics.histogram("dao.customer.debit").snapshot().count());
+        Histogram.Snapshot sql = Metrics.histogram("checkout.sqlStatements").snapshot();
+        assertEquals(1, sql.count());
+        assertTrue(sql.max() >= 2, "списание денег и списание топлива — минимум 2 запроса");
+        assertTrue(Metrics.report().contains("dao.cartItem.insert"));
+    }
+
+    @Test
+    void testCheckoutSqlCountedUnderGroupCommit() {
+        File dbFile = new File("smart_fuel.db");
+        if (dbFile.exists()) {
+            //noinspection ResultOfMethodCallIgnored
+            dbFile.delete();
+        }
+        PaymentLedger.shared().setSynchronous(true);
+        DatabaseInitializer.initialize();
+
+        Metrics.reset();
+        SmartFuelPresenter plain = new SmartFuelPresenter();
+        plain.addToCart(1, "PRODUCT", 1, 2.0);
+        assertTrue(plain.checkoutFullWithMethod(1, PaymentMethod.Наличные));
+        long plainSql = Metrics.histogram("checkout.sqlStatements").snapshot().max();
+
+        Metrics.reset();
+        try (GroupCommitter committer = new GroupCommitter()) {
+            SmartFuelPresenter grouped = new SmartFuelPresenter(committer);
+            grouped.addToCart(1, "PRODUCT", 1, 2.0);
+            assertTrue(grouped.checkoutFullWithMethod(1, PaymentMethod.Наличные));
+        }
+        Histogram.Snapshot sql = Metrics.histogram("checkout.sqlStatements").snapshot();
+        assertEquals(1, sql.count());
+        assertEquals(plainSql, sql.max(), "оплата в пачке выполняет те же запросы, что и отдельная");
+    }
+}
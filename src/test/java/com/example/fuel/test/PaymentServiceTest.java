@@ -1,15 +1,24 @@
 package com.example.fuel.test;
 
+import com.example.fuel.DAO.CustomerDAOImpl;
+import com.example.fuel.DAO.PaymentDAO;
+import com.example.fuel.DAO.PaymentDAOImpl;
 import com.example.fuel.db.DatabaseInitializer;
+import com.example.fuel.db.DatabaseManager;
 import com.example.fuel.model.Customer;
+import com.example.fuel.model.Payment;
 import com.example.fuel.model.PaymentMethod;
 import com.example.fuel.service.CartService;
 import com.example.fuel.service.CustomerService;
+import com.example.fuel.service.PaymentLedger;
 import com.example.fuel.service.PaymentService;
 import com.example.fuel.service.ProductService;
 import org.junit.jupiter.api.*;
 
 import java.io.File;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -29,6 +38,9 @@ class PaymentServiceTest {
             dbFile.delete();
         }
 
+        // Журнал пишем синхронно, чтобы записи не попали в следующую (пересозданную) БД
+        PaymentLedger.shared().setSynchronous(true);
+
         // Инициализируем БД и сервисы
         DatabaseInitializer.initialize();
 
@@ -103,6 +115,34 @@ class PaymentServiceTest {
         assertFalse(cartService.getCartItems(1).isEmpty());
     }
 
+    @Test
+    void testPayExactAmountCombined_FailureLeavesBalancesUntouched() {
+        cartService.addToCart(new com.example.fuel.model.CartItem(1, "PRODUCT", 1, 1000.0));
+        double sum = cartService.calculateCartTotal(1);
+
+        assertFalse(paymentService.payExactAmountCombined(1, sum));
+
+        // Транзакция откатилась: ни один из счетов не списан
+        Customer c = customerService.getCustomer(1);
+        assertEquals(1000.0, c.getWalletBalance(), 0.001);
+        assertEquals(2000.0, c.getCardBalance(), 0.001);
+        assertEquals(150.0, c.getBonusPoints(), 0.001);
+    }
+
+    @Test
+    void testFullCheckoutDecreasesFuelStock() {
+        double stockBefore = productService.getFuelById(2).getStockQty();
+        cartService.addToCart(new com.example.fuel.model.CartItem(1, "PRODUCT", 2, 3.0));
+        cartService.addToCart(new com.example.fuel.model.CartItem(1, "PRODUCT", 2, 2.0));
+        cartService.addToCart(new com.example.fuel.model.CartItem(1, "SERVICE", 1, 1.0));
+        double sum = cartService.calculateCartTotal(1);
+
+        assertTrue(paymentService.payExactAmountWithMethod(1, PaymentMethod.Карта, sum));
+
+        assertEquals(stockBefore - 5.0, productService.getFuelById(2).getStockQty(), 0.001);
+        assertTrue(cartService.getCartItems(1).isEmpty());
+    }
+
     @Test
     void testPayPartialWithBonusAndCardMix() {
         cartService.addToCart(new com.example.fuel.model.CartItem(1, "PRODUCT", 2, 2.0)); // 100₽
@@ -125,4 +165,158 @@ class PaymentServiceTest {
 
         assertEquals(2, cartService.getCartItems(1).size());
     }
+
+    @Test
+    void testPaymentsAreRecordedInLedger() {
+        cartService.addToCart(new com.example.fuel.model.CartItem(1, "PRODUCT", 2, 10.0)); // 500₽
+        assertTrue(paymentService.payPartial(1, PaymentMethod.Бонусы, 100.0));
+        assertTrue(paymentService.payExactAmountCombined(1, 400.0));
+        // Неудачная оплата в журнал не попадает
+        assertFalse(paymentService.payPartial(1, PaymentMethod.Бонусы, 100.0));
+
+        List<Payment> payments = new PaymentDAOImpl().getByCustomerId(1);
+        assertEquals(2, payments.size());
+        assertEquals(PaymentMethod.Бонусы, payments.get(0).getMethod());
+        assertEquals(100.0, payments.get(0).getAmount(), 0.001);
+        assertEquals(PaymentMethod.Наличные, payments.get(1).getMethod());
+        assertEquals(400.0, payments.get(1).getAmount(), 0.001);
+        assertTrue(payments.get(1).getCreatedAt() > 0);
+    }
+
+    @Test
+    void testRolledBackUpdateKeepsCustomerVersion() {
+        CustomerDAOImpl dao = new CustomerDAOImpl();
+        Customer c = dao.getById(1);
+        long version = c.getVersion();
+        c.setWalletBalance(900.0);
+
+        assertFalse(DatabaseManager.inTransaction(() -> dao.update(c) && false));
+        assertEquals(version, c.getVersion());
+        assertTrue(dao.update(c), "после отката объект не должен считаться устаревшим");
+        assertEquals(900.0, dao.getById(1).getWalletBalance(), 0.001);
+    }
+
+    @Test
+    void testNestedTransactionRollsBackOnlyItself() {
+        CustomerDAOImpl dao = new CustomerDAOImpl();
+        boolean committed = DatabaseManager.inTransaction(() -> {
+            assertTrue(dao.debit(1, PaymentMethod.Наличные, 10_000));
+            boolean nested = DatabaseManager.inTransaction(() -> dao.debit(1, PaymentMethod.Карта, 20_000) && false);
+            assertFalse(nested);
+            return true;
+        });
+        assertTrue(committed);
+
+        Customer c = customerService.getCustomer(1);
+        assertEquals(900.0, c.getWalletBalance(), 0.001);
+        assertEquals(2000.0, c.getCardBalance(), 0.001);
+    }
+
+    @Test
+    void testLedgerBackgroundModeWritesAfterFlush() {
+        PaymentLedger ledger = new PaymentLedger(new PaymentDAOImpl(), 16, 5);
+        for (int i = 0; i < 100; i++) {
+            ledger.append(new Payment(2, PaymentMethod.Карта, 1.0));
+        }
+        ledger.flush();
+        assertEquals(10_000L, new PaymentDAOImpl().getTotalKopecksByCustomerId(2));
+        ledger.close();
+    }
+
+    @Test
+    void testLedgerWriterSurvivesFailedBatch() {
+        PaymentDAOImpl dao = new PaymentDAOImpl();
+        AtomicBoolean failNext = new AtomicBoolean(true);
+        PaymentLedger ledger = new PaymentLedger(new PaymentDAO() {
+            @Override
+            public boolean insertAll(List<Payment> payments) {
+                if (failNext.getAndSet(false)) {
+                    throw new IllegalStateException("сбой записи");
+                }
+                return dao.insertAll(payments);
+            }
+
+            @Override
+            public List<Payment> getByCustomerId(int customerId) {
+                return dao.getByCustomerId(customerId);
+            }
+
+            @Override
+            public long getTotalKopecksByCustomerId(int customerId) {
+                return dao.getTotalKopecksByCustomerId(customerId);
+            }
+        }, 16, 5);
+
+        ledger.append(new Payment(2, PaymentMethod.Карта, 1.0));
+        assertTimeoutPreemptively(Duration.ofSeconds(5), ledger::flush);
+        ledger.append(new Payment(2, PaymentMethod.Карта, 2.0));
+        assertTimeoutPreemptively(Duration.ofSeconds(5), ledger::close);
+        assertEquals(200L, dao.getTotalKopecksByCustomerId(2));
+    }
+
+    @Test
+    void testStaleCustomerUpdateIsRejected() {
+        CustomerDAOImpl dao = new CustomerDAOImpl();
+        Customer first = dao.getById(1);
+        Customer second = dao.getById(1);
+
+        first.setWalletBalance(900.0);
+        assertTrue(dao.update(first));
+
+        // Вторая копия прочитана до первой записи — её версия устарела
+        second.setWalletBalance(100.0);
+        assertFalse(dao.update(second));
+        assertEquals(900.0, customerService.getCustomer(1).getWalletBalance(), 0.001);
+    }
+
+    @Test
+    void testPayExactAmountCombinedRetriesOnConflict() {
+        // Сразу после первого чтения клиента «другая сессия» списывает 10 бонусов
+        CustomerDAOImpl racingDao = new CustomerDAOImpl() {
+            private boolean raced;
+
+            @Override
+            public Customer getById(int id) {
+                Customer c = super.getById(id);
+                if (!raced) {
+                    raced = true;
+                    assertTrue(debit(id, PaymentMethod.Бонусы, 1_000L));
+                }
+                return c;
+            }
+        };
+        PaymentService racingService = new PaymentService(racingDao);
+        cartService.addToCart(new com.example.fuel.model.CartItem(1, "PRODUCT", 2, 10.0)); // 500₽
+        long retriesBefore = PaymentService.getConflictRetryCount();
+
+        assertTrue(racingService.payExactAmountCombined(1, 500.0));
+
+        assertTrue(PaymentService.getConflictRetryCount() > retriesBefore);
+        Customer c = customerService.getCustomer(1);
+        assertEquals(500.0, c.getWalletBalance(), 0.001);
+        assertEquals(140.0, c.getBonusPoints(), 0.001); // параллельное списание не потеряно
+        assertTrue(cartService.getCartItems(1).isEmpty());
+    }
+
+    @Test
+    void testMoneyIsExactInKopecks() {
+        // 10 × 0,10 ₽ — в double баланс уехал бы на 999.0000000000001
+        for (int i = 0; i < 10; i++) {
+            assertTrue(paymentService.payPartial(1, PaymentMethod.Наличные, 0.1));
+        }
+        assertEquals(99_900L, customerService.getCustomer(1).getWalletKopecks());
+
+        // 0,10 + 0,20 собирают ровно 0,30 без допуска на погрешность
+        Customer c = customerService.getCustomer(1);
+        c.setWalletKopecks(10);
+        c.setCardKopecks(20);
+        assertTrue(customerService.updateCustomer(c));
+        long bonus = c.getBonusKopecks();
+
+        assertTrue(paymentService.payExactAmountCombinedKopecks(1, 30));
+        c = customerService.getCustomer(1);
+        assertEquals(0L, c.getWalletKopecks());
+        assertEquals(0L, c.getCardKopecks());
+        assertEquals(bonus, c.getBonusKopecks());
+    }
 }
@@ -0,0 +1,215 @@
+package com.example.fuel.test;
+
+import com.example.fuel.DAO.CustomerDAOImpl;
+import com.example.fuel.DAO.PaymentDAOImpl;
+import com.example.fuel.db.GroupCommitter;
+import com.example.fuel.db.DatabaseInitializer;
+import com.example.fuel.model.Customer;
+import com.example.fuel.model.PaymentMethod;
+import com.example.fuel.presenter.AsyncCheckout;
+import com.example.fuel.presenter.CheckoutResult;
+import com.example.fuel.presenter.SmartFuelPresenter;
+import com.example.fuel.service.PaymentLedger;
+import com.example.fuel.service.ProductService;
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Один presenter за 64 терминалами: проверяем, что параллельные оплаты
+ * не теряют обновлений и не списывают больше, чем нужно.
+ */
+class PresenterConcurrencyTest {
+
+    private static final int TERMINALS = 64;
+
+    private SmartFuelPresenter presenter;
+    private ExecutorService pool;
+
+    @BeforeEach
+    void resetDatabase() {
+        File dbFile = new File("smart_fuel.db");
+        if (dbFile.exists()) {
+            //noinspection ResultOfMethodCallIgnored
+            dbFile.delete();
+        }
+        PaymentLedger.shared().setSynchronous(true);
+        DatabaseInitializer.initialize();
+
+        presenter = new SmartFuelPresenter();
+        pool = Executors.newFixedThreadPool(TERMINALS);
+    }
+
+    @AfterEach
+    void stopPool() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void testConcurrentPartialPaymentsForOneCustomerAreSerialized() throws Exception {
+        presenter.addToCart(1, "PRODUCT", 2, 20.0); // 20 л × 50₽ = 1000₽
+        AtomicInteger succeeded = new AtomicInteger();
+
+        // Каждый терминал пытается оплатить 20₽; остатка хватает ровно на 50 оплат
+        runOnAllTerminals(i -> {
+            if (presenter.checkoutPartial(1, PaymentMethod.Карта, 20.0)) {
+                succeeded.incrementAndGet();
+            }
+        });
+
+        assertEquals(50, succeeded.get());
+        assertEquals(1000.0, presenter.getPaid(1), 0.001);
+        assertEquals(0.0, presenter.getRemaining(1), 0.001);
+        assertEquals(1000.0, presenter.getCustomer(1).getCardBalance(), 0.001);
+    }
+
+    @Test
+    void testConcurrentCheckoutsForDifferentCustomersLoseNoUpdates() throws Exception {
+        CustomerDAOImpl customerDAO = new CustomerDAOImpl();
+        List<Integer> ids = new ArrayList<>();
+        ids.add(1);
+        for (int i = 1; i < TERMINALS; i++) {
+            ids.add(customerDAO.insert(new Customer(0, "Клиент " + i, 1000.0, 0.0, 0.0)));
+        }
+        double stockBefore = new ProductService().getFuelById(1).getStockQty();
+
+        // Каждый терминал: 3 строки АИ-95 по 1 л (168₽) и полная оплата наличными
+        runOnAllTerminals(i -> {
+            int customerId = ids.get(i);
+            for (int k = 0; k < 3; k++) {
+                presenter.addToCart(customerId, "PRODUCT", 1, 1.0);
+            }
+            assertTrue(presenter.checkoutFullWithMethod(customerId, PaymentMethod.Наличные));
+        });
+
+        for (int id : ids) {
+            Customer c = presenter.getCustomer(id);
+            assertEquals(1000.0 - 168.0, c.getWalletBalance(), 0.001, "клиент " + id);
+            assertTrue(presenter.getCartItems(id).isEmpty());
+        }
+        assertEquals(stockBefore - 3.0 * TERMINALS,
+                new ProductService().getFuelById(1).getStockQty(), 0.001);
+    }
+
+    @Test
+    void testAsyncCheckoutReportsReasons() {
+        presenter.addToCart(1, "PRODUCT", 2, 20.0); // 1000₽
+        List<CompletableFuture<CheckoutResult>> futures = new ArrayList<>();
+
+        try (AsyncCheckout async = new AsyncCheckout(presenter, 8)) {
+            // 200 оплат по 10₽: остатка хватает ровно на половину
+            for (int i = 0; i < 200; i++) {
+                futures.add(async.checkoutPartial(1, PaymentMethod.Карта, 10.0));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            assertEquals(0, async.getInFlight());
+
+            CheckoutResult nothing = async.checkoutFullCombined(1).join();
+            assertEquals(CheckoutResult.Status.NOTHING_TO_PAY, nothing.getStatus());
+        }
+
+        long ok = futures.stream().map(CompletableFuture::join).filter(CheckoutResult::isSuccess).count();
+        long exceeded = futures.stream().map(CompletableFuture::join)
+                .filter(r -> r.getStatus() == CheckoutResult.Status.EXCEEDS_REMAINING).count();
+        assertEquals(100, ok);
+        assertEquals(100, exceeded);
+        assertEquals(1000.0, presenter.getCustomer(1).getCardBalance(), 0.001);
+    }
+
+    @Test
+    void testGroupCommitBatchesSalesAndIsolatesFailures() throws Exception {
+        CustomerDAOImpl customerDAO = new CustomerDAOImpl();
+        List<Integer> ids = new ArrayList<>();
+        ids.add(1);
+        for (int i = 1; i < TERMINALS; i++) {
+            // У последнего клиента денег нет — его оплата должна откатиться одна
+            double wallet = (i == TERMINALS - 1) ? 0.0 : 1000.0;
+            ids.add(customerDAO.insert(new Customer(0, "Клиент " + i, wallet, 0.0, 0.0)));
+        }
+
+        try (GroupCommitter groupCommitter = new GroupCommitter(32, 5_000)) {
+            SmartFuelPresenter grouped = new SmartFuelPresenter(groupCommitter);
+            for (int id : ids) {
+                grouped.addToCart(id, "PRODUCT", 2, 2.0); // 100₽
+            }
+            AtomicInteger succeeded = new AtomicInteger();
+
+            runOnAllTerminals(i -> {
+                if (grouped.checkoutFullWithMethod(ids.get(i), PaymentMethod.Наличные)) {
+                    succeeded.incrementAndGet();
+                }
+            });
+
+            assertEquals(TERMINALS - 1, succeeded.get());
+            assertEquals(TERMINALS, groupCommitter.getRequestCount());
+            assertTrue(groupCommitter.getBatchCount() < TERMINALS, "оплаты не сгруппировались");
+            assertTrue(groupCommitter.getMaxBatchSize() <= 32);
+        }
+
+        int failedId = ids.get(TERMINALS - 1);
+        assertFalse(presenter.getCartItems(failedId).isEmpty());
+        assertTrue(new PaymentDAOImpl().getByCustomerId(failedId).isEmpty());
+        for (int id : ids.subList(0, TERMINALS - 1)) {
+            assertTrue(presenter.getCartItems(id).isEmpty());
+            assertEquals(1, new PaymentDAOImpl().getByCustomerId(id).size());
+        }
+    }
+
+    @Test
+    void testConcurrentReservationsNeverOversell() throws Exception {
+        AtomicInteger reserved = new AtomicInteger();
+
+        // АИ-98: 5000 л на складе, 64 терминала хотят по 100 л — хватает ровно 50-ти
+        runOnAllTerminals(i -> {
+            if (presenter.addToCart(100 + i, "PRODUCT", 3, 100.0)) {
+                reserved.incrementAndGet();
+            }
+        });
+
+        assertEquals(50, reserved.get());
+        assertEquals(0.0, presenter.getAvailableFuel(3), 0.001);
+        assertEquals(5000.0, new ProductService().getFuelById(3).getStockQty(), 0.001);
+
+        // Очищенная корзина возвращает свои литры
+        int customerId = 100 + TERMINALS;
+        for (int i = 0; i < TERMINALS; i++) {
+            if (!presenter.getCartItems(100 + i).isEmpty()) {
+                customerId = 100 + i;
+                break;
+            }
+        }
+        presenter.clearCart(customerId);
+        assertEquals(100.0, presenter.getAvailableFuel(3), 0.001);
+        assertTrue(presenter.addToCart(1, "PRODUCT", 3, 100.0));
+        assertFalse(presenter.addToCart(2, "PRODUCT", 3, 0.5));
+    }
+
+    /** Запустить task на всех терминалах одновременно и дождаться завершения. */
+    private void runOnAllTerminals(TerminalTask task) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < TERMINALS; i++) {
+            int terminal = i;
+            futures.add(pool.submit(() -> {
+                start.await();
+                task.run(terminal);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) {
+            f.get(60, TimeUnit.SECONDS);
+        }
+    }
+
+    @FunctionalInterface
+    private interface TerminalTask {
+        void run(int terminal);
+    }
+}